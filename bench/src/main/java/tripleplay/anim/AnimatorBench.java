@@ -0,0 +1,69 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.anim;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import playn.core.util.Clock;
+
+/**
+ * Measures {@link Animator#paint} with thousands of concurrent tweens, both long running tweens
+ * and short tweens which complete (and are replaced) at a high rate, with and without pooling.
+ * Run with {@code -prof gc} to see the garbage generated per frame.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AnimatorBench
+{
+    @Param({"1000", "10000"}) public int tweens;
+
+    /** The maximum duration of each tween, in milliseconds. */
+    @Param({"100", "1000000"}) public int duration;
+
+    /** Whether the animator recycles its tweens. */
+    @Param({"false", "true"}) public boolean pooled;
+
+    public static class Target implements Animation.Value {
+        public float value;
+        public float initial () { return value; }
+        public void set (float value) { this.value = value; }
+    }
+
+    @Setup public void setup () {
+        _rand = new Random(42);
+        _targets = new Target[tweens];
+        for (int ii = 0; ii < tweens; ii++) _targets[ii] = new Target();
+        _anim = new Animator().setPooled(pooled);
+        _clock = new Clock.Source(16);
+        topUp();
+    }
+
+    @Benchmark public Animator paint () {
+        _clock.update(16);
+        _clock.paint(0);
+        _anim.paint(_clock);
+        topUp();
+        return _anim;
+    }
+
+    protected void topUp () {
+        for (int ii = _anim._anims.size() + _anim._nanims.size(); ii < tweens; ii++) {
+            _anim.tween(_targets[ii]).to(1).in(1 + _rand.nextInt(duration)).easeInOut();
+        }
+    }
+
+    protected Random _rand;
+    protected Target[] _targets;
+    protected Animator _anim;
+    protected Clock.Source _clock;
+}
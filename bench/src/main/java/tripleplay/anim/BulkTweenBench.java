@@ -0,0 +1,90 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.anim;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import playn.core.Layer;
+import playn.core.util.Clock;
+import static playn.core.PlayN.graphics;
+
+import tripleplay.bench.Headless;
+import tripleplay.util.Interpolator;
+
+/**
+ * Compares a frame of thousands of long running ease-in-out tweens, run by an {@link Animator}
+ * (with an {@link Animation.One} per value) and by a {@link BulkTween}. The tweens target either
+ * the x-translation of layers, or plain values.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BulkTweenBench
+{
+    @Param({"1000", "10000"}) public int tweens;
+
+    /** Whether the tweens target layers, or plain values. */
+    @Param({"true", "false"}) public boolean layers;
+
+    public static class Values implements BulkTween.Target {
+        public final float[] values;
+        public Values (int count) { values = new float[count]; }
+        public float get (int id) { return values[id]; }
+        public void set (int id, float value) { values[id] = value; }
+    }
+
+    @Setup public void setup () {
+        Headless.init();
+        _animator = new Animator();
+        _bulk = new BulkTween();
+        final Values values = new Values(tweens);
+        for (int ii = 0; ii < tweens; ii++) {
+            if (layers) {
+                Layer layer = graphics().createGroupLayer();
+                _animator.tweenX(layer).to(100).in(DURATION).easeInOut();
+                _bulk.tween(layer, BulkTween.X, 100, DURATION, Interpolator.EASE_INOUT);
+            } else {
+                final int id = ii;
+                _animator.tween(new Animation.Value() {
+                    public float initial () { return values.get(id); }
+                    public void set (float value) { values.set(id, value); }
+                }).to(100).in(DURATION).easeInOut();
+                _bulk.tween(values, ii, 100, DURATION, Interpolator.EASE_INOUT);
+            }
+        }
+        _clock = new Clock.Source(16);
+        tick();
+    }
+
+    @Benchmark public Animator animator () {
+        tick();
+        _animator.paint(_clock);
+        return _animator;
+    }
+
+    @Benchmark public BulkTween bulk () {
+        tick();
+        _bulk.paint(_clock);
+        return _bulk;
+    }
+
+    protected void tick () {
+        _clock.update(16);
+        _clock.paint(0);
+    }
+
+    // long enough that no tween completes during a run
+    protected static final float DURATION = 1e9f;
+
+    protected Animator _animator;
+    protected BulkTween _bulk;
+    protected Clock.Source _clock;
+}
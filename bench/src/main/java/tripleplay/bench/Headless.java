@@ -0,0 +1,25 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.bench;
+
+import playn.java.JavaPlatform;
+
+/**
+ * Registers a headless Java platform, for benchmarks of code that needs PlayN services.
+ */
+public class Headless
+{
+    /** Registers the headless platform, if it has not already been registered. */
+    public static synchronized void init () {
+        if (_registered) return;
+        JavaPlatform.Config config = new JavaPlatform.Config();
+        config.headless = true;
+        JavaPlatform.register(config);
+        _registered = true;
+    }
+
+    protected static boolean _registered;
+}
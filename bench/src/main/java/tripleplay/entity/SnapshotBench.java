@@ -0,0 +1,63 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.entity;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures {@link World#snapshot} and {@link World#restore} of a world with 100k entities. The
+ * size of the snapshot is reported when the benchmark is set up.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SnapshotBench
+{
+    @Param({"100000"}) public int entities;
+
+    public static class TestWorld extends World {
+        public final Component.XY pos = new Component.XY(this);
+        public final Component.XY vel = new Component.XY(this);
+        public final Component.IScalar hp = new Component.IScalar(this);
+        public final Component.FScalar heat = new Component.FScalar(this);
+        public final Component.DenseXY dpos = new Component.DenseXY(this);
+    }
+
+    @Setup public void setup () {
+        Random rand = new Random(42);
+        _world = new TestWorld();
+        for (int ii = 0; ii < entities; ii++) {
+            Entity e = _world.create(true).add(_world.pos, _world.hp);
+            _world.pos.set(e.id, rand.nextFloat(), rand.nextFloat());
+            _world.hp.set(e.id, rand.nextInt(100));
+            if (ii % 2 == 0) e.add(_world.vel, _world.heat, _world.dpos);
+        }
+        _world.update(16);
+        _snapshot = _world.snapshot();
+        java.lang.System.out.println(
+            "\nSnapshot of " + entities + " entities: " + _snapshot.length + " bytes");
+        _target = new TestWorld();
+    }
+
+    @Benchmark public byte[] save () {
+        return _world.snapshot();
+    }
+
+    @Benchmark public World restore () throws IOException {
+        _target.restore(_snapshot);
+        return _target;
+    }
+
+    protected TestWorld _world, _target;
+    protected byte[] _snapshot;
+}
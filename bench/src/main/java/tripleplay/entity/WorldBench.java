@@ -0,0 +1,79 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.entity;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures {@link World#update} with many systems while entities churn their components, for
+ * {@link FilteredSystem}s and for equivalent systems that use {@link System#isInterested}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WorldBench
+{
+    @Param({"60"}) public int systems;
+    @Param({"1000", "10000"}) public int entities;
+    @Param({"true", "false"}) public boolean filtered;
+
+    /** The fraction of entities that add or remove a component every frame. */
+    public static final float CHURN = 0.1f;
+    public static final int COMPONENTS = 16;
+
+    @Setup public void setup () {
+        Random rand = new Random(42);
+        _world = new World();
+        _comps = new Component[COMPONENTS];
+        for (int ii = 0; ii < COMPONENTS; ii++) _comps[ii] = new Component.IScalar(_world);
+        for (int ii = 0; ii < systems; ii++) {
+            final Component a = _comps[rand.nextInt(COMPONENTS)];
+            final Component b = _comps[rand.nextInt(COMPONENTS)];
+            final Component x = _comps[rand.nextInt(COMPONENTS)];
+            if (filtered) new FilteredSystem(_world, ii % 4, new Component[] { a, b },
+                                             new Component[] { x }) {};
+            else new System(_world, ii % 4) {
+                @Override protected boolean isInterested (Entity entity) {
+                    return entity.has(a) && entity.has(b) && !entity.has(x);
+                }
+            };
+        }
+        _ents = new Entity[entities];
+        for (int ii = 0; ii < entities; ii++) {
+            Entity e = _ents[ii] = _world.create(true);
+            for (int cc = 0; cc < 4; cc++) e.add(_comps[rand.nextInt(COMPONENTS)]);
+        }
+        _world.update(16);
+        _rand = new Random(42);
+    }
+
+    @Benchmark public World churnAndUpdate () {
+        for (int ii = 0, ll = (int)(entities * CHURN); ii < ll; ii++) {
+            Entity e = _ents[_rand.nextInt(entities)];
+            Component c = _comps[_rand.nextInt(COMPONENTS)];
+            if (e.has(c)) e.remove(c);
+            else e.add(c);
+        }
+        _world.update(16);
+        return _world;
+    }
+
+    @Benchmark public World steadyUpdate () {
+        _world.update(16);
+        return _world;
+    }
+
+    protected World _world;
+    protected Component[] _comps;
+    protected Entity[] _ents;
+    protected Random _rand;
+}
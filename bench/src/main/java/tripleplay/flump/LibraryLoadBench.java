@@ -0,0 +1,96 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.flump;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import playn.core.PlayN;
+
+import tripleplay.bench.Headless;
+
+/**
+ * Compares reading the same Flump library (100 movies of 8 layers of 20 keyframes, referencing
+ * 50 textures) from JSON, from the version 1 binary format and from the version 2 binary format,
+ * the latter from a heap buffer and from a direct buffer (as when memory-mapped).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LibraryLoadBench
+{
+    @Setup public void setup () throws IOException {
+        Headless.init();
+        StringBuilder buf = new StringBuilder("{\"frameRate\": 30, \"movies\": [");
+        for (int mm = 0; mm < MOVIES; mm++) {
+            if (mm > 0) buf.append(",");
+            buf.append("{\"id\": \"movie").append(mm).append("\", \"layers\": [");
+            for (int ll = 0; ll < LAYERS; ll++) {
+                if (ll > 0) buf.append(",");
+                buf.append("{\"name\": \"layer").append(ll).append("\", \"keyframes\": [");
+                for (int kk = 0; kk < KEYFRAMES; kk++) {
+                    if (kk > 0) buf.append(",");
+                    buf.append("{\"duration\": 2, \"ref\": \"texture").append((mm+ll) % TEXTURES).
+                        append("\", \"loc\": [").append(kk * 1.5f).append(", ").append(ll).
+                        append("], \"scale\": [1.25, 1.25], \"alpha\": 0.75, \"ease\": 0.5");
+                    if (kk == 0) buf.append(", \"label\": \"start\"");
+                    buf.append("}");
+                }
+                buf.append("]}");
+            }
+            buf.append("]}");
+        }
+        buf.append("], \"textureGroups\": [{\"atlases\": [{\"file\": \"atlas0.png\", " +
+                   "\"textures\": [");
+        for (int tt = 0; tt < TEXTURES; tt++) {
+            if (tt > 0) buf.append(",");
+            buf.append("{\"symbol\": \"texture").append(tt).append("\", \"origin\": [4, 4], ").
+                append("\"rect\": [").append(tt * 16).append(", 0, 16, 16]}");
+        }
+        buf.append("]}]}]}");
+        _json = buf.toString();
+
+        LibraryData lib = new LibraryData(PlayN.json().parse(_json));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        lib.write(new DataOutputStream(bytes));
+        _v1 = bytes.toByteArray();
+        bytes.reset();
+        lib.writeV2(new DataOutputStream(bytes));
+        _v2 = bytes.toByteArray();
+        _v2Direct = ByteBuffer.allocateDirect(_v2.length);
+        _v2Direct.put(_v2).flip();
+    }
+
+    @Benchmark public LibraryData json () {
+        return new LibraryData(PlayN.json().parse(_json));
+    }
+
+    @Benchmark public LibraryData v1 () throws IOException {
+        return LibraryData.read(ByteBuffer.wrap(_v1));
+    }
+
+    @Benchmark public LibraryData v2 () throws IOException {
+        return LibraryData.read(ByteBuffer.wrap(_v2));
+    }
+
+    @Benchmark public LibraryData v2Direct () throws IOException {
+        return LibraryData.read(_v2Direct.duplicate());
+    }
+
+    protected String _json;
+    protected byte[] _v1, _v2;
+    protected ByteBuffer _v2Direct;
+
+    protected static final int MOVIES = 100, LAYERS = 8, KEYFRAMES = 20, TEXTURES = 50;
+}
@@ -0,0 +1,71 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.flump;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import pythagoras.f.Point;
+
+import static playn.core.PlayN.graphics;
+
+import tripleplay.bench.Headless;
+
+/**
+ * Measures a frame of 200 instances of a movie with eight tweened layers, played from its
+ * keyframes and from baked frame data (see {@link Movie.Symbol#bake}).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MovieBench
+{
+    @Param({"false", "true"}) public boolean baked;
+
+    @Setup public void setup () {
+        Headless.init();
+        List<LayerData> layers = new ArrayList<LayerData>();
+        for (int ii = 0; ii < LAYERS; ii++) {
+            List<KeyframeData> keyframes = new ArrayList<KeyframeData>();
+            for (int kk = 0; kk < 6; kk++) {
+                float skew = (kk % 2) * 0.2f, scale = 1 + (kk % 3) * 0.25f;
+                keyframes.add(new KeyframeData(
+                    kk*10, 10, null, new Point(kk*5, ii*10), new Point(scale, scale),
+                    new Point(skew, -skew), new Point(4, 4), true, 1 - kk*0.1f, true,
+                    (kk % 2 == 0) ? 0.5f : 0, "texture"));
+            }
+            layers.add(new LayerData("layer" + ii, keyframes));
+        }
+        Movie.Symbol symbol = new Movie.Symbol(30, "movie", layers);
+        if (baked) symbol.bake();
+        Texture.Symbol texture = new Texture.Symbol(
+            "texture", new Point(0, 0), graphics().createImage(8, 8).subImage(0, 0, 8, 8));
+        new Library(30, Arrays.asList(symbol), Arrays.asList(texture));
+
+        _movies = new Movie[INSTANCES];
+        for (int ii = 0; ii < INSTANCES; ii++) {
+            _movies[ii] = symbol.createInstance();
+            // stagger the instances, so that they're on different frames
+            _movies[ii].setPosition(ii * 7.3f);
+        }
+    }
+
+    @Benchmark public Movie[] paint () {
+        for (Movie movie : _movies) movie.paint(1000/60f);
+        return _movies;
+    }
+
+    protected Movie[] _movies;
+
+    protected static final int LAYERS = 8, INSTANCES = 200;
+}
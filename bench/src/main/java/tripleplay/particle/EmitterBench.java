@@ -0,0 +1,68 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.particle;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import playn.core.Image;
+import static playn.core.PlayN.graphics;
+
+import tripleplay.bench.Headless;
+import tripleplay.particle.effect.Alpha;
+import tripleplay.particle.effect.Gravity;
+import tripleplay.particle.effect.Move;
+import tripleplay.particle.init.Lifespan;
+import tripleplay.particle.init.Transform;
+import tripleplay.particle.init.Velocity;
+import tripleplay.util.Interpolator;
+import tripleplay.util.Randoms;
+
+/**
+ * Measures {@link Emitter#fastForward} of a newly created emitter to its steady state of 10,000
+ * particles (a constant generator of 2,000 particles per second, with a lifespan of five
+ * seconds), in steps of {@link Emitter#PREWARM_STEP} and of {@link Emitter#FAST_FORWARD_STEP}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EmitterBench
+{
+    @Param({"100", "16.667"}) public float stepMillis;
+
+    @Setup public void setup () {
+        Headless.init();
+        _parts = new Particles();
+        _image = graphics().createImage(4, 4);
+    }
+
+    @Benchmark public int prewarm () {
+        Emitter emitter = _parts.createEmitter(PARTICLES, _image);
+        emitter.generator = Generator.constant(PARTICLES / LIFESPAN);
+        emitter.initters.add(Lifespan.constant(LIFESPAN));
+        emitter.initters.add(Transform.layer(emitter.layer));
+        emitter.initters.add(Velocity.randomNormal(_rando, 0, 10));
+        emitter.effectors.add(new Move());
+        emitter.effectors.add(new Gravity(10));
+        emitter.effectors.add(Alpha.byAge(Interpolator.EASE_OUT));
+        emitter.fastForward(LIFESPAN * 1000, stepMillis);
+        int live = emitter._buffer.liveCount();
+        emitter.destroy();
+        return live;
+    }
+
+    protected static final int PARTICLES = 10000;
+    protected static final float LIFESPAN = 5;
+
+    protected Particles _parts;
+    protected Image _image;
+    protected final Randoms _rando = Randoms.with(new Random(42));
+}
@@ -0,0 +1,102 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.particle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import tripleplay.bench.Headless;
+import tripleplay.particle.effect.Alpha;
+import tripleplay.particle.effect.Drag;
+import tripleplay.particle.effect.Fuse;
+import tripleplay.particle.effect.Gravity;
+import tripleplay.particle.effect.Move;
+import tripleplay.particle.init.Lifespan;
+import tripleplay.particle.init.Transform;
+import tripleplay.particle.init.Velocity;
+import tripleplay.util.Interpolator;
+import tripleplay.util.Randoms;
+
+/**
+ * Measures {@link ParticleBuffer#add} on a nearly full buffer (as with a constant emitter in its
+ * steady state) and {@link ParticleBuffer#apply} of the standard effectors to a full buffer, both
+ * serially, with the effectors fused via {@link Fuse}, and in parallel via an {@link
+ * ExecutorRunner}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ParticleBufferBench
+{
+    @Param({"1024", "65536"}) public int maxParticles;
+
+    /** The number of particles that die and are replaced each frame. */
+    @Param({"32"}) public int churn;
+
+    /** Whether particles die in the order in which they were added (as with a constant emitter
+     * and a fixed lifespan), or at random. */
+    @Param({"true", "false"}) public boolean ordered;
+
+    @Setup public void setup () {
+        Headless.init();
+        Randoms rando = Randoms.with(new Random(42));
+        _initters.add(Lifespan.constant(1000));
+        _initters.add(Transform.identity());
+        _initters.add(Velocity.randomNormal(rando, 0, 1));
+        _effectors.add(new Move());
+        _effectors.add(new Gravity());
+        // a drag of one, as the same particles are updated over and over, and any lesser drag
+        // would soon reduce their velocities to denormals, which are very slow to compute with
+        _effectors.add(new Drag(1f));
+        _effectors.add(Alpha.byAge(Interpolator.EASE_OUT));
+        _buffer = new ParticleBuffer(maxParticles);
+        _buffer.add(maxParticles, 0, _initters);
+        _rand = new Random(42);
+        _runner = ExecutorRunner.create();
+        _fused = Fuse.effectors(_effectors);
+    }
+
+    @Benchmark public ParticleBuffer add () {
+        // kill off some particles and then replace them
+        for (int ii = 0; ii < churn; ii++) {
+            int idx;
+            if (ordered) {
+                idx = _oldest;
+                _oldest = (_oldest + 1) % maxParticles;
+            } else idx = _rand.nextInt(maxParticles);
+            _buffer.setAlive(idx, false);
+        }
+        _buffer.add(churn, 0, _initters);
+        return _buffer;
+    }
+
+    @Benchmark public int apply () {
+        return _buffer.apply(_effectors, 1, 1/60f);
+    }
+
+    @Benchmark public int applyFused () {
+        return _buffer.apply(_fused, 1, 1/60f);
+    }
+
+    @Benchmark public int applyParallel () {
+        return _buffer.apply(_effectors, 1, 1/60f, _runner);
+    }
+
+    protected ParticleBuffer _buffer;
+    protected Random _rand;
+    protected int _oldest;
+    protected ParticleBuffer.Runner _runner;
+    protected final List<Initializer> _initters = new ArrayList<Initializer>();
+    protected final List<Effector> _effectors = new ArrayList<Effector>();
+    protected List<Effector> _fused;
+}
@@ -0,0 +1,84 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.syncdb;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import react.RMap;
+
+import playn.core.Platform;
+import playn.core.StubPlatform;
+
+/**
+ * Measures adding and removing a key in a {@link SyncDB} map that holds many entries, and
+ * tracking the modification of a property while many others are unsynced.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SyncDBBench
+{
+    public static class BenchDB extends SyncDB {
+        public final RMap<String,Integer> items = map(
+            "it", Codec.STRING, Codec.INT, Resolver.INTMAX);
+
+        public BenchDB (Platform platform) {
+            super(platform);
+        }
+    }
+
+    @Param({"10000"}) public int entries;
+
+    @Setup public void setup () {
+        // this platform never runs deferred actions, so modifications are never flushed, and
+        // putRemove measures only the map's storage
+        _platform = new StubPlatform() {
+            @Override public void invokeLater (Runnable runnable) {}
+        };
+        BenchDB db = new BenchDB(_platform);
+        for (int ii = 0; ii < entries; ii++) db.items.put("item" + ii, ii);
+        _db = new BenchDB(_platform);
+
+        // this database runs deferred actions immediately, so every new modification is flushed
+        _dirty = new BenchDB(new StubPlatform());
+        for (int ii = 0; ii < entries; ii++) _dirty.items.put("item" + ii, ii);
+    }
+
+    @Benchmark public RMap<String,Integer> putRemove () {
+        String key = "new" + (_next++ % 1000);
+        _db.items.put(key, 1);
+        _db.items.remove(key);
+        return _db.items;
+    }
+
+    /** Modifies a property and syncs it, twice, with {@link #entries} other properties
+     * unsynced. */
+    @Benchmark public BenchDB modifyAndSync () {
+        String key = "new" + (_next++ % 1000);
+        Map<String,Integer> mods = Collections.singletonMap(
+            DBUtil.mapKey("it", key, Codec.STRING), 1);
+        _dirty.items.put(key, 1);
+        _dirty.noteSync(0, mods);
+        _dirty.items.remove(key);
+        _dirty.noteSync(0, mods);
+        return _dirty;
+    }
+
+    @Benchmark public BenchDB load () {
+        return new BenchDB(_platform);
+    }
+
+    protected Platform _platform;
+    protected BenchDB _db, _dirty;
+    protected int _next;
+}
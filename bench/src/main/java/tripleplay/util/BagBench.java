@@ -0,0 +1,59 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import tripleplay.entity.IntBag;
+
+/**
+ * Measures adding to and removing from {@link Bag} and {@link IntBag}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BagBench
+{
+    @Param({"1000"}) public int size;
+
+    @Setup public void setup () {
+        _elems = new Integer[size];
+        for (int ii = 0; ii < size; ii++) _elems[ii] = ii;
+    }
+
+    @Benchmark public Bag<Integer> bagAddRemoveLast () {
+        for (int ii = 0; ii < size; ii++) _bag.add(_elems[ii]);
+        while (!_bag.isEmpty()) _bag.removeLast();
+        return _bag;
+    }
+
+    @Benchmark public Bag<Integer> bagAddRemove () {
+        for (int ii = 0; ii < size; ii++) _bag.add(_elems[ii]);
+        for (int ii = 0; ii < size; ii++) _bag.remove(_elems[ii]);
+        return _bag;
+    }
+
+    @Benchmark public IntBag intBagAddRemoveLast () {
+        for (int ii = 0; ii < size; ii++) _ibag.add(ii);
+        while (!_ibag.isEmpty()) _ibag.removeLast();
+        return _ibag;
+    }
+
+    @Benchmark public IntBag intBagAddRemove () {
+        for (int ii = 0; ii < size; ii++) _ibag.add(ii);
+        for (int ii = 0; ii < size; ii++) _ibag.remove(ii);
+        return _ibag;
+    }
+
+    protected Integer[] _elems;
+    protected final Bag<Integer> _bag = Bag.create();
+    protected final IntBag _ibag = new IntBag();
+}
@@ -0,0 +1,48 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures {@link Deflater} encoding and {@link Inflater} decoding of a mixed record.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ConflaterBench
+{
+    @Setup public void setup () {
+        _encoded = deflate();
+    }
+
+    @Benchmark public String deflate () {
+        Deflater d = new Deflater();
+        for (int ii = 0; ii < 16; ii++) {
+            d.addBool(ii % 2 == 0).addByte(ii).addShort(ii * 100).addInt(ii * 100000).
+                addVarInt(ii * 1000).addString("item" + ii);
+        }
+        return d.encoded();
+    }
+
+    @Benchmark public int inflate () {
+        Inflater i = new Inflater(_encoded);
+        int sum = 0;
+        for (int ii = 0; ii < 16; ii++) {
+            if (i.popBool()) sum++;
+            sum += i.popByte() + i.popShort() + i.popInt() + i.popVarInt();
+            sum += i.popString().length();
+        }
+        return sum;
+    }
+
+    protected String _encoded;
+}
@@ -0,0 +1,52 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares evaluating the standard {@link Interpolator}s exactly and via {@link
+ * Interpolator#tabulate}, and measures a (tabulated) {@link Interpolator#bezier}. Each op
+ * evaluates the interpolator at 1000 points in time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class InterpolatorBench
+{
+    @Param({"EASE_INOUT", "EASE_IN_BACK", "BOUNCE_OUT", "EASE_OUT_ELASTIC"}) public String interp;
+
+    @Setup public void setup () throws Exception {
+        _exact = (Interpolator)Interpolator.class.getField(interp).get(null);
+        _tabulated = _exact.tabulate();
+        _bezier = Interpolator.bezier(0.25f, 0.1f, 0.25f, 1);
+    }
+
+    @Benchmark public float exact () {
+        return evaluate(_exact);
+    }
+
+    @Benchmark public float tabulated () {
+        return evaluate(_tabulated);
+    }
+
+    @Benchmark public float bezier () {
+        return evaluate(_bezier);
+    }
+
+    protected float evaluate (Interpolator interp) {
+        float sum = 0;
+        for (int ii = 0; ii < 1000; ii++) sum += interp.apply(10, 100, ii, 1000);
+        return sum;
+    }
+
+    protected Interpolator _exact, _tabulated, _bezier;
+}
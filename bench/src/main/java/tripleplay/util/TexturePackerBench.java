@@ -0,0 +1,44 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.util;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import pythagoras.i.IRectangle;
+
+import playn.core.Surface;
+
+/**
+ * Measures the placement phase of {@link TexturePacker#pack} for many randomly sized items. The
+ * rendering phase requires a GL context and is not measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TexturePackerBench
+{
+    @Param({"200"}) public int items;
+
+    @Benchmark public List<TexturePacker.Atlas> layout () {
+        Random rand = new Random(42);
+        TexturePacker packer = new TexturePacker();
+        for (int ii = 0; ii < items; ii++) {
+            packer.add("item" + ii, 8 + rand.nextInt(120), 8 + rand.nextInt(120), NOOP);
+        }
+        return packer.layout();
+    }
+
+    protected static final TexturePacker.Renderer NOOP = new TexturePacker.Renderer() {
+        public void render (Surface surface, IRectangle bounds) {}
+    };
+}
@@ -0,0 +1,40 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures {@link Timer#update} with many registered repeating actions.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TimerBench
+{
+    @Param({"1000"}) public int actions;
+
+    @Setup public void setup () {
+        _timer = new Timer(0);
+        Runnable action = new Runnable() { public void run () { _ran++; }};
+        for (int ii = 0; ii < actions; ii++) _timer.every(1 + ii % 100, action);
+    }
+
+    @Benchmark public int update () {
+        _now += 16;
+        _timer.update(_now);
+        return _ran;
+    }
+
+    protected Timer _timer;
+    protected long _now;
+    protected int _ran;
+}
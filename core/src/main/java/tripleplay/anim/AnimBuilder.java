@@ -45,82 +45,70 @@ public abstract class AnimBuilder
      * Starts a tween on the supplied layer's x/y-translation.
      */
     public Animation.Two tweenXY (Layer layer) {
-        return add(new Animation.Two(onXY(layer)));
+        return tweenLayerXY(LayerXYValue.TRANSLATION, layer);
     }
 
     /**
      * Starts a tween on the supplied layer's x-translation.
      */
     public Animation.One tweenX (Layer layer) {
-        return tween(onX(layer));
+        return tweenLayer(LayerValue.X, layer);
     }
 
     /**
      * Starts a tween on the supplied layer's y-translation.
      */
     public Animation.One tweenY (Layer layer) {
-        return tween(onY(layer));
+        return tweenLayer(LayerValue.Y, layer);
     }
 
     /**
      * Starts a tween on the supplied layer's origin.
      */
     public Animation.Two tweenOrigin (Layer layer) {
-        return add(new Animation.Two(onOrigin(layer)));
+        return tweenLayerXY(LayerXYValue.ORIGIN, layer);
     }
 
     /**
      * Starts a tween on the supplied layer's rotation.
      */
-    public Animation.One tweenRotation (final Layer layer) {
-        Asserts.checkNotNull(layer);
-        return tween(new Animation.Value() {
-            public float initial () { return layer.rotation(); }
-            public void set (float value) { layer.setRotation(value); }
-        });
+    public Animation.One tweenRotation (Layer layer) {
+        return tweenLayer(LayerValue.ROTATION, layer);
     }
 
     /**
      * Starts a tween on the supplied layer's x/y-scale.
      */
-    public Animation.One tweenScale (final Layer layer) {
-        Asserts.checkNotNull(layer);
-        return tween(new Animation.Value() {
-            public float initial () { return layer.scaleX(); }
-            public void set (float value) { layer.setScale(value); }
-        });
+    public Animation.One tweenScale (Layer layer) {
+        return tweenLayer(LayerValue.SCALE, layer);
     }
 
     /**
      * Starts a tween on the supplied layer's x/y-scale.
      */
     public Animation.Two tweenScaleXY (Layer layer) {
-        return add(new Animation.Two(onScaleXY(layer)));
+        return tweenLayerXY(LayerXYValue.SCALE, layer);
     }
 
     /**
      * Starts a tween on the supplied layer's x-scale.
      */
     public Animation.One tweenScaleX (Layer layer) {
-        return tween(onScaleX(layer));
+        return tweenLayer(LayerValue.SCALE_X, layer);
     }
 
     /**
      * Starts a tween on the supplied layer's y-scale.
      */
     public Animation.One tweenScaleY (Layer layer) {
-        return tween(onScaleY(layer));
+        return tweenLayer(LayerValue.SCALE_Y, layer);
     }
 
     /**
      * Starts a tween on the supplied layer's transparency.
      */
-    public Animation.One tweenAlpha (final Layer layer) {
-        Asserts.checkNotNull(layer);
-        return tween(new Animation.Value() {
-            public float initial () { return layer.alpha(); }
-            public void set (float value) { layer.setAlpha(value); }
-        });
+    public Animation.One tweenAlpha (Layer layer) {
+        return tweenLayer(LayerValue.ALPHA, layer);
     }
 
     /**
@@ -129,7 +117,8 @@ public abstract class AnimBuilder
      * will be called each time the tween is updated with the intermediate values.
      */
     public Animation.One tween (Animation.Value value) {
-        return add(new Animation.One(value));
+        AnimPool pool = pool();
+        return add(pool == null ? new Animation.One(value) : pool.one(value));
     }
 
     /**
@@ -373,62 +362,145 @@ public abstract class AnimBuilder
         }});
     }
 
-    protected static Animation.Value onX (final Layer layer) {
+    /**
+     * Returns the pool from which this builder obtains its tweens, or null if they are not pooled.
+     * See {@link Animator#setPooled}.
+     */
+    protected AnimPool pool () {
+        return null;
+    }
+
+    protected Animation.One tweenLayer (int prop, Layer layer) {
+        Asserts.checkNotNull(layer);
+        AnimPool pool = pool();
+        return (pool == null) ? add(new Animation.One(new LayerValue(prop, layer))) :
+            add(pool.one(pool.value(prop, layer)));
+    }
+
+    protected Animation.Two tweenLayerXY (int prop, Layer layer) {
+        Asserts.checkNotNull(layer);
+        AnimPool pool = pool();
+        return (pool == null) ? add(new Animation.Two(new LayerXYValue(prop, layer))) :
+            add(pool.two(pool.xyValue(prop, layer)));
+    }
+
+    protected static Animation.Value onX (Layer layer) {
         Asserts.checkNotNull(layer);
-        return new Animation.Value() {
-            public float initial () { return layer.tx(); }
-            public void set (float value) { layer.setTx(value); }
-        };
+        return new LayerValue(LayerValue.X, layer);
     }
 
-    protected static Animation.Value onY (final Layer layer) {
+    protected static Animation.Value onY (Layer layer) {
         Asserts.checkNotNull(layer);
-        return new Animation.Value() {
-            public float initial () { return layer.ty(); }
-            public void set (float value) { layer.setTy(value); }
-        };
+        return new LayerValue(LayerValue.Y, layer);
     }
 
-    protected static Animation.XYValue onXY (final Layer layer) {
+    protected static Animation.XYValue onXY (Layer layer) {
         Asserts.checkNotNull(layer);
-        return new Animation.XYValue() {
-            public float initialX () { return layer.tx(); }
-            public float initialY () { return layer.ty(); }
-            public void set (float x, float y) { layer.setTranslation(x, y); }
-        };
+        return new LayerXYValue(LayerXYValue.TRANSLATION, layer);
     }
 
-    protected static Animation.Value onScaleX (final Layer layer) {
+    protected static Animation.Value onScaleX (Layer layer) {
         Asserts.checkNotNull(layer);
-        return new Animation.Value() {
-            public float initial () { return layer.scaleX(); }
-            public void set (float value) { layer.setScaleX(value); }
-        };
+        return new LayerValue(LayerValue.SCALE_X, layer);
     }
 
-    protected static Animation.Value onScaleY (final Layer layer) {
+    protected static Animation.Value onScaleY (Layer layer) {
         Asserts.checkNotNull(layer);
-        return new Animation.Value() {
-            public float initial () { return layer.scaleY(); }
-            public void set (float value) { layer.setScaleY(value); }
-        };
+        return new LayerValue(LayerValue.SCALE_Y, layer);
     }
 
-    protected static Animation.XYValue onScaleXY (final Layer layer) {
+    protected static Animation.XYValue onScaleXY (Layer layer) {
         Asserts.checkNotNull(layer);
-        return new Animation.XYValue() {
-            public float initialX () { return layer.scaleX(); }
-            public float initialY () { return layer.scaleY(); }
-            public void set (float x, float y) { layer.setScale(x, y); }
-        };
+        return new LayerXYValue(LayerXYValue.SCALE, layer);
     }
 
-    protected static Animation.XYValue onOrigin (final Layer layer) {
+    protected static Animation.XYValue onOrigin (Layer layer) {
         Asserts.checkNotNull(layer);
-        return new Animation.XYValue() {
-            public float initialX () { return layer.originX(); }
-            public float initialY () { return layer.originY(); }
-            public void set (float x, float y) { layer.setOrigin(x, y); }
-        };
+        return new LayerXYValue(LayerXYValue.ORIGIN, layer);
+    }
+
+    /** Adapts a scalar property of a layer to {@link Animation.Value}. A single class handles
+     * all of the properties, so that instances can be reused (see {@link AnimPool}). */
+    protected static class LayerValue implements Animation.Value {
+        public static final int X = 0, Y = 1, ROTATION = 2, SCALE = 3, SCALE_X = 4, SCALE_Y = 5;
+        public static final int ALPHA = 6;
+
+        public int prop;
+        public Layer layer;
+
+        public LayerValue (int prop, Layer layer) {
+            this.prop = prop;
+            this.layer = layer;
+        }
+
+        public float initial () {
+            return get(layer, prop);
+        }
+
+        public void set (float value) {
+            set(layer, prop, value);
+        }
+
+        /** Returns the specified property of {@code layer}. */
+        public static float get (Layer layer, int prop) {
+            switch (prop) {
+            case X: return layer.tx();
+            case Y: return layer.ty();
+            case ROTATION: return layer.rotation();
+            case SCALE: case SCALE_X: return layer.scaleX();
+            case SCALE_Y: return layer.scaleY();
+            case ALPHA: default: return layer.alpha();
+            }
+        }
+
+        /** Updates the specified property of {@code layer}. */
+        public static void set (Layer layer, int prop, float value) {
+            switch (prop) {
+            case X: layer.setTx(value); break;
+            case Y: layer.setTy(value); break;
+            case ROTATION: layer.setRotation(value); break;
+            case SCALE: layer.setScale(value); break;
+            case SCALE_X: layer.setScaleX(value); break;
+            case SCALE_Y: layer.setScaleY(value); break;
+            case ALPHA: default: layer.setAlpha(value); break;
+            }
+        }
+    }
+
+    /** Adapts a pair of properties of a layer to {@link Animation.XYValue}. */
+    protected static class LayerXYValue implements Animation.XYValue {
+        public static final int TRANSLATION = 0, SCALE = 1, ORIGIN = 2;
+
+        public int prop;
+        public Layer layer;
+
+        public LayerXYValue (int prop, Layer layer) {
+            this.prop = prop;
+            this.layer = layer;
+        }
+
+        public float initialX () {
+            switch (prop) {
+            case TRANSLATION: return layer.tx();
+            case SCALE: return layer.scaleX();
+            case ORIGIN: default: return layer.originX();
+            }
+        }
+
+        public float initialY () {
+            switch (prop) {
+            case TRANSLATION: return layer.ty();
+            case SCALE: return layer.scaleY();
+            case ORIGIN: default: return layer.originY();
+            }
+        }
+
+        public void set (float x, float y) {
+            switch (prop) {
+            case TRANSLATION: layer.setTranslation(x, y); break;
+            case SCALE: layer.setScale(x, y); break;
+            case ORIGIN: default: layer.setOrigin(x, y); break;
+            }
+        }
     }
 }
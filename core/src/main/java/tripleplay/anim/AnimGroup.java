@@ -69,11 +69,48 @@ public class AnimGroup extends AnimBuilder
         return anim;
     }
 
+    /**
+     * Configures the rate at which time passes for the animations in this group, relative to the
+     * time of the animator (or group) on which it runs: 0.5 runs them at half speed, 2 at double
+     * speed. This may be changed while the group's animation is running. Default: 1.
+     */
+    public AnimGroup setTimeScale (float timeScale) {
+        if (timeScale < 0) throw new IllegalArgumentException(
+            "Time scale must not be negative [scale=" + timeScale + "]");
+        _timeScale = timeScale;
+        return this;
+    }
+
+    /** Returns this group's time scale. See {@link #setTimeScale}. */
+    public float timeScale () {
+        return _timeScale;
+    }
+
+    /**
+     * Pauses the animations in this group: they freeze where they are until the group is {@link
+     * #resume}d, while the rest of the animations on its animator continue.
+     */
+    public void pause () {
+        _paused = true;
+    }
+
+    /** Resumes the animations in this group after a {@link #pause}. */
+    public void resume () {
+        _paused = false;
+    }
+
+    /** Returns whether this group is paused. */
+    public boolean isPaused () {
+        return _paused;
+    }
+
     /**
      * Returns a single animation that will execute all of the animations in this group to
      * completion (in parallel) and will report itself as complete when the final animation in the
-     * group is complete. After calling this method, this group becomes unusable. It is not valid
-     * to call {@link #add} (or any other method) after {@link #toAnim}.
+     * group is complete. After calling this method, animations can no longer be added to this
+     * group: it is not valid to call {@link #add} (or the other methods that add animations)
+     * after {@link #toAnim}. {@link #setTimeScale}, {@link #pause} and {@link #resume} may still
+     * be called, to control the returned animation while it runs.
      */
     public Animation toAnim () {
         final Animation[] groupAnims = _anims.toArray(new Animation[_anims.size()]);
@@ -81,6 +118,7 @@ public class AnimGroup extends AnimBuilder
         return new Animation() {
             @Override protected void init (float time) {
                 super.init(time);
+                _local = _last = time;
                 for (int ii = 0; ii < groupAnims.length; ii++) {
                     (_curAnims[ii] = groupAnims[ii]).init(time);
                 }
@@ -92,6 +130,16 @@ public class AnimGroup extends AnimBuilder
             }
 
             @Override protected float apply (float time) {
+                // advance our local time by the (scaled) time elapsed since our last update
+                if (!_paused) _local += (time - _last) * _timeScale;
+                _last = time;
+                float remain = applyGroup(_local);
+                // convert our remaining (or overflow) time back into our animator's time
+                return (remain > 0 && (_paused || _timeScale == 0)) ? remain :
+                    (_timeScale == 0 ? 0 : remain / _timeScale);
+            }
+
+            protected float applyGroup (float time) {
                 float remain = Float.NEGATIVE_INFINITY;
                 int processed = 0;
                 for (int ii = 0; ii < _curAnims.length; ii++) {
@@ -112,9 +160,12 @@ public class AnimGroup extends AnimBuilder
             }
 
             protected Animator _animator;
+            protected float _local, _last;
             protected Animation[] _curAnims = new Animation[groupAnims.length];
         };
     }
 
     protected List<Animation> _anims = new ArrayList<Animation>();
+    protected float _timeScale = 1;
+    protected boolean _paused;
 }
@@ -0,0 +1,103 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.anim;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import playn.core.Layer;
+
+/**
+ * Recycles the tweens (and the layer value adapters) of a pooled {@link Animator}. See {@link
+ * Animator#setPooled}.
+ */
+class AnimPool
+{
+    /** Returns a tween on {@code target}, reusing a recycled tween if possible. */
+    public Animation.One one (Animation.Value target) {
+        int size = _ones.size();
+        Animation.One one = (size == 0) ? new Animation.One(target) : _ones.remove(size-1);
+        one._target = target;
+        return pooled(one);
+    }
+
+    /** Returns a tween on {@code value}, reusing a recycled tween if possible. */
+    public Animation.Two two (Animation.XYValue value) {
+        int size = _twos.size();
+        Animation.Two two = (size == 0) ? new Animation.Two(value) : _twos.remove(size-1);
+        two._value = value;
+        return pooled(two);
+    }
+
+    /** Returns an adapter for the specified property of {@code layer}. */
+    public AnimBuilder.LayerValue value (int prop, Layer layer) {
+        int size = _values.size();
+        if (size == 0) return new AnimBuilder.LayerValue(prop, layer);
+        AnimBuilder.LayerValue value = _values.remove(size-1);
+        value.prop = prop;
+        value.layer = layer;
+        return value;
+    }
+
+    /** Returns an adapter for the specified pair of properties of {@code layer}. */
+    public AnimBuilder.LayerXYValue xyValue (int prop, Layer layer) {
+        int size = _xyValues.size();
+        if (size == 0) return new AnimBuilder.LayerXYValue(prop, layer);
+        AnimBuilder.LayerXYValue value = _xyValues.remove(size-1);
+        value.prop = prop;
+        value.layer = layer;
+        return value;
+    }
+
+    /**
+     * Recycles the pooled animations in the completed (or cancelled) chain that starts with
+     * {@code root}. The animations in a chain are linked via {@link Animation#_next}, except that
+     * the last animation in a repeated chain links back to its {@link Animation.Repeat}.
+     */
+    public void recycleChain (Animation root) {
+        Animation repeat = null;
+        for (Animation anim = root; anim != null; ) {
+            Animation next = anim._next;
+            if (anim instanceof Animation.Repeat) repeat = anim;
+            if (anim._pooled) recycle(anim);
+            anim = (next == repeat) ? null : next;
+        }
+    }
+
+    protected void recycle (Animation anim) {
+        if (anim instanceof Animation.One) {
+            Animation.One one = (Animation.One)anim;
+            if (one._target instanceof AnimBuilder.LayerValue) {
+                AnimBuilder.LayerValue value = (AnimBuilder.LayerValue)one._target;
+                value.layer = null;
+                _values.add(value);
+            }
+            one.reset();
+            _ones.add(one);
+        } else if (anim instanceof Animation.Two) {
+            Animation.Two two = (Animation.Two)anim;
+            if (two._value instanceof AnimBuilder.LayerXYValue) {
+                AnimBuilder.LayerXYValue value = (AnimBuilder.LayerXYValue)two._value;
+                value.layer = null;
+                _xyValues.add(value);
+            }
+            two.reset();
+            _twos.add(two);
+        }
+    }
+
+    protected <T extends Animation> T pooled (T anim) {
+        anim._pool = this;
+        anim._pooled = true;
+        return anim;
+    }
+
+    protected final List<Animation.One> _ones = new ArrayList<Animation.One>();
+    protected final List<Animation.Two> _twos = new ArrayList<Animation.Two>();
+    protected final List<AnimBuilder.LayerValue> _values = new ArrayList<AnimBuilder.LayerValue>();
+    protected final List<AnimBuilder.LayerXYValue> _xyValues =
+        new ArrayList<AnimBuilder.LayerXYValue>();
+}
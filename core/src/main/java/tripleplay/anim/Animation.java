@@ -42,7 +42,9 @@ public abstract class Animation
 
     /** Used to cancel animations after they've been started. See {@link #handle}. */
     public interface Handle {
-        /** Cancels this animation. It will remove itself from its animator the next frame. */
+        /** Cancels this animation. It will remove itself from its animator the next frame. If the
+         * animation has completed and been recycled (see {@link Animator#setPooled}), this does
+         * nothing. */
         void cancel ();
     }
 
@@ -137,6 +139,13 @@ public abstract class Animation
             return tthis;
         }
 
+        @Override
+        protected void reset () {
+            super.reset();
+            _interp = Interpolator.LINEAR;
+            _duration = 1000;
+        }
+
         protected Interpolator _interp = Interpolator.LINEAR;
         protected float _duration = 1000;
     }
@@ -177,7 +186,15 @@ public abstract class Animation
             return getClass().getName() + " start:" + _start + " to " + _to;
         }
 
-        protected final Value _target;
+        @Override
+        protected void reset () {
+            super.reset();
+            _target = null;
+            _from = Float.MIN_VALUE;
+            _to = 0;
+        }
+
+        protected Value _target;
         protected float _from = Float.MIN_VALUE;
         protected float _to;
     }
@@ -233,7 +250,15 @@ public abstract class Animation
             return _duration - dt;
         }
 
-        protected final XYValue _value;
+        @Override
+        protected void reset () {
+            super.reset();
+            _value = null;
+            _fromx = _fromy = Float.MIN_VALUE;
+            _tox = _toy = 0;
+        }
+
+        protected XYValue _value;
         protected float _fromx = Float.MIN_VALUE, _fromy = Float.MIN_VALUE;
         protected float _tox, _toy;
     }
@@ -405,9 +430,12 @@ public abstract class Animation
      * (as yet uncompleted) animations in the chain.
      */
     public Handle handle () {
+        final Animation root = _root;
+        final int generation = root._generation;
         return new Handle() {
             @Override public void cancel () {
-                _root.cancel();
+                // if our chain has completed and its root been recycled, it's no longer ours
+                if (root._generation == generation) root.cancel();
             }
             @Override public String toString () {
                 return "handle:" + Animation.this;
@@ -450,6 +478,18 @@ public abstract class Animation
         _canceled = true;
     }
 
+    /** Restores this animation to its freshly constructed state, so that it can be reused. Called
+     * by {@link AnimPool} when recycling animations. */
+    protected void reset () {
+        _start = 0;
+        _root = this;
+        _current = null;
+        _next = null;
+        _canceled = false;
+        _pool = null;
+        _generation++;
+    }
+
     protected abstract float apply (float time);
 
     protected Animation next () {
@@ -470,9 +510,13 @@ public abstract class Animation
 
             anim._root = _root;
             anim._next = next();
+            if (anim._pool == null) anim._pool = _pool;
             _next = anim;
             return anim;
         }
+        @Override protected AnimPool pool () {
+            return _pool;
+        }
         protected abstract Animation next ();
         protected boolean _added;
     }
@@ -483,5 +527,12 @@ public abstract class Animation
     protected Animation _next;
     protected boolean _canceled;
 
+    /** The pool to which the animations in this chain are returned on completion, if any. */
+    protected AnimPool _pool;
+    /** Whether this animation was obtained from {@link #_pool} (and is thus recycled). */
+    protected boolean _pooled;
+    /** Incremented each time this animation is recycled, to detect stale handles. */
+    protected int _generation;
+
     protected static final Random RANDS = new Random();
 }
@@ -28,6 +28,20 @@ public class Animator extends AnimBuilder
         return new Animator();
     }
 
+    /**
+     * Configures whether this animator recycles its tweens. When pooled, the tweens created by
+     * this animator's fluent methods (and by the {@link Animation#then} builders of the chains it
+     * runs), along with the adapters that tween layer properties, are reused once their chain
+     * completes or is cancelled, so that heavy animation does not generate garbage. A recycled
+     * tween must not be used after its chain completes; in particular, one must not hold onto a
+     * tween and call {@code then()} on it later. Use {@link Animation#handle} to cancel a pooled
+     * chain, as handles become inert once their chain is recycled. Default: not pooled.
+     */
+    public Animator setPooled (boolean pooled) {
+        _pool = pooled ? new AnimPool() : null;
+        return this;
+    }
+
     /**
      * Causes this animator to delay the start of any subsequently registered animations until all
      * currently registered animations are complete.
@@ -43,12 +57,89 @@ public class Animator extends AnimBuilder
      * of the list before its delay timer will be started. This is probably what you want.
      */
     public void addBarrier (float delay) {
-        Barrier barrier = new Barrier(delay);
+        int free = _freeBarriers.size();
+        Barrier barrier = (free == 0) ? new Barrier() : _freeBarriers.remove(free-1);
+        barrier.expireDelay = delay;
         _barriers.add(barrier);
         // pushing a barrier causes subsequent animations to be accumulated separately
         _accum = barrier.accum;
     }
 
+    /**
+     * Configures the rate at which this animator's time advances relative to the clock passed to
+     * {@link #paint}: 0.5 runs all of its animations at half speed, 2 at double speed. Default: 1.
+     */
+    public Animator setTimeScale (float timeScale) {
+        if (timeScale < 0) throw new IllegalArgumentException(
+            "Time scale must not be negative [scale=" + timeScale + "]");
+        _timeScale = timeScale;
+        return this;
+    }
+
+    /** Returns this animator's time scale. See {@link #setTimeScale}. */
+    public float timeScale () {
+        return _timeScale;
+    }
+
+    /**
+     * Pauses this animator: its time stops advancing, so its animations freeze where they are
+     * (and newly added animations do not start) until it is {@link #resume}d.
+     */
+    public void pause () {
+        _paused = true;
+    }
+
+    /** Resumes this animator after a {@link #pause}. */
+    public void resume () {
+        _paused = false;
+    }
+
+    /** Returns whether this animator is paused. */
+    public boolean isPaused () {
+        return _paused;
+    }
+
+    /**
+     * Returns this animator's current time (in milliseconds), which is the time of its clock as
+     * of its first {@link #paint} (or zero, if it is {@link #seek}ed first), plus the (scaled)
+     * time that has elapsed since, not including the time during which it was paused, plus any
+     * time skipped via {@link #seek}.
+     */
+    public float time () {
+        return Float.isNaN(_time) ? 0 : _time;
+    }
+
+    /**
+     * Advances this animator to the specified time (see {@link #time}) in a single step. Seeking
+     * is forward only; see {@link #seek(float,float)}.
+     */
+    public void seek (float time) {
+        seek(time, 0);
+    }
+
+    /**
+     * Advances this animator to the specified time (see {@link #time}) in steps of at most {@code
+     * stepMillis}, as if it were painted once per step (or in one step if {@code stepMillis} is
+     * not positive). This works while paused, and is independent of the clock passed to {@link
+     * #paint} and of the time scale, so it can be used to run thousands of frames of animation in
+     * a headless test, or to skip to the end of a cutscene. Seeking is forward only: animations
+     * can only be advanced, not rewound, so every {@link Animation.Action} that is passed runs
+     * exactly once. To scrub backward to an arbitrary time, recreate the animations on a fresh
+     * animator and seek it forward to that time.
+     *
+     * @throws IllegalArgumentException if {@code time} is earlier than the current time.
+     */
+    public void seek (float time, float stepMillis) {
+        float now = time();
+        if (time < now) throw new IllegalArgumentException(
+            "Cannot seek backwards [time=" + now + ", to=" + time + "]");
+        if (stepMillis > 0) {
+            while (now + stepMillis < time) update(now += stepMillis);
+        }
+        update(time);
+        _time = time;
+    }
+
     /**
      * Performs per-frame animation processing. This should be called from your game's
      * {@code paint} method using an up-to-date clock.
@@ -56,24 +147,43 @@ public class Animator extends AnimBuilder
      * @param clock a clock containing the current alpha-adjusted time.
      */
     public void paint (Clock clock) {
-        float time = clock.time();
+        float clockTime = clock.time();
+        if (Float.isNaN(_time)) _time = clockTime;
+        // (if we were seeked before our first paint, we start from there)
+        else if (!_paused && !Float.isNaN(_clockTime)) {
+            _time += (clockTime - _clockTime) * _timeScale;
+        }
+        _clockTime = clockTime;
+        if (!_paused) update(_time);
+    }
 
+    /**
+     * Processes our animations as of the supplied animator {@link #time}.
+     */
+    protected void update (float time) {
         // if we have any animations queued up to be added, add those now
         if (!_nanims.isEmpty()) {
+            // (add them one by one, as addAll copies the added list into a temporary array)
             for (int ii = 0, ll = _nanims.size(); ii < ll; ii++) {
-                _nanims.get(ii).init(time);
+                Animation anim = _nanims.get(ii);
+                anim.init(time);
+                _anims.add(anim);
             }
-            _anims.addAll(_nanims);
             _nanims.clear();
         }
 
-        // now process all of our registered animations
+        // now process all of our registered animations, compacting the survivors toward the
+        // front of the list (in their original order) and trimming the completed ones from the
+        // end in one go, rather than removing each one as it completes
+        int live = 0;
         for (int ii = 0, ll = _anims.size(); ii < ll; ii++) {
-            if (_anims.get(ii).apply(this, time) <= 0) {
-                _anims.remove(ii--);
-                ll -= 1;
-            }
+            Animation anim = _anims.get(ii);
+            if (anim.apply(this, time) > 0) {
+                if (live != ii) _anims.set(live, anim);
+                live++;
+            } else if (anim._pool != null) anim._pool.recycleChain(anim);
         }
+        if (live < _anims.size()) _anims.subList(live, _anims.size()).clear();
 
         // if we have no active animations, or a timed barrier has expired, unblock a barrier
         boolean noActiveAnims = _anims.isEmpty() && _nanims.isEmpty();
@@ -84,6 +194,8 @@ public class Animator extends AnimBuilder
             if (_barriers.isEmpty()) {
                 _accum = _nanims;
             }
+            barrier.reset();
+            _freeBarriers.add(barrier);
         }
     }
 
@@ -105,18 +217,26 @@ public class Animator extends AnimBuilder
      * until cancelled or it reports that it has completed.
      */
     @Override public <T extends Animation> T add (T anim) {
+        // chains started on a pooled animator return their pooled tweens to our pool
+        if (anim._pool == null) anim._pool = _pool;
         _accum.add(anim);
         return anim;
     }
 
+    @Override protected AnimPool pool () {
+        return _pool;
+    }
+
     /** Implementation details, avert your eyes. */
     protected static class Barrier {
-        public List<Animation> accum = new ArrayList<Animation>();
+        public final List<Animation> accum = new ArrayList<Animation>();
         public float expireDelay;
         public float absoluteExpireTime;
 
-        public Barrier (float expireDelay) {
-            this.expireDelay = expireDelay;
+        public void reset () {
+            accum.clear();
+            expireDelay = 0;
+            absoluteExpireTime = 0;
         }
 
         public boolean expired (float time) {
@@ -126,8 +246,20 @@ public class Animator extends AnimBuilder
         }
     }
 
+    /** Our active animations, in the order in which they were started. */
     protected List<Animation> _anims = new ArrayList<Animation>();
     protected List<Animation> _nanims = new ArrayList<Animation>();
     protected List<Animation> _accum = _nanims;
+
+    /** Our current time, or NaN if we've not yet been painted. See {@link #time}. */
+    protected float _time = Float.NaN;
+    /** The clock time as of our last paint, or NaN if we've not yet been painted. */
+    protected float _clockTime = Float.NaN;
+    protected float _timeScale = 1;
+    protected boolean _paused;
     protected List<Barrier> _barriers = new ArrayList<Barrier>();
+    /** Barriers that have been unblocked, for reuse. */
+    protected List<Barrier> _freeBarriers = new ArrayList<Barrier>();
+    /** The pool from which we obtain tweens, or null if we're not pooled. */
+    protected AnimPool _pool;
 }
@@ -0,0 +1,315 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.anim;
+
+import playn.core.Asserts;
+import playn.core.Layer;
+import playn.core.util.Clock;
+
+import tripleplay.util.Interpolator;
+import tripleplay.util.Paintable;
+
+/**
+ * Tweens large numbers of scalar values at once, such as the positions and alphas of a swarm of
+ * sprites. This is an alternative to starting an {@link Animation.One} per value on an {@link
+ * Animator}: the parameters of all tweens are stored in parallel arrays, the standard
+ * interpolators are evaluated for all tweens in one tight loop, and the results are then written
+ * to their targets in a second loop. Each tween targets either a property of a layer, or a value
+ * in a {@link Target}, such as an entity component.
+ *
+ * <p> Unlike an {@link Animator}, a bulk tween does not support chaining, barriers or handles;
+ * tweens are simply started and run to completion (or are cancelled by target). As with an
+ * animator, the user of this class must call {@link #paint} with an up-to-date {@link Clock} on
+ * every frame, and tweens start on the first frame after they are added. </p>
+ */
+public class BulkTween
+    implements Paintable
+{
+    /** A collection of values addressed by integer id, such as an entity component. */
+    public interface Target {
+        /** Returns the value with the specified id. */
+        float get (int id);
+
+        /** Updates the value with the specified id. */
+        void set (int id, float value);
+    }
+
+    /** Identifies a layer's x-translation. */
+    public static final int X = AnimBuilder.LayerValue.X;
+    /** Identifies a layer's y-translation. */
+    public static final int Y = AnimBuilder.LayerValue.Y;
+    /** Identifies a layer's rotation. */
+    public static final int ROTATION = AnimBuilder.LayerValue.ROTATION;
+    /** Identifies a layer's x/y-scale (the x-scale supplies the initial value). */
+    public static final int SCALE = AnimBuilder.LayerValue.SCALE;
+    /** Identifies a layer's x-scale. */
+    public static final int SCALE_X = AnimBuilder.LayerValue.SCALE_X;
+    /** Identifies a layer's y-scale. */
+    public static final int SCALE_Y = AnimBuilder.LayerValue.SCALE_Y;
+    /** Identifies a layer's transparency. */
+    public static final int ALPHA = AnimBuilder.LayerValue.ALPHA;
+
+    /**
+     * Starts a tween of the specified property ({@link #X}, {@link #ALPHA}, etc.) of {@code
+     * layer} from its value at the time the tween starts to {@code to}.
+     *
+     * @param duration the duration of the tween, in milliseconds.
+     */
+    public void tween (Layer layer, int prop, float to, float duration, Interpolator interp) {
+        tween(layer, prop, Float.NaN, to, duration, interp);
+    }
+
+    /**
+     * Starts a tween of the specified property ({@link #X}, {@link #ALPHA}, etc.) of {@code
+     * layer} from {@code from} to {@code to}.
+     *
+     * @param duration the duration of the tween, in milliseconds.
+     */
+    public void tween (Layer layer, int prop, float from, float to, float duration,
+                       Interpolator interp) {
+        Asserts.checkNotNull(layer);
+        int idx = add(from, to, duration, interp);
+        _layers[idx] = layer;
+        _ids[idx] = prop;
+    }
+
+    /**
+     * Starts a tween of the value of {@code target} with id {@code id}, from its value at the
+     * time the tween starts to {@code to}.
+     *
+     * @param duration the duration of the tween, in milliseconds.
+     */
+    public void tween (Target target, int id, float to, float duration, Interpolator interp) {
+        tween(target, id, Float.NaN, to, duration, interp);
+    }
+
+    /**
+     * Starts a tween of the value of {@code target} with id {@code id}, from {@code from} to
+     * {@code to}.
+     *
+     * @param duration the duration of the tween, in milliseconds.
+     */
+    public void tween (Target target, int id, float from, float to, float duration,
+                       Interpolator interp) {
+        Asserts.checkNotNull(target);
+        int idx = add(from, to, duration, interp);
+        _targets[idx] = target;
+        _ids[idx] = id;
+    }
+
+    /**
+     * Cancels all tweens of properties of {@code layer}. Their properties are left as they are.
+     */
+    public void cancel (Layer layer) {
+        for (int ii = 0; ii < _count; ii++) {
+            if (_layers[ii] == layer) _duration[ii] = CANCELED;
+        }
+        compact();
+    }
+
+    /**
+     * Cancels all tweens of the value of {@code target} with id {@code id}. The value is left as
+     * it is.
+     */
+    public void cancel (Target target, int id) {
+        for (int ii = 0; ii < _count; ii++) {
+            if (_targets[ii] == target && _ids[ii] == id) _duration[ii] = CANCELED;
+        }
+        compact();
+    }
+
+    /**
+     * Cancels all tweens, leaving their targets as they are.
+     */
+    public void clear () {
+        for (int ii = 0; ii < _count; ii++) {
+            _layers[ii] = null;
+            _targets[ii] = null;
+            _interps[ii] = null;
+        }
+        _count = _started = 0;
+    }
+
+    /**
+     * Returns the number of tweens that are in progress or waiting to start.
+     */
+    public int size () {
+        return _count;
+    }
+
+    /**
+     * Updates all tweens, and removes those that have completed. This should be called from your
+     * game's {@code paint} method using an up-to-date clock.
+     *
+     * @param clock a clock containing the current alpha-adjusted time.
+     */
+    public void paint (Clock clock) {
+        float time = clock.time();
+        int count = _count;
+
+        // start any tweens added since the last frame, reading their initial values if needed
+        for (int ii = _started; ii < count; ii++) {
+            _start[ii] = time;
+            if (Float.isNaN(_from[ii])) {
+                Layer layer = _layers[ii];
+                _from[ii] = (layer != null) ? AnimBuilder.LayerValue.get(layer, _ids[ii]) :
+                    _targets[ii].get(_ids[ii]);
+            }
+        }
+        _started = count;
+
+        // compute the current value of every tween
+        float[] from = _from, to = _to, start = _start, duration = _duration, values = _values;
+        byte[] kernels = _kernels;
+        int done = 0;
+        for (int ii = 0; ii < count; ii++) {
+            float dt = time - start[ii], t = duration[ii];
+            if (dt >= t) {
+                values[ii] = to[ii];
+                done++;
+                continue;
+            }
+            float f = dt / t, p;
+            switch (kernels[ii]) {
+            case LINEAR: p = f; break;
+            case EASE_IN: p = f * f * f; break;
+            case EASE_OUT: { float g = f - 1; p = 1 + g * g * g; break; }
+            case EASE_INOUT: {
+                float h = 2 * f;
+                if (h < 1) p = h * h * h / 2;
+                else { float g = h - 2; p = (2 + g * g * g) / 2; }
+                break;
+            }
+            default:
+                values[ii] = _interps[ii].apply(from[ii], to[ii] - from[ii], dt, t);
+                continue;
+            }
+            values[ii] = from[ii] + (to[ii] - from[ii]) * p;
+        }
+
+        // write the values to their targets
+        Layer[] layers = _layers;
+        int[] ids = _ids;
+        for (int ii = 0; ii < count; ii++) {
+            Layer layer = layers[ii];
+            if (layer != null) AnimBuilder.LayerValue.set(layer, ids[ii], values[ii]);
+            else _targets[ii].set(ids[ii], values[ii]);
+        }
+
+        if (done > 0) {
+            // mark the completed tweens for removal; a tween's duration is only compared with
+            // the elapsed time above, so we can reuse it as a removal flag
+            for (int ii = 0; ii < count; ii++) {
+                if (time - start[ii] >= duration[ii]) duration[ii] = CANCELED;
+            }
+            compact();
+        }
+    }
+
+    protected int add (float from, float to, float duration, Interpolator interp) {
+        if (_count == _to.length) grow(_count * 2);
+        int idx = _count++;
+        _from[idx] = from;
+        _to[idx] = to;
+        _duration[idx] = Math.max(duration, 0);
+        byte kernel = kernel(interp);
+        _kernels[idx] = kernel;
+        _interps[idx] = (kernel == CUSTOM) ? interp : null;
+        return idx;
+    }
+
+    /** Removes all tweens with a duration of {@link #CANCELED}, preserving the order of the rest
+     * (so that the most recently added of two tweens on the same target wins). */
+    protected void compact () {
+        int live = 0, count = _count, started = _started;
+        for (int ii = 0; ii < count; ii++) {
+            if (_duration[ii] == CANCELED) {
+                if (ii < _started) started--;
+                continue;
+            }
+            if (live != ii) {
+                _from[live] = _from[ii];
+                _to[live] = _to[ii];
+                _start[live] = _start[ii];
+                _duration[live] = _duration[ii];
+                _kernels[live] = _kernels[ii];
+                _interps[live] = _interps[ii];
+                _layers[live] = _layers[ii];
+                _targets[live] = _targets[ii];
+                _ids[live] = _ids[ii];
+            }
+            live++;
+        }
+        for (int ii = live; ii < count; ii++) {
+            _interps[ii] = null;
+            _layers[ii] = null;
+            _targets[ii] = null;
+        }
+        _count = live;
+        _started = started;
+    }
+
+    protected void grow (int size) {
+        _from = copy(_from, size);
+        _to = copy(_to, size);
+        _start = copy(_start, size);
+        _duration = copy(_duration, size);
+        _values = copy(_values, size);
+        byte[] kernels = new byte[size];
+        System.arraycopy(_kernels, 0, kernels, 0, _count);
+        _kernels = kernels;
+        Interpolator[] interps = new Interpolator[size];
+        System.arraycopy(_interps, 0, interps, 0, _count);
+        _interps = interps;
+        Layer[] layers = new Layer[size];
+        System.arraycopy(_layers, 0, layers, 0, _count);
+        _layers = layers;
+        Target[] targets = new Target[size];
+        System.arraycopy(_targets, 0, targets, 0, _count);
+        _targets = targets;
+        int[] ids = new int[size];
+        System.arraycopy(_ids, 0, ids, 0, _count);
+        _ids = ids;
+    }
+
+    protected float[] copy (float[] values, int size) {
+        float[] nvalues = new float[size];
+        System.arraycopy(values, 0, nvalues, 0, _count);
+        return nvalues;
+    }
+
+    protected static byte kernel (Interpolator interp) {
+        if (interp == Interpolator.LINEAR) return LINEAR;
+        if (interp == Interpolator.EASE_IN) return EASE_IN;
+        if (interp == Interpolator.EASE_OUT) return EASE_OUT;
+        if (interp == Interpolator.EASE_INOUT) return EASE_INOUT;
+        return CUSTOM;
+    }
+
+    /** The number of tweens, and the number of those which have been started. */
+    protected int _count, _started;
+
+    // the parameters of our tweens, in parallel arrays
+    protected float[] _from = new float[INITIAL_SIZE], _to = new float[INITIAL_SIZE];
+    protected float[] _start = new float[INITIAL_SIZE], _duration = new float[INITIAL_SIZE];
+    protected byte[] _kernels = new byte[INITIAL_SIZE];
+    /** The interpolators of tweens which don't use one of our built-in kernels. */
+    protected Interpolator[] _interps = new Interpolator[INITIAL_SIZE];
+    /** The layer targeted by each tween (if any), in which case {@link #_ids} holds the
+     * property. Otherwise {@link #_targets} holds the target and {@link #_ids} the id. */
+    protected Layer[] _layers = new Layer[INITIAL_SIZE];
+    protected Target[] _targets = new Target[INITIAL_SIZE];
+    protected int[] _ids = new int[INITIAL_SIZE];
+    /** The values computed for each tween on the current frame. */
+    protected float[] _values = new float[INITIAL_SIZE];
+
+    protected static final int INITIAL_SIZE = 16;
+    protected static final float CANCELED = -1;
+
+    // the interpolators that we evaluate inline
+    protected static final byte LINEAR = 0, EASE_IN = 1, EASE_OUT = 2, EASE_INOUT = 3;
+    protected static final byte CUSTOM = 4;
+}
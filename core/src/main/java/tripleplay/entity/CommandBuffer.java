@@ -0,0 +1,142 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.entity;
+
+import react.Slot;
+
+import tripleplay.util.Bag;
+import tripleplay.util.BitVec;
+
+/**
+ * Records structural changes to entities (creation, destruction, enabling and disabling, and the
+ * addition and removal of components) for deferred application. Each system has its own buffer
+ * (see {@link System#commands}), which it may use safely during {@link System#update(int,
+ * System.Entities)} even when systems are updated concurrently. The world plays back all buffers
+ * at the end of {@link World#update}, in system priority order, coalescing all changes made to a
+ * given entity into a single change.
+ *
+ * <p>Recorded changes are coalesced per entity as follows: if the entity is destroyed, all other
+ * changes are discarded; the last recorded addition or removal of a given component wins, and
+ * likewise for enabling and disabling. Components are removed before they are added.</p>
+ */
+public class CommandBuffer
+{
+    /** Records the creation of an entity with components {@code comps}. As the entity does not
+     * exist until playback, its component values may be initialized by {@code onCreate}, which is
+     * notified with the newly created entity during playback.
+     *
+     * @param enabled whether the entity should be enabled once created. See {@link World#create}.
+     * @param onCreate a slot notified once the entity is created, or null.
+     */
+    public void create (Component[] comps, boolean enabled, Slot<Entity> onCreate) {
+        record(enabled ? CREATE_ENABLED : CREATE, comps, onCreate);
+    }
+
+    /** Records the destruction of {@code entity}. See {@link Entity#destroy}. */
+    public void destroy (Entity entity) {
+        record(DESTROY, entity, null);
+    }
+
+    /** Records the enabling or disabling of {@code entity}. See {@link Entity#setEnabled}. */
+    public void setEnabled (Entity entity, boolean enabled) {
+        record(enabled ? ENABLE : DISABLE, entity, null);
+    }
+
+    /** Records the addition of {@code comp} to {@code entity}. See {@link Entity#add}. */
+    public void add (Entity entity, Component comp) {
+        record(ADD, entity, comp);
+    }
+
+    /** Records the removal of {@code comp} from {@code entity}. See {@link Entity#remove}. */
+    public void remove (Entity entity, Component comp) {
+        record(REMOVE, entity, comp);
+    }
+
+    /** Returns whether this buffer contains no recorded changes. */
+    public boolean isEmpty () {
+        return _ops.isEmpty();
+    }
+
+    /** Creates any entities recorded in this buffer and folds all other recorded changes into the
+     * pending changes of the affected entities, noting newly affected entities in {@code touched}.
+     * Clears this buffer. */
+    void collect (World world, Bag<Entity> touched) {
+        for (int ii = 0, ll = _ops.size(); ii < ll; ii++) {
+            int op = _ops.get(ii);
+            Object target = _objs[2*ii], arg = _objs[2*ii+1];
+            if (op == CREATE || op == CREATE_ENABLED) {
+                Entity entity = world.create(false).add((Component[])target);
+                if (op == CREATE_ENABLED) entity.setEnabled(true);
+                if (arg != null) {
+                    @SuppressWarnings("unchecked") Slot<Entity> slot = (Slot<Entity>)arg;
+                    slot.onEmit(entity);
+                }
+                continue;
+            }
+
+            Entity entity = (Entity)target;
+            if (entity.pending == 0) {
+                touched.add(entity);
+                if (entity.pendingAdds == null) {
+                    entity.pendingAdds = new BitVec(2);
+                    entity.pendingRemoves = new BitVec(2);
+                }
+            }
+            entity.pending |= PENDING;
+            switch (op) {
+            case DESTROY:
+                entity.pending |= DESTROY;
+                break;
+            case ENABLE:
+            case DISABLE:
+                entity.pending = (entity.pending & ~(ENABLE|DISABLE)) | op;
+                break;
+            case ADD:
+                entity.pendingAdds.set(((Component)arg).id);
+                entity.pendingRemoves.clear(((Component)arg).id);
+                break;
+            case REMOVE:
+                entity.pendingRemoves.set(((Component)arg).id);
+                entity.pendingAdds.clear(((Component)arg).id);
+                break;
+            }
+        }
+        clear();
+    }
+
+    /** Discards all recorded changes. */
+    void clear () {
+        for (int ii = 0, ll = 2*_ops.size(); ii < ll; ii++) _objs[ii] = null;
+        _ops.removeAll();
+    }
+
+    protected void record (int op, Object target, Object arg) {
+        int idx = 2*_ops.size();
+        if (idx == _objs.length) {
+            Object[] objs = new Object[_objs.length*2];
+            java.lang.System.arraycopy(_objs, 0, objs, 0, _objs.length);
+            _objs = objs;
+        }
+        _objs[idx] = target;
+        _objs[idx+1] = arg;
+        _ops.add(op);
+    }
+
+    /** The recorded operations. */
+    protected final IntBag _ops = new IntBag();
+    /** The target and argument of each recorded operation, interleaved. */
+    protected Object[] _objs = new Object[32];
+
+    // these double as bits in Entity.pending
+    static final int PENDING = 1 << 0;
+    static final int DESTROY = 1 << 1;
+    static final int ENABLE  = 1 << 2;
+    static final int DISABLE = 1 << 3;
+    static final int ADD     = 1 << 4;
+    static final int REMOVE  = 1 << 5;
+    static final int CREATE  = 1 << 6;
+    static final int CREATE_ENABLED = 1 << 7;
+}
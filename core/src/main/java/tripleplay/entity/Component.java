@@ -5,10 +5,17 @@
 
 package tripleplay.entity;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
 import pythagoras.f.Dimension;
 import pythagoras.f.Point;
 import pythagoras.f.Vector;
 
+import tripleplay.anim.BulkTween;
+
 /**
  * A component contains the data for a single aspect of an entity. This might be its position in a
  * 2D space, or its animation state, or any other piece of data that evolves as the entity exists
@@ -18,12 +25,30 @@ import pythagoras.f.Vector;
  * component in question (in a sparse array). This enables a data-driven approach to entity
  * processing where a system can process one or more components for its active entities with a
  * cache-friendly memory access pattern.</p>
+ *
+ * <p>The {@link Dense} components instead pack their data contiguously, which allows systems that
+ * process many entities per frame to walk their data in order. See {@link Dense#arrange}.</p>
  */
 public abstract class Component
 {
+    /** Reads and writes the values of a {@link Generic} component. */
+    public interface Codec<T> {
+        /** Writes {@code value} to {@code out}. */
+        void write (DataOutputStream out, T value) throws IOException;
+        /** Reads a value written by {@link #write} from {@code in}. */
+        T read (DataInputStream in) throws IOException;
+    }
+
     /** A component implementation for arbitrary objects. */
     public static final class Generic<T> extends Component {
-        public Generic (World world) { super(world); }
+        public Generic (World world) { this(world, null); }
+
+        /** Creates a generic component which uses {@code codec} to read and write its values when
+         * the world is snapshotted or restored. See {@link World#write}. */
+        public Generic (World world, Codec<T> codec) {
+            super(world);
+            _codec = codec;
+        }
 
         /** Returns the value of this component for {@code entityId}. */
         public T get (int entityId) {
@@ -61,7 +86,24 @@ public abstract class Component
          * it to the pool. */
         protected void release (T value) {}
 
+        @Override protected void write (DataOutputStream out, int[] ids, int count)
+            throws IOException {
+            for (int ii = 0; ii < count; ii++) codec().write(out, get(ids[ii]));
+        }
+
+        @Override protected void read (DataInputStream in, int[] ids, int count)
+            throws IOException {
+            for (int ii = 0; ii < count; ii++) set(ids[ii], codec().read(in));
+        }
+
+        protected Codec<T> codec () {
+            if (_codec == null) throw new UnsupportedOperationException(
+                "Generic component " + id + " has no codec and cannot be snapshotted.");
+            return _codec;
+        }
+
         protected Object[][] _blocks = new Object[INDEX_BLOCKS][];
+        protected final Codec<T> _codec;
     }
 
     /** A component implementation for a single scalar {@code int}. */
@@ -93,11 +135,25 @@ public abstract class Component
             if (_blocks[blockIdx] == null) _blocks[blockIdx] = new int[BLOCK];
         }
 
+        @Override protected void write (DataOutputStream out, int[] ids, int count)
+            throws IOException {
+            int[] values = new int[count];
+            for (int ii = 0; ii < count; ii++) values[ii] = get(ids[ii]);
+            writeInts(out, values, count);
+        }
+
+        @Override protected void read (DataInputStream in, int[] ids, int count)
+            throws IOException {
+            int[] values = readInts(in, new int[count], count);
+            for (int ii = 0; ii < count; ii++) set(ids[ii], values[ii]);
+        }
+
         private int[][] _blocks = new int[INDEX_BLOCKS][];
     }
 
-    /** A component implementation for a single scalar {@code float}. */
-    public static final class FScalar extends Component {
+    /** A component implementation for a single scalar {@code float}. Its values may be tweened
+     * en masse via {@link BulkTween}. */
+    public static final class FScalar extends Component implements BulkTween.Target {
         public FScalar (World world) { super(world); }
 
         /** Returns the value of this component for {@code entityId}. */
@@ -125,6 +181,19 @@ public abstract class Component
             if (_blocks[blockIdx] == null) _blocks[blockIdx] = new float[BLOCK];
         }
 
+        @Override protected void write (DataOutputStream out, int[] ids, int count)
+            throws IOException {
+            float[] values = new float[count];
+            for (int ii = 0; ii < count; ii++) values[ii] = get(ids[ii]);
+            writeFloats(out, values, count);
+        }
+
+        @Override protected void read (DataInputStream in, int[] ids, int count)
+            throws IOException {
+            float[] values = readFloats(in, new float[count], count);
+            for (int ii = 0; ii < count; ii++) set(ids[ii], values[ii]);
+        }
+
         private float[][] _blocks = new float[INDEX_BLOCKS][];
     }
 
@@ -221,6 +290,22 @@ public abstract class Component
             if (_blocks[blockIdx] == null) _blocks[blockIdx] = new float[2*BLOCK];
         }
 
+        @Override protected void write (DataOutputStream out, int[] ids, int count)
+            throws IOException {
+            float[] values = new float[2*count];
+            for (int ii = 0; ii < count; ii++) {
+                values[2*ii] = getX(ids[ii]);
+                values[2*ii+1] = getY(ids[ii]);
+            }
+            writeFloats(out, values, 2*count);
+        }
+
+        @Override protected void read (DataInputStream in, int[] ids, int count)
+            throws IOException {
+            float[] values = readFloats(in, new float[2*count], 2*count);
+            for (int ii = 0; ii < count; ii++) set(ids[ii], values[2*ii], values[2*ii+1]);
+        }
+
         private float[][] _blocks = new float[INDEX_BLOCKS][];
     }
 
@@ -258,9 +343,342 @@ public abstract class Component
             if (_blocks[blockIdx] == null) _blocks[blockIdx] = new int[BLOCK];
         }
 
+        @Override protected void write (DataOutputStream out, int[] ids, int count)
+            throws IOException {
+            int[] values = new int[count];
+            for (int ii = 0; ii < count; ii++) values[ii] = get(ids[ii]);
+            writeInts(out, values, count);
+        }
+
+        @Override protected void read (DataInputStream in, int[] ids, int count)
+            throws IOException {
+            int[] values = readInts(in, new int[count], count);
+            for (int ii = 0; ii < count; ii++) set(ids[ii], values[ii]);
+        }
+
         private int[][] _blocks = new int[INDEX_BLOCKS][];
     }
 
+    /**
+     * A component which stores its values densely, using a sparse set: values for all entities
+     * possessing the component are packed into the first {@link #size} slots of primitive arrays,
+     * and a separate table maps entity ids to slots. Removing a component swaps the last slot into
+     * the vacated one. This costs an extra indirection for random access by entity id, but allows
+     * a system to walk its entities' values contiguously:
+     *
+     * <pre>{@code
+     * protected void update (int delta, Entities entities) {
+     *   pos.arrange(entities);
+     *   vel.arrange(entities);
+     *   float[] px = pos.xs(), py = pos.ys(), vx = vel.xs(), vy = vel.ys();
+     *   for (int ii = 0, ll = entities.size(); ii < ll; ii++) {
+     *     px[ii] += vx[ii] * delta;
+     *     py[ii] += vy[ii] * delta;
+     *   }
+     * }
+     * }</pre>
+     *
+     * <p>The arrays returned by the column accessors (e.g. {@link DenseXY#xs}) are only valid
+     * until the next time a component is added to an entity, as they may be reallocated.</p>
+     */
+    public static abstract class Dense extends Component {
+        /** Returns the number of entities which possess this component. */
+        public int size () {
+            return _size;
+        }
+
+        /** Returns the id of the entity whose value is stored in {@code slot}. */
+        public int entity (int slot) {
+            return _ids[slot];
+        }
+
+        /** Returns the slot in which the value for {@code entityId} is stored, or -1 if the entity
+         * does not possess this component. */
+        public int slot (int entityId) {
+            if (entityId >= _slots.length) return -1;
+            int slot = _slots[entityId];
+            return (slot < _size && _ids[slot] == entityId) ? slot : -1;
+        }
+
+        /** Reorders this component's slots such that the value for {@code entities.get(ii)} is
+         * stored in slot {@code ii} for every entity in {@code entities}. All of the entities must
+         * possess this component. This is cheap when the slots are already so arranged, so a
+         * system may call it at the start of every update, but two systems that arrange the same
+         * component using differently ordered entity sets will defeat one another.
+         */
+        public void arrange (System.Entities entities) {
+            for (int ii = 0, ll = entities.size(); ii < ll; ii++) {
+                int id = entities.get(ii), slot = slot(id);
+                if (slot == ii) continue;
+                if (slot < 0) throw new IllegalArgumentException(
+                    "Entity " + id + " does not possess component " + this.id);
+                swapSlots(ii, slot);
+            }
+        }
+
+        protected Dense (World world) {
+            super(world);
+        }
+
+        /** Ensures that each column can hold at least {@code capacity} values. */
+        protected abstract void ensureCapacity (int capacity);
+
+        /** Swaps the values stored in slots {@code a} and {@code b} in each column. */
+        protected abstract void swapValues (int a, int b);
+
+        /** Resets the values stored in {@code slot} in each column. */
+        protected abstract void resetValues (int slot);
+
+        @Override protected void init (int entityId) {
+            if (slot(entityId) >= 0) return;
+            if (entityId >= _slots.length) {
+                int[] slots = new int[Math.max(_slots.length*2, entityId+1)];
+                java.lang.System.arraycopy(_slots, 0, slots, 0, _slots.length);
+                _slots = slots;
+            }
+            if (_size == _ids.length) {
+                int[] ids = new int[_ids.length*2];
+                java.lang.System.arraycopy(_ids, 0, ids, 0, _ids.length);
+                _ids = ids;
+                ensureCapacity(ids.length);
+            }
+            int slot = _size++;
+            _ids[slot] = entityId;
+            _slots[entityId] = slot;
+            resetValues(slot);
+        }
+
+        @Override protected void clear (int entityId) {
+            int slot = slot(entityId);
+            if (slot < 0) return;
+            int last = --_size;
+            if (slot != last) swapSlots(slot, last);
+        }
+
+        protected void swapSlots (int a, int b) {
+            int aid = _ids[a], bid = _ids[b];
+            _ids[a] = bid;
+            _slots[bid] = a;
+            _ids[b] = aid;
+            _slots[aid] = b;
+            swapValues(a, b);
+        }
+
+        /** The entity id stored in each slot. */
+        protected int[] _ids = new int[INIT_DENSE];
+        /** The slot assigned to each entity id (only meaningful if {@link #_ids} agrees). */
+        protected int[] _slots = new int[INIT_DENSE];
+        /** The number of occupied slots. */
+        protected int _size;
+    }
+
+    /** A densely stored component for a single scalar {@code int}. See {@link Dense}. */
+    public static final class DenseIScalar extends Dense {
+        public DenseIScalar (World world) { super(world); }
+
+        /** Returns the value of this component for {@code entityId}. */
+        public int get (int entityId) {
+            return _values[_slots[entityId]];
+        }
+
+        /** Updates the value of this component for {@code entityId}. */
+        public void set (int entityId, int value) {
+            _values[_slots[entityId]] = value;
+        }
+
+        /** Adds {@code dv} to the value of this component for {@code entityId}. */
+        public void add (int entityId, int dv) {
+            _values[_slots[entityId]] += dv;
+        }
+
+        /** Returns the values of this component, indexed by slot. */
+        public int[] values () {
+            return _values;
+        }
+
+        @Override protected void ensureCapacity (int capacity) {
+            if (_values.length >= capacity) return;
+            int[] values = new int[capacity];
+            java.lang.System.arraycopy(_values, 0, values, 0, _values.length);
+            _values = values;
+        }
+
+        @Override protected void swapValues (int a, int b) {
+            int tmp = _values[a]; _values[a] = _values[b]; _values[b] = tmp;
+        }
+
+        @Override protected void resetValues (int slot) {
+            _values[slot] = 0;
+        }
+
+        @Override protected void write (DataOutputStream out, int[] ids, int count)
+            throws IOException {
+            int[] values = new int[count];
+            for (int ii = 0; ii < count; ii++) values[ii] = get(ids[ii]);
+            writeInts(out, values, count);
+        }
+
+        @Override protected void read (DataInputStream in, int[] ids, int count)
+            throws IOException {
+            int[] values = readInts(in, new int[count], count);
+            for (int ii = 0; ii < count; ii++) set(ids[ii], values[ii]);
+        }
+
+        private int[] _values = new int[INIT_DENSE];
+    }
+
+    /** A densely stored component for a single scalar {@code float}. See {@link Dense}. Its
+     * values may be tweened en masse via {@link BulkTween}. */
+    public static final class DenseFScalar extends Dense implements BulkTween.Target {
+        public DenseFScalar (World world) { super(world); }
+
+        /** Returns the value of this component for {@code entityId}. */
+        public float get (int entityId) {
+            return _values[_slots[entityId]];
+        }
+
+        /** Updates the value of this component for {@code entityId}. */
+        public void set (int entityId, float value) {
+            _values[_slots[entityId]] = value;
+        }
+
+        /** Adds {@code dv} to the value of this component for {@code entityId}. */
+        public void add (int entityId, float dv) {
+            _values[_slots[entityId]] += dv;
+        }
+
+        /** Returns the values of this component, indexed by slot. */
+        public float[] values () {
+            return _values;
+        }
+
+        @Override protected void ensureCapacity (int capacity) {
+            if (_values.length >= capacity) return;
+            float[] values = new float[capacity];
+            java.lang.System.arraycopy(_values, 0, values, 0, _values.length);
+            _values = values;
+        }
+
+        @Override protected void swapValues (int a, int b) {
+            float tmp = _values[a]; _values[a] = _values[b]; _values[b] = tmp;
+        }
+
+        @Override protected void resetValues (int slot) {
+            _values[slot] = 0;
+        }
+
+        @Override protected void write (DataOutputStream out, int[] ids, int count)
+            throws IOException {
+            float[] values = new float[count];
+            for (int ii = 0; ii < count; ii++) values[ii] = get(ids[ii]);
+            writeFloats(out, values, count);
+        }
+
+        @Override protected void read (DataInputStream in, int[] ids, int count)
+            throws IOException {
+            float[] values = readFloats(in, new float[count], count);
+            for (int ii = 0; ii < count; ii++) set(ids[ii], values[ii]);
+        }
+
+        private float[] _values = new float[INIT_DENSE];
+    }
+
+    /** A densely stored component for a pair of {@code float}s. The x and y values are stored in
+     * separate arrays. See {@link Dense}. */
+    public static final class DenseXY extends Dense {
+        public DenseXY (World world) { super(world); }
+
+        /** Returns the x component of the point for {@code entityId}. */
+        public float getX (int entityId) {
+            return _xs[_slots[entityId]];
+        }
+
+        /** Returns the y component of the point for {@code entityId}. */
+        public float getY (int entityId) {
+            return _ys[_slots[entityId]];
+        }
+
+        /** Writes the x/y components of the point for {@code entityId} into {@code into}.
+         * @return into for easy method chaining. */
+        public Point get (int entityId, Point into) {
+            int slot = _slots[entityId];
+            into.x = _xs[slot];
+            into.y = _ys[slot];
+            return into;
+        }
+
+        /** Updates the x component of the point for {@code entityId}. */
+        public void setX (int entityId, float x) {
+            _xs[_slots[entityId]] = x;
+        }
+
+        /** Updates the y component of the point for {@code entityId}. */
+        public void setY (int entityId, float y) {
+            _ys[_slots[entityId]] = y;
+        }
+
+        /** Updates the x/y components of the point for {@code entityId}. */
+        public void set (int entityId, float x, float y) {
+            int slot = _slots[entityId];
+            _xs[slot] = x;
+            _ys[slot] = y;
+        }
+
+        /** Adds {@code dx} and {@code dy} to the x and y components for {@code entityId}. */
+        public void add (int entityId, float dx, float dy) {
+            int slot = _slots[entityId];
+            _xs[slot] += dx;
+            _ys[slot] += dy;
+        }
+
+        /** Returns the x components of this component, indexed by slot. */
+        public float[] xs () {
+            return _xs;
+        }
+
+        /** Returns the y components of this component, indexed by slot. */
+        public float[] ys () {
+            return _ys;
+        }
+
+        @Override protected void ensureCapacity (int capacity) {
+            if (_xs.length >= capacity) return;
+            float[] xs = new float[capacity], ys = new float[capacity];
+            java.lang.System.arraycopy(_xs, 0, xs, 0, _xs.length);
+            java.lang.System.arraycopy(_ys, 0, ys, 0, _ys.length);
+            _xs = xs;
+            _ys = ys;
+        }
+
+        @Override protected void swapValues (int a, int b) {
+            float tx = _xs[a]; _xs[a] = _xs[b]; _xs[b] = tx;
+            float ty = _ys[a]; _ys[a] = _ys[b]; _ys[b] = ty;
+        }
+
+        @Override protected void resetValues (int slot) {
+            _xs[slot] = 0;
+            _ys[slot] = 0;
+        }
+
+        @Override protected void write (DataOutputStream out, int[] ids, int count)
+            throws IOException {
+            float[] values = new float[2*count];
+            for (int ii = 0; ii < count; ii++) {
+                values[2*ii] = getX(ids[ii]);
+                values[2*ii+1] = getY(ids[ii]);
+            }
+            writeFloats(out, values, 2*count);
+        }
+
+        @Override protected void read (DataInputStream in, int[] ids, int count)
+            throws IOException {
+            float[] values = readFloats(in, new float[2*count], 2*count);
+            for (int ii = 0; ii < count; ii++) set(ids[ii], values[2*ii], values[2*ii+1]);
+        }
+
+        private float[] _xs = new float[INIT_DENSE], _ys = new float[INIT_DENSE];
+    }
+
     /** The world in which this component exists. */
     public final World world;
 
@@ -275,6 +693,57 @@ public abstract class Component
     /** Clears the value of the component at {@code index}. */
     protected void clear (int index) {} // noop by default
 
+    /** Writes the values of this component for the first {@code count} entities in {@code ids} to
+     * {@code out}. Used by {@link World#write}. The default implementation throws {@link
+     * UnsupportedOperationException}. */
+    protected void write (DataOutputStream out, int[] ids, int count) throws IOException {
+        throw new UnsupportedOperationException(
+            getClass().getName() + " does not support snapshots.");
+    }
+
+    /** Reads the values written by {@link #write} for the first {@code count} entities in {@code
+     * ids}, each of which has already been given this component. Used by {@link World#read}. */
+    protected void read (DataInputStream in, int[] ids, int count) throws IOException {
+        throw new UnsupportedOperationException(
+            getClass().getName() + " does not support snapshots.");
+    }
+
+    /** Writes the first {@code count} values of {@code values} to {@code out} in one go. */
+    protected static void writeInts (DataOutputStream out, int[] values, int count)
+        throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(4*count);
+        buf.asIntBuffer().put(values, 0, count);
+        out.write(buf.array());
+    }
+
+    /** Reads {@code count} values written by {@link #writeInts} into {@code into}.
+     * @return into for easy method chaining. */
+    protected static int[] readInts (DataInputStream in, int[] into, int count)
+        throws IOException {
+        byte[] bytes = new byte[4*count];
+        in.readFully(bytes);
+        ByteBuffer.wrap(bytes).asIntBuffer().get(into, 0, count);
+        return into;
+    }
+
+    /** Writes the first {@code count} values of {@code values} to {@code out} in one go. */
+    protected static void writeFloats (DataOutputStream out, float[] values, int count)
+        throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(4*count);
+        buf.asFloatBuffer().put(values, 0, count);
+        out.write(buf.array());
+    }
+
+    /** Reads {@code count} values written by {@link #writeFloats} into {@code into}.
+     * @return into for easy method chaining. */
+    protected static float[] readFloats (DataInputStream in, float[] into, int count)
+        throws IOException {
+        byte[] bytes = new byte[4*count];
+        in.readFully(bytes);
+        ByteBuffer.wrap(bytes).asFloatBuffer().get(into, 0, count);
+        return into;
+    }
+
     void add (Entity entity) {
         entity.comps.set(id);
         init(entity.id);
@@ -293,4 +762,7 @@ public abstract class Component
 
     /** The number of index blocks to allocate by default. */
     protected static final int INDEX_BLOCKS = 32;
+
+    /** The initial capacity of a {@link Dense} component. */
+    protected static final int INIT_DENSE = 64;
 }
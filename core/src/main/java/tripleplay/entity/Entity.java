@@ -158,7 +158,36 @@ public final class Entity
 
     void noteAdded () { _flags |= ADDED; }
     void clearChanging () { _flags &= ~CHANGING; }
-    void reset () { _flags = 0; }
+    void reset () { _flags = 0; archetype = null; }
+
+    /** Applies the changes recorded for this entity by command buffers, and clears them. */
+    void applyPending () {
+        int pending = this.pending;
+        this.pending = 0;
+        if (isDestroyed()) {
+            // nothing to do
+        } else if ((pending & CommandBuffer.DESTROY) != 0) {
+            destroy();
+        } else {
+            boolean changed = false;
+            for (int cc = 0, ll = world._comps.size(); cc < ll; cc++) {
+                if (pendingRemoves.isSet(cc)) {
+                    if (comps.isSet(cc)) {
+                        world._comps.get(cc).remove(this);
+                        changed = true;
+                    }
+                } else if (pendingAdds.isSet(cc) && !comps.isSet(cc)) {
+                    world._comps.get(cc).add(this);
+                    changed = true;
+                }
+            }
+            if (changed) queueChange();
+            if ((pending & CommandBuffer.ENABLE) != 0) setEnabled(true);
+            else if ((pending & CommandBuffer.DISABLE) != 0) setEnabled(false);
+        }
+        pendingAdds.clear();
+        pendingRemoves.clear();
+    }
 
     /** A bit mask indicating which systems are interested in this entity. */
     final BitVec systems = new BitVec(2);
@@ -166,6 +195,15 @@ public final class Entity
     /** A bit mask indicating which components are possessed by this entity. */
     final BitVec comps = new BitVec(2);
 
+    /** The archetype to which this entity belonged when last processed by the world, or null if
+     * the entity is not currently added to the world. */
+    World.Archetype archetype;
+
+    /** Structural changes recorded by command buffers, awaiting playback. See {@link
+     * CommandBuffer}. The masks are created when first needed. */
+    int pending;
+    BitVec pendingAdds, pendingRemoves;
+
     /** Flags pertaining to this entity's state. */
     protected int _flags;
 
@@ -0,0 +1,32 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.entity;
+
+/**
+ * A system which is interested in exactly those entities which possess all of a set of required
+ * components and none of a set of excluded components. The world indexes such systems by entity
+ * component mask and only notifies them when an entity's mask changes in a way that crosses their
+ * filter, which is substantially cheaper than checking every system for interest every time an
+ * entity changes. {@link Entity#didChange} has no effect on the interest of such a system.
+ */
+public abstract class FilteredSystem extends System
+{
+    /** Creates a new system with the specified component filter and registers it with {@code
+     * world}. See {@link System#System(World,int)} for an explanation of {@code priority}.
+     *
+     * @param excluded the components which disqualify an entity; may be empty.
+     */
+    protected FilteredSystem (World world, int priority, Component[] required,
+                              Component[] excluded) {
+        super(world, priority, required, excluded);
+    }
+
+    /** Returns whether {@code entity} passes this system's component filter. The world does not
+     * call this, as it tracks the interest of filtered systems via entity component masks. */
+    @Override protected final boolean isInterested (Entity entity) {
+        return matches(entity.comps);
+    }
+}
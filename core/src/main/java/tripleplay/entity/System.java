@@ -7,11 +7,19 @@ package tripleplay.entity;
 
 import playn.core.util.Clock;
 
+import tripleplay.util.BitVec;
+
 /**
  * Handles a single concern in an entity-based game. That might be processing collisions, or
  * updating entity's logical positions, or regenerating health, etc. A system operates on all
  * entities which meet its criteria on a given tick. See {@link #isInterested} for an explanation
  * of how to choose which entities on which to operate.
+ *
+ * <p>Systems whose interest depends only on which components an entity possesses should instead
+ * extend {@link FilteredSystem}, declaring their required and excluded components. The world
+ * indexes such systems by entity component mask and only notifies them when an entity's mask
+ * changes in a way that crosses their filter, which is substantially cheaper than checking every
+ * system for interest every time an entity changes.</p>
  */
 public abstract class System
 {
@@ -44,7 +52,51 @@ public abstract class System
     protected System (World world, int priority) {
         this.world = world;
         this.priority = priority;
-        _id = world.register(this);
+        _required = _excluded = null;
+        id = world.register(this);
+    }
+
+    /** Creates a new system with a component filter and registers it with {@code world}. Used by
+     * {@link FilteredSystem}. */
+    System (World world, int priority, Component[] required, Component[] excluded) {
+        this.world = world;
+        this.priority = priority;
+        _required = new BitVec(2);
+        for (Component comp : required) _required.set(comp.id);
+        _excluded = new BitVec(2);
+        for (Component comp : excluded) _excluded.set(comp.id);
+        id = world.register(this);
+    }
+
+    /** Declares that this system's {@link #update(int,Entities)} reads the values of {@code comps}.
+     * A system which declares the components it reads and writes may be updated concurrently with
+     * other systems with which it does not conflict, if the world is so configured (see {@link
+     * World#setExecutor}). A system which makes no declarations is assumed to conflict with every
+     * other system. This should be called from the system's constructor.
+     */
+    protected void reads (Component... comps) {
+        if (_reads == null) _reads = new BitVec(2);
+        for (Component comp : comps) _reads.set(comp.id);
+        if (_writes == null) _writes = new BitVec(2);
+        world.systemsChanged();
+    }
+
+    /** Declares that this system's {@link #update(int,Entities)} writes the values of {@code
+     * comps}. See {@link #reads}. */
+    protected void writes (Component... comps) {
+        if (_writes == null) _writes = new BitVec(2);
+        for (Component comp : comps) _writes.set(comp.id);
+        if (_reads == null) _reads = new BitVec(2);
+        world.systemsChanged();
+    }
+
+    /** Returns this system's command buffer, which may be used to create and destroy entities and
+     * to add and remove components during {@link #update(int,Entities)}, even when systems are
+     * updated concurrently. The buffered changes are applied at the end of {@link World#update}.
+     */
+    protected CommandBuffer commands () {
+        if (_commands == null) _commands = new CommandBuffer();
+        return _commands;
     }
 
     /** Called when an entity is added to our world (or an already added entity is changed) which
@@ -89,22 +141,42 @@ public abstract class System
      * accompanied by a call to {@link Entity#didChange} so that all systems may be rechecked for
      * interest in the entity. Note that {@code didChange} is called automatically when components
      * are added to or removed from an entity.
+     *
+     * <p>This is not called for {@link FilteredSystem}s, whose interest is determined by their
+     * component filters.</p>
      */
     protected abstract boolean isInterested (Entity entity);
 
+    /** Returns whether this system's interest is determined solely by a component filter. */
+    final boolean isFiltered () {
+        return _required != null;
+    }
+
+    /** Returns whether the component mask {@code comps} passes this system's component filter. */
+    final boolean matches (BitVec comps) {
+        return comps.containsAll(_required) && !comps.intersects(_excluded);
+    }
+
+    /** Returns whether this system's update must not run concurrently with {@code other}'s. */
+    final boolean conflicts (System other) {
+        if (_writes == null || other._writes == null) return true;
+        return _writes.intersects(other._writes) || _writes.intersects(other._reads) ||
+            _reads.intersects(other._writes);
+    }
+
     void entityAdded (Entity entity) {
-        if (isInterested(entity)) addEntity(entity);
+        if (interested(entity)) addEntity(entity);
     }
 
     void entityChanged (Entity entity) {
-        boolean wasAdded = entity.systems.isSet(_id);
-        boolean haveInterest = isInterested(entity);
+        boolean wasAdded = entity.systems.isSet(id);
+        boolean haveInterest = interested(entity);
         if (haveInterest && !wasAdded) addEntity(entity);
         else if (!haveInterest && wasAdded) removeEntity(entity);
     }
 
     void entityRemoved (Entity entity) {
-        if (entity.systems.isSet(_id)) removeEntity(entity);
+        if (entity.systems.isSet(id)) removeEntity(entity);
     }
 
     void update (int delta) {
@@ -117,27 +189,44 @@ public abstract class System
         paint(clock, _active);
     }
 
+    private boolean interested (Entity entity) {
+        return isFiltered() ? matches(entity.comps) : isInterested(entity);
+    }
+
     private void addEntity (Entity entity) {
         _active.add(entity.id);
-        entity.systems.set(_id);
+        entity.systems.set(id);
         wasAdded(entity);
     }
 
     private void removeEntity (Entity entity) {
         // TODO: this is O(N), would be nice if it was O(log N) or O(1)
         int idx = _active.remove(entity.id);
-        entity.systems.clear(_id);
+        entity.systems.clear(id);
         wasRemoved(entity, idx);
     }
 
     /** This system's priority with respect to other systems. See {@link #System}. */
     final int priority;
 
+    /** This system's position in the world's processing order. Maintained by the world. */
+    int order;
+
     /** Our active entities. */
     protected final IntBag _active = new IntBag();
 
     /** This system's unique id (used in bit masks). */
-    private final int _id;
+    final int id;
+
+    /** The components required and excluded by this system's filter, or null if this system
+     * determines its interest via {@link #isInterested}. */
+    private final BitVec _required, _excluded;
+
+    /** The components read and written by this system's update, or null if undeclared. */
+    private BitVec _reads, _writes;
+
+    /** This system's command buffer, created when first needed. */
+    CommandBuffer _commands;
 
     /** Whether or not this system is enabled. */
     private boolean _enabled = true;
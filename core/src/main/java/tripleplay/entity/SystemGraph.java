@@ -0,0 +1,104 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.entity;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The dependency graph between a world's systems, used to update non-conflicting systems
+ * concurrently. Every system depends on each higher priority system with which it {@link
+ * System#conflicts}, so conflicting systems are always updated in the same order as they would be
+ * when updating serially.
+ */
+class SystemGraph
+{
+    public SystemGraph (List<System> systems) {
+        int count = systems.size();
+        _systems = systems.toArray(new System[count]);
+        _dependents = new int[count][];
+        _dependencies = new int[count];
+        int[] scratch = new int[count];
+        for (int ii = 0; ii < count; ii++) {
+            int deps = 0;
+            for (int jj = ii+1; jj < count; jj++) {
+                if (_systems[ii].conflicts(_systems[jj])) {
+                    scratch[deps++] = jj;
+                    _dependencies[jj]++;
+                }
+            }
+            _dependents[ii] = new int[deps];
+            java.lang.System.arraycopy(scratch, 0, _dependents[ii], 0, deps);
+        }
+    }
+
+    /** Updates all systems, executing each one on {@code exec} as soon as the systems on which it
+     * depends have completed. Blocks until all systems have been updated. If any system throws an
+     * exception, the remaining systems are still updated and the first failure is rethrown. */
+    public void update (Executor exec, int delta) {
+        Update update = new Update(exec, delta);
+        for (int ii = 0; ii < _systems.length; ii++) {
+            if (_dependencies[ii] == 0) update.submit(ii);
+        }
+        try {
+            update.done.await();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while updating systems.", ie);
+        }
+        Throwable error = update.error.get();
+        if (error instanceof RuntimeException) throw (RuntimeException)error;
+        if (error instanceof Error) throw (Error)error;
+    }
+
+    protected class Update {
+        public final CountDownLatch done = new CountDownLatch(_systems.length);
+        public final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+
+        public Update (Executor exec, int delta) {
+            _exec = exec;
+            _delta = delta;
+            _pending = new AtomicIntegerArray(_dependencies);
+        }
+
+        /** Executes the update of the specified system, or runs it on the calling thread if the
+         * executor rejects it, so that every system is counted down even after a shutdown. */
+        public void submit (final int index) {
+            Runnable task = new Runnable() { public void run () {
+                try {
+                    _systems[index].update(_delta);
+                } catch (Throwable t) {
+                    error.compareAndSet(null, t);
+                } finally {
+                    done.countDown();
+                    for (int dep : _dependents[index]) {
+                        if (_pending.decrementAndGet(dep) == 0) submit(dep);
+                    }
+                }
+            }};
+            try {
+                _exec.execute(task);
+            } catch (RejectedExecutionException ree) {
+                task.run();
+            }
+        }
+
+        protected final Executor _exec;
+        protected final int _delta;
+        protected final AtomicIntegerArray _pending;
+    }
+
+    /** The systems, in priority order. */
+    protected final System[] _systems;
+    /** The indices of the systems which depend on each system. */
+    protected final int[][] _dependents;
+    /** The number of systems on which each system depends. */
+    protected final int[] _dependencies;
+}
@@ -5,14 +5,23 @@
 
 package tripleplay.entity;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Executor;
 
 import playn.core.util.Clock;
 
 import react.Signal;
 
 import tripleplay.util.Bag;
+import tripleplay.util.BitVec;
 
 /**
  * A collection of entities and systems. A world is completely self-contained, so it would be
@@ -107,8 +116,10 @@ public class World
             // otherwise a system half-way through the list could change things and the systems in
             // the first half of the list would no longer be aware of the entity's real state
             entity.noteAdded();
-            for (int ss = 0, ll = _systems.size(); ss < ll; ss++) {
-                _systems.get(ss).entityAdded(entity);
+            Archetype arch = archetype(entity.comps);
+            entity.archetype = arch;
+            for (int ss = 0, ll = gather(arch, EMPTY); ss < ll; ss++) {
+                _notify[ss].entityAdded(entity);
             }
             entityAdded.emit(entity);
         }
@@ -122,8 +133,14 @@ public class World
             // through the list could change things and the systems in the first half of the list
             // would no longer be aware of the entity's real state
             entity.clearChanging();
-            for (int ss = 0, ll = _systems.size(); ss < ll; ss++) {
-                _systems.get(ss).entityChanged(entity);
+            // filtered systems need only hear about the change if the entity's component mask
+            // moved it to a new archetype, and then only those matching the old or new archetype
+            Archetype oarch = (entity.archetype == null) ? EMPTY : entity.archetype;
+            Archetype narch = archetype(entity.comps);
+            entity.archetype = narch;
+            int count = (oarch == narch) ? gather(EMPTY, EMPTY) : gather(oarch, narch);
+            for (int ss = 0; ss < count; ss++) {
+                _notify[ss].entityChanged(entity);
             }
             entityChanged.emit(entity);
         }
@@ -131,8 +148,10 @@ public class World
         // process any pending entity removals
         for (int ii = toRemove.size()-1; ii >= 0; ii--) {
             Entity entity = toRemove.removeLast();
-            for (int ss = 0, ll = _systems.size(); ss < ll; ss++) {
-                _systems.get(ss).entityRemoved(entity);
+            Archetype arch = (entity.archetype == null) ? EMPTY : entity.archetype;
+            entity.archetype = null;
+            for (int ss = 0, ll = gather(arch, EMPTY); ss < ll; ss++) {
+                _notify[ss].entityRemoved(entity);
             }
             entityRemoved.emit(entity);
             // if the entity is destroyed, remove its components and return it to the pool
@@ -145,9 +164,35 @@ public class World
         }
 
         // and finally update all of our systems
-        for (int ii = 0, ll = _systems.size(); ii < ll; ii++) {
-            _systems.get(ii).update(delta);
+        if (_exec == null) {
+            for (int ii = 0, ll = _systems.size(); ii < ll; ii++) {
+                _systems.get(ii).update(delta);
+            }
+        } else {
+            if (_graph == null) _graph = new SystemGraph(_systems);
+            _graph.update(_exec, delta);
         }
+
+        // apply any changes buffered by our systems during their updates
+        playbackCommands();
+    }
+
+    /** Configures this world to update systems which do not conflict with one another (per their
+     * {@link System#reads} and {@link System#writes} declarations) concurrently, using {@code
+     * exec}. Conflicting systems are still updated in priority order, and {@link #update} does not
+     * return until all systems have been updated. Entity additions, changes and removals, as well
+     * as painting, are always processed serially on the calling thread.
+     *
+     * <p>Systems updated concurrently must confine themselves to reading and writing the
+     * components they declare: they must not create, enable, disable or destroy entities or add
+     * components to or remove them from entities directly, but must instead record such changes
+     * in their {@link System#commands} buffer.</p>
+     *
+     * @param exec the executor on which to run system updates, or null to restore the default
+     * serial updating.
+     */
+    public void setExecutor (Executor exec) {
+        _exec = exec;
     }
 
     /** Paints all of the {@link System}s in this world. */
@@ -157,6 +202,117 @@ public class World
         }
     }
 
+    /** Writes the complete state of this world's entities to {@code out}: the entity id table,
+     * each entity's enabled and destroyed state, and the values of every component. All of the
+     * world's components must support snapshotting, which requires that {@link Component.Generic}
+     * components be supplied a {@link Component.Codec}. The state of systems is not written.
+     */
+    public void write (DataOutputStream out) throws IOException {
+        out.writeInt(SNAPSHOT_VERSION);
+        int count = _nextEntityId;
+        out.writeInt(count);
+        byte[] flags = new byte[count];
+        for (int id = 1; id < count; id++) {
+            flags[id] = (byte)(_entities[id]._flags & (Entity.ENABLED|Entity.DESTROYED));
+        }
+        out.write(flags);
+        out.writeInt(_ids.size());
+        Component.writeInts(out, _ids._elems, _ids.size());
+
+        out.writeInt(_comps.size());
+        int[] ids = new int[count];
+        for (int cc = 0, ll = _comps.size(); cc < ll; cc++) {
+            Component comp = _comps.get(cc);
+            int size = 0;
+            for (int id = 1; id < count; id++) {
+                Entity e = _entities[id];
+                if (!e.isDestroyed() && e.comps.isSet(cc)) ids[size++] = id;
+            }
+            out.writeUTF(comp.getClass().getName());
+            out.writeInt(size);
+            Component.writeInts(out, ids, size);
+            comp.write(out, ids, size);
+        }
+    }
+
+    /** Replaces the state of this world's entities with state previously written by {@link
+     * #write}. This world must have the same components, registered in the same order, as the
+     * world that was written. All existing entities are first removed from their systems (which
+     * are notified as usual) and stripped of their components. The restored entities that are
+     * enabled are then queued for addition to the world, so systems will be notified of them on
+     * the next {@link #update}. Entity objects are reused for ids that existed prior to restoring,
+     * so code that holds references to entities should discard them.
+     *
+     * @throws IOException if the data is malformed or does not match this world's components.
+     */
+    public void read (DataInputStream in) throws IOException {
+        int version = in.readInt();
+        if (version != SNAPSHOT_VERSION) throw new IOException(
+            "Unknown snapshot version " + version);
+        clearEntities();
+
+        int count = in.readInt();
+        if (_entities.length < count) {
+            Entity[] entities = new Entity[Math.max(count, _entities.length*2)];
+            java.lang.System.arraycopy(_entities, 0, entities, 0, _entities.length);
+            _entities = entities;
+        }
+        for (int id = count; id < _nextEntityId; id++) _entities[id] = null;
+        _nextEntityId = count;
+        byte[] flags = new byte[count];
+        in.readFully(flags);
+        for (int id = 1; id < count; id++) {
+            if (_entities[id] == null) _entities[id] = new Entity(this, id);
+            _entities[id]._flags = flags[id];
+        }
+        int frees = in.readInt();
+        int[] ids = Component.readInts(in, new int[frees], frees);
+        for (int id : ids) _ids.add(id);
+
+        int comps = in.readInt();
+        if (comps != _comps.size()) throw new IOException(
+            "Snapshot has " + comps + " components, but world has " + _comps.size());
+        ids = new int[count];
+        for (int cc = 0; cc < comps; cc++) {
+            Component comp = _comps.get(cc);
+            String cclass = in.readUTF();
+            if (!cclass.equals(comp.getClass().getName())) throw new IOException(
+                "Snapshot component " + cc + " is a " + cclass + ", not a " + comp.getClass());
+            int size = in.readInt();
+            Component.readInts(in, ids, size);
+            for (int ii = 0; ii < size; ii++) comp.add(_entities[ids[ii]]);
+            comp.read(in, ids, size);
+        }
+
+        // destroyed entities that were not yet freed are queued for removal as they were when
+        // written; enabled entities are queued for addition
+        BitVec free = new BitVec();
+        for (int ii = 0, ll = _ids.size(); ii < ll; ii++) free.set(_ids.get(ii));
+        for (int id = 1; id < count; id++) {
+            Entity e = _entities[id];
+            if (e.isDestroyed()) {
+                if (!free.isSet(id)) toRemove.add(e);
+            } else if (e.isEnabled()) toAdd.add(e);
+        }
+    }
+
+    /** Writes the complete state of this world's entities to a byte array. See {@link #write}. */
+    public byte[] snapshot () {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        try {
+            write(new DataOutputStream(bout));
+        } catch (IOException ioe) {
+            throw new RuntimeException(ioe); // not possible with a byte array stream
+        }
+        return bout.toByteArray();
+    }
+
+    /** Restores the state of this world's entities from data returned by {@link #snapshot}. See
+     * {@link #read}. */
+    public void restore (byte[] snapshot) throws IOException {
+        read(new DataInputStream(new ByteArrayInputStream(snapshot)));
+    }
+
     /** Registers {@code system} with this world.
      * @return a unique index assigned to the system for use in bitmasks.
      */
@@ -169,9 +325,28 @@ public class World
             }
         }
         _systems.add(idx, system);
+
+        // note the new processing order and rebuild our unfiltered systems list
+        ArrayList<System> unfiltered = new ArrayList<System>();
+        for (int ii = 0, ll = _systems.size(); ii < ll; ii++) {
+            System sys = _systems.get(ii);
+            sys.order = ii;
+            if (!sys.isFiltered()) unfiltered.add(sys);
+        }
+        _unfiltered = unfiltered.toArray(new System[unfiltered.size()]);
+        _notify = new System[_systems.size()];
+        // flush our archetypes as they may not include the new system; entities that reference a
+        // flushed archetype will be moved to a fresh one the next time they change
+        _archetypes.clear();
+        systemsChanged();
         return _systems.size()-1;
     }
 
+    /** Notes that our systems or their component declarations have changed. */
+    void systemsChanged () {
+        _graph = null;
+    }
+
     /** Registers {@code component} with this world.
      * @return a unique index assigned to the component for use in bitmasks.
      */
@@ -180,6 +355,96 @@ public class World
         return _comps.size()-1;
     }
 
+    /** Removes all entities from their systems, strips them of their components and clears all
+     * pending entity changes. Used when restoring a snapshot. */
+    protected void clearEntities () {
+        for (int id = 1; id < _nextEntityId; id++) {
+            Entity entity = _entities[id];
+            if (entity == null) continue;
+            if (entity.archetype != null) {
+                for (int ss = 0, ll = gather(entity.archetype, EMPTY); ss < ll; ss++) {
+                    _notify[ss].entityRemoved(entity);
+                }
+                entityRemoved.emit(entity);
+            }
+            for (int cc = 0, ll = _comps.size(); cc < ll; cc++) {
+                if (entity.comps.isSet(cc)) _comps.get(cc).remove(entity);
+            }
+            entity.reset();
+            entity.pending = 0;
+            if (entity.pendingAdds != null) {
+                entity.pendingAdds.clear();
+                entity.pendingRemoves.clear();
+            }
+        }
+        toAdd.removeAll();
+        toChange.removeAll();
+        toRemove.removeAll();
+        _touched.removeAll();
+        _ids.removeAll();
+        for (int ii = 0, ll = _systems.size(); ii < ll; ii++) {
+            CommandBuffer cmds = _systems.get(ii)._commands;
+            if (cmds != null) cmds.clear();
+        }
+    }
+
+    /** Plays back the command buffers of all of our systems, in priority order. */
+    protected void playbackCommands () {
+        for (int ii = 0, ll = _systems.size(); ii < ll; ii++) {
+            CommandBuffer cmds = _systems.get(ii)._commands;
+            if (cmds != null && !cmds.isEmpty()) cmds.collect(this, _touched);
+        }
+        for (int ii = 0, ll = _touched.size(); ii < ll; ii++) _touched.get(ii).applyPending();
+        _touched.removeAll();
+    }
+
+    /** Returns the archetype for entities with component mask {@code comps}, creating and caching
+     * it if necessary. */
+    Archetype archetype (BitVec comps) {
+        Archetype arch = _archetypes.get(comps);
+        if (arch == null) {
+            ArrayList<System> systems = new ArrayList<System>();
+            for (int ii = 0, ll = _systems.size(); ii < ll; ii++) {
+                System sys = _systems.get(ii);
+                if (sys.isFiltered() && sys.matches(comps)) systems.add(sys);
+            }
+            arch = new Archetype(systems.toArray(new System[systems.size()]));
+            // the entity's mask is mutable, so we key the archetype on a copy
+            _archetypes.put(new BitVec(comps), arch);
+        }
+        return arch;
+    }
+
+    /** Merges the filtered systems of {@code a} and {@code b} with our unfiltered systems into
+     * {@link #_notify}, in processing order and without duplicates.
+     * @return the number of systems gathered. */
+    int gather (Archetype a, Archetype b) {
+        System[] as = a.systems, bs = b.systems, us = _unfiltered;
+        int ai = 0, bi = 0, ui = 0, count = 0;
+        while (true) {
+            int ao = (ai < as.length) ? as[ai].order : Integer.MAX_VALUE;
+            int bo = (bi < bs.length) ? bs[bi].order : Integer.MAX_VALUE;
+            int uo = (ui < us.length) ? us[ui].order : Integer.MAX_VALUE;
+            int next = Math.min(ao, Math.min(bo, uo));
+            if (next == Integer.MAX_VALUE) return count;
+            System sys = null;
+            if (ao == next) sys = as[ai++];
+            if (bo == next) sys = bs[bi++];
+            if (uo == next) sys = us[ui++];
+            _notify[count++] = sys;
+        }
+    }
+
+    /** The set of filtered systems that match a particular component mask. */
+    static final class Archetype {
+        /** The matching systems, in processing order. */
+        public final System[] systems;
+
+        public Archetype (System[] systems) {
+            this.systems = systems;
+        }
+    }
+
     // Entity will add itself to the appropriate set as needed
     final Bag<Entity> toAdd = Bag.create();
     final Bag<Entity> toChange = Bag.create();
@@ -188,7 +453,26 @@ public class World
     protected final ArrayList<System> _systems = new ArrayList<System>();
     protected final ArrayList<Component> _comps = new ArrayList<Component>();
 
+    /** Our systems which determine interest via {@link System#isInterested}, in processing order. */
+    protected System[] _unfiltered = new System[0];
+    /** Scratch array into which we {@link #gather} the systems to notify of an entity change. */
+    protected System[] _notify = new System[0];
+    /** Entities with changes pending from command buffer playback. */
+    protected final Bag<Entity> _touched = Bag.create();
+
+    /** The executor used to update systems concurrently, or null. */
+    protected Executor _exec;
+    /** The dependencies between our systems, computed when first needed. */
+    SystemGraph _graph;
+
+    /** Our archetypes, keyed by component mask. */
+    final Map<BitVec,Archetype> _archetypes = new HashMap<BitVec,Archetype>();
+
     protected final IntBag _ids = new IntBag();
     protected Entity[] _entities = new Entity[64];
     protected int _nextEntityId = 1;
+
+    protected static final int SNAPSHOT_VERSION = 1;
+
+    static final Archetype EMPTY = new Archetype(new System[0]);
 }
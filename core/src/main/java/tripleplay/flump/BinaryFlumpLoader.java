@@ -5,38 +5,111 @@
 
 package tripleplay.flump;
 
-import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import playn.core.Asserts;
 import playn.core.Image;
 import playn.core.PlayN;
 import playn.core.util.Callback;
 
+import pythagoras.f.IPoint;
+
 import react.Value;
 
+import tripleplay.platform.TPPlatform;
+
 
 /** Loads our flump library from a binary representation. */
 public class BinaryFlumpLoader
 {
     /**
-     * Loads a binary encoded library via PlayN assets.
+     * Loads a binary encoded library (in either format, see {@link LibraryData}) via PlayN assets,
+     * or via a memory-mapped file where the platform supports it (see {@link
+     * TPPlatform#getBuffer}).
      * @param baseDir The base directory, containing library.bin and texture atlases.
      */
     public static void loadLibrary (final String baseDir, final Callback<Library> callback) {
         Asserts.checkNotNull(callback);
-        PlayN.assets().getBytes(baseDir + "/library.bin", new Callback.Chain<byte[]>(callback) {
-            public void onSuccess (byte[] bytes) {
+        TPPlatform.instance().getBuffer(baseDir + "/library.bin",
+                                        new Callback.Chain<ByteBuffer>(callback) {
+            public void onSuccess (ByteBuffer buffer) {
                 try {
-                    LibraryData libData =
-                        new LibraryData(new DataInputStream(new ByteArrayInputStream(bytes)));
+                    decodeLibrary(LibraryData.read(buffer), baseDir, callback);
+                } catch (Exception err) {
+                    callback.onFailure(err);
+                }
+            }
+        });
+    }
 
-                    decodeLibrary(libData, baseDir, callback);
+    /**
+     * Loads a binary encoded library via PlayN assets, and delivers it as a {@link
+     * StreamingLibrary}, which decodes symbols and loads atlases as they are requested. Note that
+     * the binary data is read in full up front; only the decoding of its symbols and the loading
+     * of its atlases are deferred.
+     * @param baseDir The base directory, containing library.bin and texture atlases.
+     */
+    public static void streamLibrary (final String baseDir,
+                                      final Callback<StreamingLibrary> callback) {
+        Asserts.checkNotNull(callback);
+        TPPlatform.instance().getBuffer(baseDir + "/library.bin",
+                                        new Callback.Chain<ByteBuffer>(callback) {
+            public void onSuccess (ByteBuffer buffer) {
+                StreamingLibrary lib;
+                try {
+                    lib = decodeStreamingLibrary(LibraryData.read(buffer), baseDir);
                 } catch (Exception err) {
                     callback.onFailure(err);
+                    return;
                 }
+                callback.onSuccess(lib);
+            }
+        });
+    }
+
+    protected static StreamingLibrary decodeStreamingLibrary (LibraryData libData,
+                                                              String baseDir) {
+        final float frameRate = libData.frameRate;
+
+        // index the movies and textures by name, leaving them to be decoded on demand
+        final Map<String,LibraryData.MovieData> movies =
+            new HashMap<String,LibraryData.MovieData>();
+        for (LibraryData.MovieData movieData : libData.movies) {
+            movies.put(movieData.id, movieData);
+        }
+        final Map<String,LibraryData.TextureData> textures =
+            new HashMap<String,LibraryData.TextureData>();
+        final Map<String,Integer> textureAtlases = new HashMap<String,Integer>();
+        List<String> atlasFiles = new ArrayList<String>();
+        for (LibraryData.AtlasData atlasData : libData.atlases) {
+            for (LibraryData.TextureData textureData : atlasData.textures) {
+                textures.put(textureData.symbol, textureData);
+                textureAtlases.put(textureData.symbol, atlasFiles.size());
+            }
+            atlasFiles.add(atlasData.file);
+        }
+
+        return new StreamingLibrary(frameRate, PlayN.assets(), baseDir, atlasFiles,
+                                    new StreamingLibrary.Source() {
+            public boolean contains (String name) {
+                return movies.containsKey(name) || textures.containsKey(name);
+            }
+            public Movie.Symbol decodeMovie (String name) {
+                LibraryData.MovieData movieData = movies.get(name);
+                return (movieData == null) ? null :
+                    BinaryFlumpLoader.decodeMovie(frameRate, movieData);
+            }
+            public int textureAtlas (String name) {
+                return textureAtlases.get(name);
+            }
+            public IPoint decodeTexture (String name, float[] rect) {
+                LibraryData.TextureData textureData = textures.get(name);
+                System.arraycopy(textureData.rect, 0, rect, 0, 4);
+                return textureData.origin;
             }
         });
     }
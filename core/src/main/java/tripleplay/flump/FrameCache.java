@@ -0,0 +1,238 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.flump;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import pythagoras.f.Point;
+import pythagoras.f.Rectangle;
+import pythagoras.i.IRectangle;
+
+import playn.core.GroupLayer;
+import playn.core.Image;
+import playn.core.Layer;
+import playn.core.Surface;
+import playn.core.SurfaceImage;
+
+import tripleplay.util.TexturePacker;
+
+/**
+ * Renders each frame of a movie once into packed atlases, so that it can be played as a flipbook
+ * of images rather than by composing its layer tree on every frame. This suits crowds of
+ * identical movies, such as background characters. See {@link MoviePlayer#setCache}.
+ *
+ * <p> Flipbooks are kept, most recently used first, until their atlases exceed the cache's memory
+ * budget. An evicted flipbook is only dropped from the cache; its atlases are reclaimed once no
+ * movie is playing it. </p>
+ */
+public class FrameCache
+{
+    /** The frames of a movie, rendered into atlases. */
+    public static class Flipbook
+    {
+        /** The movie that was rendered. */
+        public final Movie.Symbol symbol;
+
+        /** The image of each frame. */
+        public final Image.Region[] frames;
+
+        /** The position of the top-left corner of each frame's image in the movie, as x, y pairs
+         * per frame. */
+        public final float[] offsets;
+
+        /** The estimated size of the atlases holding the frames, in bytes. */
+        public final int bytes;
+
+        public Flipbook (Movie.Symbol symbol, Image.Region[] frames, float[] offsets, int bytes) {
+            this.symbol = symbol;
+            this.frames = frames;
+            this.offsets = offsets;
+            this.bytes = bytes;
+        }
+
+        /** Creates a movie that plays this flipbook. It has no named layers. */
+        public Movie createInstance () {
+            return new Movie(this);
+        }
+    }
+
+    /**
+     * Creates a cache that keeps flipbooks until their atlases exceed {@code budget} bytes,
+     * estimated at four bytes per pixel. The most recently used flipbook is always kept.
+     */
+    public FrameCache (int budget) {
+        _budget = budget;
+    }
+
+    /** Returns the flipbook of {@code symbol}, rendering it if it is not cached. */
+    public Flipbook flipbook (Movie.Symbol symbol) {
+        Flipbook book = _books.get(symbol);
+        if (book == null) {
+            book = render(symbol);
+            _books.put(symbol, book);
+            _bytes += book.bytes;
+            evict();
+        }
+        return book;
+    }
+
+    /** Returns the estimated size of the cached flipbooks' atlases, in bytes. */
+    public int bytes () {
+        return _bytes;
+    }
+
+    /** Returns the number of cached flipbooks. */
+    public int size () {
+        return _books.size();
+    }
+
+    /** Drops all cached flipbooks. */
+    public void clear () {
+        _books.clear();
+        _bytes = 0;
+    }
+
+    /** Evicts the least recently used flipbooks until we're within budget. */
+    protected void evict () {
+        for (Iterator<Flipbook> iter = _books.values().iterator();
+             _bytes > _budget && _books.size() > 1; ) {
+            _bytes -= iter.next().bytes;
+            iter.remove();
+        }
+    }
+
+    /** Renders every frame of {@code symbol} into atlases sized to fit them. */
+    protected Flipbook render (Movie.Symbol symbol) {
+        int frames = symbol.frames;
+
+        // find the bounds of each frame, playing through them in order (rather than seeking), as
+        // the movies nested in this one only advance as it's played
+        float[] offsets = new float[frames*2];
+        int[] sizes = new int[frames*2];
+        int maxSize = 1, area = 0;
+        Movie movie = symbol.createInstance();
+        for (int ff = 0; ff < frames; ff++) {
+            advance(movie, symbol, ff);
+            Rectangle bounds = bounds(movie.layer());
+            float x = (float)Math.floor(bounds.x), y = (float)Math.floor(bounds.y);
+            int width = Math.max(1, (int)Math.ceil(bounds.maxX() - x));
+            int height = Math.max(1, (int)Math.ceil(bounds.maxY() - y));
+            offsets[2*ff] = x;
+            offsets[2*ff+1] = y;
+            sizes[2*ff] = width;
+            sizes[2*ff+1] = height;
+            maxSize = Math.max(maxSize, Math.max(width, height));
+            area += (width+1) * (height+1);
+        }
+        movie.destroy();
+
+        // pack the frames into the smallest power of two square atlases that fit them well; the
+        // packer lays out frames by size, so it only allocates their regions
+        int atlasSize = 64;
+        while (atlasSize < maxSize+1 || atlasSize*atlasSize < area*5/4) atlasSize *= 2;
+        TexturePacker packer = new TexturePacker(atlasSize);
+        for (int ff = 0; ff < frames; ff++) {
+            packer.add(String.valueOf(ff), sizes[2*ff], sizes[2*ff+1], BLANK);
+        }
+        Map<String,Image.Region> packed = pack(packer);
+
+        // then play through the frames again, drawing each into its region
+        Image.Region[] regions = new Image.Region[frames];
+        List<Image> atlases = new ArrayList<Image>();
+        int bytes = 0;
+        movie = symbol.createInstance();
+        for (int ff = 0; ff < frames; ff++) {
+            regions[ff] = packed.get(String.valueOf(ff));
+            advance(movie, symbol, ff);
+            drawFrame(movie, regions[ff], offsets[2*ff], offsets[2*ff+1]);
+            Image atlas = regions[ff].parent();
+            if (!atlases.contains(atlas)) {
+                atlases.add(atlas);
+                bytes += (int)(atlas.width() * atlas.height() * 4);
+            }
+        }
+        movie.destroy();
+        return new Flipbook(symbol, regions, offsets, bytes);
+    }
+
+    /** Lays out the frames added to {@code packer} in atlases, returning their regions by id. */
+    protected Map<String,Image.Region> pack (TexturePacker packer) {
+        return packer.pack();
+    }
+
+    /** Draws {@code movie} as it's currently posed into {@code region} of its atlas, with the
+     * point ({@code x}, {@code y}) of the movie at the region's top-left corner. */
+    protected void drawFrame (Movie movie, Image.Region region, float x, float y) {
+        Surface surface = ((SurfaceImage)region.parent()).surface();
+        surface.save();
+        surface.translate(region.x() - x, region.y() - y);
+        surface.drawLayer(movie.layer());
+        surface.restore();
+    }
+
+    /** Plays {@code movie}, a new instance of {@code symbol} if {@code frame} is zero or one last
+     * advanced to the previous frame otherwise, to the middle of {@code frame}. */
+    protected static void advance (Movie movie, Movie.Symbol symbol, int frame) {
+        movie.paint(frameTime(symbol, frame) - (frame == 0 ? 0 : frameTime(symbol, frame-1)));
+    }
+
+    /** Returns the playback position at the middle of {@code frame} of {@code symbol}, clear of
+     * rounding at either end of the frame. */
+    protected static float frameTime (Movie.Symbol symbol, int frame) {
+        return symbol.duration * (frame + 0.5f) / symbol.frames;
+    }
+
+    /** Returns the bounds of the visible, sized layers in {@code root}, in its coordinates. */
+    protected static Rectangle bounds (Layer root) {
+        Rectangle bounds = new Rectangle();
+        addBounds(root, root, bounds, new Point(), true);
+        return bounds;
+    }
+
+    /** Helper for {@link #bounds}; unlike {@code Layers.totalBounds}, this accounts for all four
+     * corners of rotated and skewed layers, and skips invisible layers. Returns whether the bounds
+     * are still empty. */
+    protected static boolean addBounds (Layer root, Layer layer, Rectangle bounds, Point scratch,
+                                        boolean empty) {
+        if (!layer.visible()) return empty;
+        if (layer instanceof Layer.HasSize) {
+            Layer.HasSize sized = (Layer.HasSize)layer;
+            float width = sized.width(), height = sized.height();
+            if (width != 0 || height != 0) {
+                for (int ii = 0; ii < 4; ii++) {
+                    scratch.set((ii % 2) * width, (ii / 2) * height);
+                    Layer.Util.layerToParent(layer, root, scratch, scratch);
+                    if (empty) bounds.setBounds(scratch.x, scratch.y, 0, 0);
+                    else bounds.add(scratch);
+                    empty = false;
+                }
+            }
+        }
+        if (layer instanceof GroupLayer) {
+            GroupLayer group = (GroupLayer)layer;
+            for (int ii = 0, ll = group.size(); ii < ll; ii++) {
+                empty = addBounds(root, group.get(ii), bounds, scratch, empty);
+            }
+        }
+        return empty;
+    }
+
+    protected final int _budget;
+    protected int _bytes;
+
+    /** The cached flipbooks, least recently used first. */
+    protected final Map<Movie.Symbol,Flipbook> _books =
+        new LinkedHashMap<Movie.Symbol,Flipbook>(16, 0.75f, true);
+
+    /** Packs a frame without drawing it, as frames are drawn after packing. */
+    protected static final TexturePacker.Renderer BLANK = new TexturePacker.Renderer() {
+        public void render (Surface surface, IRectangle bounds) {}
+    };
+}
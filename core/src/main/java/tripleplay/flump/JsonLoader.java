@@ -6,6 +6,9 @@
 package tripleplay.flump;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import playn.core.Asserts;
 import playn.core.Assets;
@@ -48,6 +51,80 @@ public class JsonLoader
         });
     }
 
+    /**
+     * Loads the index of a JSON encoded library via PlayN assets, and delivers it as a {@link
+     * StreamingLibrary}, which decodes symbols and loads atlases as they are requested.
+     * @param baseDir The base directory, containing library.json and texture atlases.
+     */
+    public static void streamLibrary (String baseDir, Callback<StreamingLibrary> callback) {
+        streamLibrary(assets(), baseDir, callback);
+    }
+
+    /**
+     * Loads the index of a JSON encoded library via the specified PlayN assets. See {@link
+     * #streamLibrary(String,Callback)}.
+     */
+    public static void streamLibrary (final Assets assets, final String baseDir,
+                                      final Callback<StreamingLibrary> callback) {
+        Asserts.checkNotNull(callback);
+        assets.getText(baseDir + "/library.json", new Callback.Chain<String>(callback) {
+            public void onSuccess (String text) {
+                StreamingLibrary lib;
+                try {
+                    lib = decodeStreamingLibrary(json().parse(text), assets, baseDir);
+                } catch (Exception err) {
+                    callback.onFailure(err);
+                    return;
+                }
+                callback.onSuccess(lib);
+            }
+        });
+    }
+
+    protected static StreamingLibrary decodeStreamingLibrary (Json.Object json, Assets assets,
+                                                              String baseDir) {
+        final float frameRate = json.getNumber("frameRate");
+
+        // index the movies and textures by name, leaving them to be decoded on demand
+        final Map<String,Json.Object> movies = new HashMap<String,Json.Object>();
+        for (Json.Object movieJson : json.getArray("movies", Json.Object.class)) {
+            movies.put(movieJson.getString("id"), movieJson);
+        }
+        final Map<String,Json.Object> textures = new HashMap<String,Json.Object>();
+        final Map<String,Integer> textureAtlases = new HashMap<String,Integer>();
+        List<String> atlasFiles = new ArrayList<String>();
+        Json.TypedArray<Json.Object> atlases = json.getArray("textureGroups", Json.Object.class).
+            get(0).getArray("atlases", Json.Object.class);
+        for (Json.Object atlasJson : atlases) {
+            for (Json.Object tjson : atlasJson.getArray("textures", Json.Object.class)) {
+                String symbol = tjson.getString("symbol");
+                textures.put(symbol, tjson);
+                textureAtlases.put(symbol, atlasFiles.size());
+            }
+            atlasFiles.add(atlasJson.getString("file"));
+        }
+
+        return new StreamingLibrary(frameRate, assets, baseDir, atlasFiles,
+                                    new StreamingLibrary.Source() {
+            public boolean contains (String name) {
+                return movies.containsKey(name) || textures.containsKey(name);
+            }
+            public Movie.Symbol decodeMovie (String name) {
+                Json.Object movieJson = movies.get(name);
+                return (movieJson == null) ? null : JsonLoader.decodeMovie(frameRate, movieJson);
+            }
+            public int textureAtlas (String name) {
+                return textureAtlases.get(name);
+            }
+            public IPoint decodeTexture (String name, float[] rect) {
+                Json.Object tjson = textures.get(name);
+                Json.TypedArray<Float> trect = tjson.getArray("rect", Float.class);
+                for (int ii = 0; ii < 4; ii++) rect[ii] = trect.get(ii);
+                return getPoint(tjson, "origin", 0, 0);
+            }
+        });
+    }
+
     protected static void decodeLibrary (Json.Object json, Assets assets, String baseDir,
                                          final Callback<Library> callback) {
         final float frameRate = json.getNumber("frameRate");
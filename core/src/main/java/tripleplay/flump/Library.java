@@ -14,6 +14,7 @@ import java.util.Map;
 
 import playn.core.Asserts;
 import playn.core.Image;
+import playn.core.Layer;
 import playn.core.util.Callback;
 
 import tripleplay.util.TexturePacker;
@@ -100,11 +101,63 @@ public class Library
         return symbol.createInstance();
     }
 
+    /**
+     * Creates an instance of a movie, reusing a {@link #recycle}d instance of it if possible, or
+     * throws if the symbol name is not in this library.
+     */
     public Movie createMovie (String symbolName) {
+        List<Movie> pool = _pools.get(symbolName);
+        if (pool != null && !pool.isEmpty()) return pool.remove(pool.size()-1);
         return (Movie)createInstance(symbolName);
     }
 
+    /**
+     * Returns a movie created by this library to its pool, from which {@link #createMovie} will
+     * reuse it instead of building a new instance of its symbol. The movie is removed from its
+     * parent layer and rewound, along with the movies nested in it, and the transform, alpha and
+     * visibility of its layer are reset; any other changes to it (such as replaced named layers)
+     * are retained. The caller must not use the movie after recycling it. If the pool of its
+     * symbol is full, or the movie plays a {@link FrameCache.Flipbook}, the movie is destroyed.
+     */
+    public void recycle (Movie movie) {
+        String name = movie.symbol().name();
+        Asserts.checkArgument(symbols.get(name) == movie.symbol(), "Movie not from this library",
+                              "name", name);
+        List<Movie> pool = _pools.get(name);
+        if (pool == null) _pools.put(name, pool = new ArrayList<Movie>());
+        if (pool.size() >= _maxPooled || movie._flipbook != null) {
+            movie.destroy();
+            return;
+        }
+
+        Layer layer = movie.layer();
+        if (layer.parent() != null) layer.parent().remove(layer);
+        layer.setTranslation(0, 0).setScale(1).setRotation(0);
+        layer.setOrigin(0, 0).setAlpha(1).setVisible(true);
+        movie.setSpeed(1);
+        movie.rewind();
+        pool.add(movie);
+    }
+
+    /**
+     * Sets the maximum number of recycled instances of each movie that are pooled. The default is
+     * {@link #DEFAULT_MAX_POOLED}. Pools that are over the new maximum are trimmed.
+     */
+    public void setMaxPooled (int maxPooled) {
+        _maxPooled = maxPooled;
+        for (List<Movie> pool : _pools.values()) {
+            while (pool.size() > maxPooled) pool.remove(pool.size()-1).destroy();
+        }
+    }
+
+    /** The default maximum number of recycled instances of each movie. */
+    public static final int DEFAULT_MAX_POOLED = 8;
+
     public Texture createTexture (String symbolName) {
         return (Texture)createInstance(symbolName);
     }
+
+    /** Recycled movies, by symbol name. */
+    protected final Map<String,List<Movie>> _pools = new HashMap<String,List<Movie>>();
+    protected int _maxPooled = DEFAULT_MAX_POOLED;
 }
@@ -5,11 +5,15 @@
 
 package tripleplay.flump;
 
+import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import pythagoras.f.Point;
 
@@ -19,9 +23,21 @@ import playn.core.PlayN;
 /**
  * Captures the data of a flump library. This allows us to convert between Json and other formats,
  *  including raw bytes.
+ *
+ * <p> There are two binary formats. Version 1 (see {@link #write}) streams each symbol, layer and
+ * keyframe in turn. Version 2 (see {@link #writeV2}) starts with a {@link #MAGIC} number and
+ * version, stores each distinct string once in a string table, and stores layers, keyframes and
+ * textures as fixed-width records in parallel arrays, which are read in bulk directly from a
+ * {@link ByteBuffer} (such as a memory-mapped file). Use {@link #read} to read either. </p>
  */
 public class LibraryData
 {
+    /** The number that starts a version 2 (or later) binary library: "FLMP". */
+    public static final int MAGIC = 0x464C4D50;
+
+    /** The latest binary format version. */
+    public static final int VERSION = 2;
+
     public static class AtlasData
     {
         public final List<TextureData> textures = new ArrayList<TextureData>();
@@ -49,6 +65,10 @@ public class LibraryData
             return json;
         }
 
+        protected AtlasData (String file) {
+            this.file = file;
+        }
+
         public AtlasData (DataInputStream istream) throws IOException {
             int numTextures = istream.readInt();
             for (int ii = 0; ii < numTextures; ++ii) {
@@ -93,6 +113,9 @@ public class LibraryData
             return json;
         }
 
+        protected TextureData () {
+        }
+
         public TextureData (DataInputStream istream) throws IOException {
             symbol = istream.readUTF();
             origin = new Point(istream.readFloat(), istream.readFloat());
@@ -139,6 +162,9 @@ public class LibraryData
             return json;
         }
 
+        protected MovieData () {
+        }
+
         public MovieData (DataInputStream istream) throws IOException {
             id = istream.readUTF();
             int numLayers = istream.readInt();
@@ -184,6 +210,9 @@ public class LibraryData
             return json;
         }
 
+        protected LayerData () {
+        }
+
         public LayerData (DataInputStream istream) throws IOException {
             name = istream.readUTF();
             int numKeyframes = istream.readInt();
@@ -249,6 +278,9 @@ public class LibraryData
             return json;
         }
 
+        protected KeyframeData () {
+        }
+
         public KeyframeData (DataInputStream istream) throws IOException {
             duration = istream.readInt();
             if (istream.readBoolean()) {
@@ -365,12 +397,234 @@ public class LibraryData
         ostream.writeFloat(frameRate);
     }
 
+    /**
+     * Reads a library in either binary format from {@code buffer}, which is read from its current
+     * position (which is advanced) in big-endian byte order.
+     * @throws IOException if the data is truncated, or is of an unknown version.
+     */
+    public static LibraryData read (ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() >= 4 && buffer.getInt(buffer.position()) == MAGIC) {
+            return new LibraryData(buffer);
+        }
+        // a version 1 library starts with its movie count, and has no header
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new LibraryData(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    /**
+     * Reads a version 2 binary library from {@code buffer}. See {@link #read}.
+     */
+    public LibraryData (ByteBuffer buffer) throws IOException {
+        try {
+            if (buffer.getInt() != MAGIC) throw new IOException("Not a binary Flump library");
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported binary Flump library version " + version);
+            }
+            frameRate = buffer.getFloat();
+
+            String[] strings = new String[buffer.getInt()];
+            for (int ii = 0; ii < strings.length; ii++) {
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                strings[ii] = new String(bytes, "UTF-8");
+            }
+
+            int[] movieIds = readInts(buffer, buffer.getInt());
+            int[] layerCounts = readInts(buffer, movieIds.length);
+            int[] layerNames = readInts(buffer, buffer.getInt());
+            int[] keyframeCounts = readInts(buffer, layerNames.length);
+            int keyframes = buffer.getInt();
+            int[] durations = readInts(buffer, keyframes);
+            int[] labels = readInts(buffer, keyframes), refs = readInts(buffer, keyframes);
+            float[] kfValues = readFloats(buffer, keyframes * KEYFRAME_FLOATS);
+            byte[] flags = new byte[keyframes];
+            buffer.get(flags);
+
+            for (int mm = 0, ll = 0, kk = 0; mm < movieIds.length; mm++) {
+                MovieData movie = new MovieData();
+                movie.id = strings[movieIds[mm]];
+                for (int lend = ll + layerCounts[mm]; ll < lend; ll++) {
+                    LayerData layer = new LayerData();
+                    layer.name = strings[layerNames[ll]];
+                    for (int kend = kk + keyframeCounts[ll]; kk < kend; kk++) {
+                        KeyframeData kf = new KeyframeData();
+                        kf.duration = durations[kk];
+                        kf.label = (labels[kk] < 0) ? null : strings[labels[kk]];
+                        kf.ref = (refs[kk] < 0) ? null : strings[refs[kk]];
+                        int vv = kk * KEYFRAME_FLOATS;
+                        kf.loc = new Point(kfValues[vv], kfValues[vv+1]);
+                        kf.scale = new Point(kfValues[vv+2], kfValues[vv+3]);
+                        kf.skew = new Point(kfValues[vv+4], kfValues[vv+5]);
+                        kf.pivot = new Point(kfValues[vv+6], kfValues[vv+7]);
+                        kf.alpha = kfValues[vv+8];
+                        kf.ease = kfValues[vv+9];
+                        kf.visible = (flags[kk] & VISIBLE) != 0;
+                        kf.tweened = (flags[kk] & TWEENED) != 0;
+                        layer.keyframes.add(kf);
+                    }
+                    movie.layers.add(layer);
+                }
+                movies.add(movie);
+            }
+
+            int[] atlasFiles = readInts(buffer, buffer.getInt());
+            int[] textureCounts = readInts(buffer, atlasFiles.length);
+            int[] symbols = readInts(buffer, buffer.getInt());
+            float[] texValues = readFloats(buffer, symbols.length * TEXTURE_FLOATS);
+            for (int aa = 0, tt = 0; aa < atlasFiles.length; aa++) {
+                AtlasData atlas = new AtlasData(strings[atlasFiles[aa]]);
+                for (int tend = tt + textureCounts[aa]; tt < tend; tt++) {
+                    TextureData texture = new TextureData();
+                    texture.symbol = strings[symbols[tt]];
+                    int vv = tt * TEXTURE_FLOATS;
+                    texture.origin = new Point(texValues[vv], texValues[vv+1]);
+                    texture.rect = new float[] {
+                        texValues[vv+2], texValues[vv+3], texValues[vv+4], texValues[vv+5] };
+                    atlas.textures.add(texture);
+                }
+                atlases.add(atlas);
+            }
+
+        } catch (RuntimeException e) {
+            // buffer underflows, negative sizes and bad indices all mean the data is corrupt
+            IOException ioe = new IOException("Corrupt binary Flump library");
+            ioe.initCause(e);
+            throw ioe;
+        }
+    }
+
+    /**
+     * Writes this library in the version 2 binary format. See {@link LibraryData}.
+     */
+    public void writeV2 (DataOutputStream ostream) throws IOException {
+        Map<String,Integer> table = new HashMap<String,Integer>();
+        List<String> strings = new ArrayList<String>();
+
+        // flatten the library into parallel arrays, collecting its strings as we go
+        List<LayerData> layers = new ArrayList<LayerData>();
+        List<KeyframeData> keyframes = new ArrayList<KeyframeData>();
+        int[] movieIds = new int[movies.size()];
+        for (int mm = 0; mm < movieIds.length; mm++) {
+            MovieData movie = movies.get(mm);
+            movieIds[mm] = intern(movie.id, table, strings);
+            for (LayerData layer : movie.layers) {
+                layers.add(layer);
+                keyframes.addAll(layer.keyframes);
+            }
+        }
+        int[] layerNames = new int[layers.size()];
+        for (int ll = 0; ll < layerNames.length; ll++) {
+            layerNames[ll] = intern(layers.get(ll).name, table, strings);
+        }
+        int[] labels = new int[keyframes.size()], refs = new int[keyframes.size()];
+        for (int kk = 0; kk < labels.length; kk++) {
+            labels[kk] = intern(keyframes.get(kk).label, table, strings);
+            refs[kk] = intern(keyframes.get(kk).ref, table, strings);
+        }
+        List<TextureData> textures = new ArrayList<TextureData>();
+        int[] atlasFiles = new int[atlases.size()];
+        for (int aa = 0; aa < atlasFiles.length; aa++) {
+            atlasFiles[aa] = intern(atlases.get(aa).file, table, strings);
+            textures.addAll(atlases.get(aa).textures);
+        }
+        int[] symbols = new int[textures.size()];
+        for (int tt = 0; tt < symbols.length; tt++) {
+            symbols[tt] = intern(textures.get(tt).symbol, table, strings);
+        }
+
+        ostream.writeInt(MAGIC);
+        ostream.writeInt(VERSION);
+        ostream.writeFloat(frameRate);
+
+        ostream.writeInt(strings.size());
+        for (String string : strings) {
+            byte[] bytes = string.getBytes("UTF-8");
+            ostream.writeInt(bytes.length);
+            ostream.write(bytes);
+        }
+
+        ostream.writeInt(movieIds.length);
+        writeInts(ostream, movieIds);
+        for (MovieData movie : movies) ostream.writeInt(movie.layers.size());
+        ostream.writeInt(layerNames.length);
+        writeInts(ostream, layerNames);
+        for (LayerData layer : layers) ostream.writeInt(layer.keyframes.size());
+
+        ostream.writeInt(keyframes.size());
+        for (KeyframeData kf : keyframes) ostream.writeInt(kf.duration);
+        writeInts(ostream, labels);
+        writeInts(ostream, refs);
+        for (KeyframeData kf : keyframes) {
+            ostream.writeFloat(kf.loc.x);
+            ostream.writeFloat(kf.loc.y);
+            ostream.writeFloat(kf.scale.x);
+            ostream.writeFloat(kf.scale.y);
+            ostream.writeFloat(kf.skew.x);
+            ostream.writeFloat(kf.skew.y);
+            ostream.writeFloat(kf.pivot.x);
+            ostream.writeFloat(kf.pivot.y);
+            ostream.writeFloat(kf.alpha);
+            ostream.writeFloat(kf.ease);
+        }
+        for (KeyframeData kf : keyframes) {
+            ostream.writeByte((kf.visible ? VISIBLE : 0) | (kf.tweened ? TWEENED : 0));
+        }
+
+        ostream.writeInt(atlasFiles.length);
+        writeInts(ostream, atlasFiles);
+        for (AtlasData atlas : atlases) ostream.writeInt(atlas.textures.size());
+        ostream.writeInt(symbols.length);
+        writeInts(ostream, symbols);
+        for (TextureData texture : textures) {
+            ostream.writeFloat(texture.origin.x);
+            ostream.writeFloat(texture.origin.y);
+            for (float value : texture.rect) ostream.writeFloat(value);
+        }
+    }
+
+    /** Returns the index of {@code string} in a string table, adding it if needed, or -1 if it
+     * is null. */
+    protected static int intern (String string, Map<String,Integer> table, List<String> strings) {
+        if (string == null) return -1;
+        Integer index = table.get(string);
+        if (index == null) {
+            table.put(string, index = strings.size());
+            strings.add(string);
+        }
+        return index;
+    }
+
+    protected static int[] readInts (ByteBuffer buffer, int count) {
+        int[] values = new int[count];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + count*4);
+        return values;
+    }
+
+    protected static float[] readFloats (ByteBuffer buffer, int count) {
+        float[] values = new float[count];
+        buffer.asFloatBuffer().get(values);
+        buffer.position(buffer.position() + count*4);
+        return values;
+    }
+
+    protected static void writeInts (DataOutputStream ostream, int[] values) throws IOException {
+        for (int value : values) ostream.writeInt(value);
+    }
+
     protected static Point getPoint (Json.Object json, String field, float defX, float defY)
     {
         Json.TypedArray<Float> array = json.getArray(field, Float.class);
         return (array != null) ? new Point(array.get(0), array.get(1)) : new Point(defX, defY);
     }
 
+    // the number of float values in a version 2 keyframe record (loc, scale, skew, pivot, alpha
+    // and ease) and texture record (origin and rect), and the flags of a keyframe record
+    protected static final int KEYFRAME_FLOATS = 10, TEXTURE_FLOATS = 6;
+    protected static final byte VISIBLE = 1, TWEENED = 2;
+
     protected static Json.Array fromPoint (Point pt)
     {
         Json.Array arr = PlayN.json().createArray();
@@ -5,7 +5,7 @@
 
 package tripleplay.flump;
 
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -15,6 +15,7 @@ import pythagoras.f.FloatMath;
 
 import playn.core.Asserts;
 import playn.core.GroupLayer;
+import playn.core.ImageLayer;
 import playn.core.Layer;
 import playn.core.util.Clock;
 import static playn.core.PlayN.*;
@@ -56,8 +57,41 @@ public class Movie
             return new Movie(this);
         }
 
+        /**
+         * Configures this movie to play from baked frame data: the transform, origin, alpha and
+         * visibility of each of its layers on each of its frames, computed once (when its first
+         * instance is created) and shared by all of its instances. This saves repeatedly
+         * interpolating keyframes when many instances of a movie are playing. Between frames, the
+         * baked values are interpolated linearly, which differs very slightly from interpolating
+         * the keyframes' skew.
+         */
+        public void bake () {
+            _bake = true;
+        }
+
+        /** Returns this movie's baked frame data, baking it if needed, or null if this movie is
+         * not baked. See {@link #bake}. The data for frame {@code f} of layer {@code l} starts at
+         * {@code (f * layers.size() + l) * FIELDS}. */
+        protected float[] baked () {
+            if (_baked == null && _bake && frames > 0) {
+                int layerCount = layers.size();
+                float[] baked = new float[frames * layerCount * FIELDS];
+                for (int ll = 0; ll < layerCount; ll++) {
+                    List<KeyframeData> keyframes = layers.get(ll).keyframes;
+                    for (int ff = 0, kf = 0, finalKf = keyframes.size()-1; ff < frames; ff++) {
+                        while (kf < finalKf && keyframes.get(kf+1).index <= ff) ++kf;
+                        computeFrame(keyframes, kf, ff, baked, (ff*layerCount + ll) * FIELDS);
+                    }
+                }
+                _baked = baked;
+            }
+            return _baked;
+        }
+
         protected String _name;
         protected float _framesPerMs;
+        protected boolean _bake;
+        protected float[] _baked;
     }
 
     protected Movie (Symbol symbol) {
@@ -71,6 +105,15 @@ public class Movie
         setFrame(1, 0);
     }
 
+    protected Movie (FrameCache.Flipbook flipbook) {
+        _symbol = flipbook.symbol;
+        _flipbook = flipbook;
+        _animators = new LayerAnimator[0];
+        _flipbookLayer = graphics().createImageLayer();
+        _root.add(_flipbookLayer);
+        setFrame(1, 0);
+    }
+
     @Override public GroupLayer layer () {
         return _root;
     }
@@ -127,12 +170,18 @@ public class Movie
         return animator != null ? animator.content : null;
     }
 
-    /** Returns all of the {@code Instance}s on a named layer. */
+    /** Returns all of the {@code Instance}s on a named layer: one per distinct symbol on its
+     * keyframes, in order of first appearance. Instances that have yet to be shown are created. */
     public List<Instance> getInstances (String name) {
         LayerAnimator animator = getNamedAnimator(name);
         if (animator == null) return Collections.<Instance>emptyList();
         if (animator._instances == null) return Collections.singletonList(animator._current);
-        return Collections.unmodifiableList(Arrays.asList(animator._instances));
+        List<Instance> instances = new ArrayList<Instance>();
+        for (int ii = 0, ll = animator._instances.length; ii < ll; ++ii) {
+            Instance instance = animator.instance(ii);
+            if (!instances.contains(instance)) instances.add(instance);
+        }
+        return Collections.unmodifiableList(instances);
     }
 
     /**
@@ -166,7 +215,32 @@ public class Movie
         return null; // Not found
     }
 
+    /** Rewinds this movie, and every movie nested in it (including those on keyframes that are
+     * not currently shown), to the start. */
+    protected void rewind () {
+        for (int ii = 0, ll = _animators.length; ii < ll; ++ii) {
+            LayerAnimator animator = _animators[ii];
+            if (animator._current instanceof Movie) ((Movie)animator._current).rewind();
+            if (animator._instances == null) continue;
+            for (Instance instance : animator._instances) {
+                if (instance != animator._current && instance instanceof Movie) {
+                    ((Movie)instance).rewind();
+                }
+            }
+        }
+        setPosition(0);
+    }
+
     protected void setFrame (float frame, float dt) {
+        if (_flipbook != null) {
+            int fframe = Math.min((int)frame, _flipbook.frames.length-1);
+            _flipbookLayer.setImage(_flipbook.frames[fframe]);
+            _flipbookLayer.setTranslation(_flipbook.offsets[2*fframe],
+                                          _flipbook.offsets[2*fframe+1]);
+            _frame = frame;
+            return;
+        }
+
         if (frame < _frame) {
             // Wrap back to the beginning
             for (int ii = 0, ll = _animators.length; ii < ll; ++ii) {
@@ -175,13 +249,116 @@ public class Movie
                 animator.keyframeIdx = 0;
             }
         }
-        for (int ii = 0, ll = _animators.length; ii < ll; ++ii) {
-            LayerAnimator animator = _animators[ii];
-            animator.setFrame(frame, dt);
+
+        float[] baked = _symbol.baked();
+        if (baked == null) {
+            for (int ii = 0, ll = _animators.length; ii < ll; ++ii) {
+                LayerAnimator animator = _animators[ii];
+                animator.setKeyframe(frame);
+                computeFrame(animator.data.keyframes, animator.keyframeIdx, frame, _state, 0);
+                animator.apply(_state, 0, dt);
+            }
+
+        } else {
+            // look up the frame's baked data, and interpolate toward the next frame if the
+            // keyframe is being tweened toward it
+            int frames = _symbol.frames, bframe = Math.min((int)frame, frames-1);
+            float frac = (bframe < frames-1) ? frame - bframe : 0;
+            int stride = _animators.length * FIELDS;
+            for (int ii = 0, ll = _animators.length; ii < ll; ++ii) {
+                LayerAnimator animator = _animators[ii];
+                animator.setKeyframe(frame);
+                int off = bframe*stride + ii*FIELDS, noff = off + stride;
+                if (frac > 0 && baked[off+LERP] != 0 && baked[noff+VISIBLE] != 0) {
+                    // interpolate the transform and alpha; the origin and flags are the current
+                    // keyframe's, as in the exact computation
+                    float[] state = _state;
+                    for (int ff = M00; ff <= TY; ff++) {
+                        float value = baked[off+ff];
+                        state[ff] = value + (baked[noff+ff] - value) * frac;
+                    }
+                    float alpha = baked[off+ALPHA];
+                    state[ALPHA] = alpha + (baked[noff+ALPHA] - alpha) * frac;
+                    state[ORIGIN_X] = baked[off+ORIGIN_X];
+                    state[ORIGIN_Y] = baked[off+ORIGIN_Y];
+                    state[VISIBLE] = baked[off+VISIBLE];
+                    state[LERP] = baked[off+LERP];
+                    animator.apply(state, 0, dt);
+                } else animator.apply(baked, off, dt);
+            }
         }
         _frame = frame;
     }
 
+    /**
+     * Computes the state of a layer on the specified frame, given the index of its keyframe on
+     * that frame, into {@code out} at {@code off}. Only the {@link #VISIBLE} and {@link #LERP}
+     * fields are computed if the layer is not visible.
+     */
+    protected static void computeFrame (List<KeyframeData> keyframes, int keyframeIdx,
+                                        float frame, float[] out, int off) {
+        int finalFrame = keyframes.size()-1;
+        KeyframeData kf = keyframes.get(keyframeIdx);
+        boolean visible = kf.symbol() != null && kf.visible;
+        out[off+VISIBLE] = visible ? 1 : 0;
+        out[off+LERP] = 0;
+        if (!visible) {
+            return; // Don't bother animating invisible layers
+        }
+
+        float locX = kf.loc.x();
+        float locY = kf.loc.y();
+        float scaleX = kf.scale.x();
+        float scaleY = kf.scale.y();
+        float skewX = kf.skew.x();
+        float skewY = kf.skew.y();
+        float alpha = kf.alpha;
+
+        if (kf.tweened && keyframeIdx < finalFrame) {
+            // Interpolate with the next keyframe, if there's something on the next keyframe
+            KeyframeData nextKf = keyframes.get(keyframeIdx+1);
+            if (nextKf.symbol() != null) {
+                float interp = (frame-kf.index) / kf.duration;
+                float ease = kf.ease;
+                if (ease != 0) {
+                    float t;
+                    if (ease < 0) {
+                        // Ease in
+                        float inv = 1 - interp;
+                        t = 1 - inv*inv;
+                        ease = -ease;
+                    } else {
+                        // Ease out
+                        t = interp*interp;
+                    }
+                    interp = ease*t + (1-ease)*interp;
+                }
+                locX += (nextKf.loc.x()-locX) * interp;
+                locY += (nextKf.loc.y()-locY) * interp;
+                scaleX += (nextKf.scale.x()-scaleX) * interp;
+                scaleY += (nextKf.scale.y()-scaleY) * interp;
+                skewX += (nextKf.skew.x()-skewX) * interp;
+                skewY += (nextKf.skew.y()-skewY) * interp;
+                alpha += (nextKf.alpha-alpha) * interp;
+                out[off+LERP] = 1;
+            }
+        }
+
+        float sinX = FloatMath.sin(skewX), cosX = FloatMath.cos(skewX);
+        float sinY = FloatMath.sin(skewY), cosY = FloatMath.cos(skewY);
+
+        // Create a transformation matrix that translates to locX/Y, skews, then scales
+        out[off+M00] = cosY * scaleX;
+        out[off+M01] = sinY * scaleX;
+        out[off+M10] = -sinX * scaleY;
+        out[off+M11] = cosX * scaleY;
+        out[off+TX] = locX;
+        out[off+TY] = locY;
+        out[off+ORIGIN_X] = kf.pivot.x();
+        out[off+ORIGIN_Y] = kf.pivot.y();
+        out[off+ALPHA] = alpha;
+    }
+
     // Controls a single Flash layer
     protected static class LayerAnimator {
         public final LayerData data;
@@ -200,10 +377,9 @@ public class Movie
                         throw new IllegalArgumentException("Keyframe missing symbol layer=" +
                             data.name + " frame=" + ii);
                     }
-                    _instances[ii] = sym.createInstance();
                 }
                 content = graphics().createGroupLayer();
-                setCurrent(_instances[0]);
+                setCurrent(instance(0));
 
             } else if (data._lastSymbol != null) {
                 _current = data._lastSymbol.createInstance();
@@ -214,7 +390,13 @@ public class Movie
             }
         }
 
-        public void setFrame (float frame, float dt) {
+        /** Advances to the keyframe for the specified frame (which is never before the current
+         * keyframe), switching to its instance if this is a multi-symbol layer. Keyframes with the
+         * same symbol share one instance, so a nested movie plays on uninterrupted across
+         * consecutive keyframes of its symbol, and restarts only when its symbol is switched back
+         * in after another symbol's keyframe. (Each keyframe formerly had its own instance, which
+         * resumed from wherever it was last left when its keyframe was reached again.) */
+        public void setKeyframe (float frame) {
             List<KeyframeData> keyframes = data.keyframes;
             int finalFrame = keyframes.size()-1;
 
@@ -224,67 +406,46 @@ public class Movie
             }
 
             if (changedKeyframe && _instances != null) {
-                // Switch to the next instance if this is a multi-symbol layer
-                setCurrent(_instances[keyframeIdx]);
+                // Switch to the next instance if this is a multi-symbol layer, restarting it if
+                // it's a movie that was last shown on an earlier keyframe
+                Instance next = instance(keyframeIdx);
+                if (next != _current && next instanceof Movie) ((Movie)next).setPosition(0);
+                setCurrent(next);
                 changedKeyframe = false;
             }
+        }
 
-            KeyframeData kf = keyframes.get(keyframeIdx);
-            boolean visible = kf.symbol() != null && kf.visible;
-            content.setVisible(visible);
-            if (!visible) {
-                return; // Don't bother animating invisible layers
-            }
-
-            float locX = kf.loc.x();
-            float locY = kf.loc.y();
-            float scaleX = kf.scale.x();
-            float scaleY = kf.scale.y();
-            float skewX = kf.skew.x();
-            float skewY = kf.skew.y();
-            float alpha = kf.alpha;
-
-            if (kf.tweened && keyframeIdx < finalFrame) {
-                // Interpolate with the next keyframe, if there's something on the next keyframe
-                KeyframeData nextKf = keyframes.get(keyframeIdx+1);
-                if (nextKf.symbol() != null) {
-                    float interp = (frame-kf.index) / kf.duration;
-                    float ease = kf.ease;
-                    if (ease != 0) {
-                        float t;
-                        if (ease < 0) {
-                            // Ease in
-                            float inv = 1 - interp;
-                            t = 1 - inv*inv;
-                            ease = -ease;
-                        } else {
-                            // Ease out
-                            t = interp*interp;
-                        }
-                        interp = ease*t + (1-ease)*interp;
+        /** Returns the instance for the specified keyframe of a multi-symbol layer, creating it
+         * the first time it's needed. Keyframes with the same symbol share an instance. */
+        protected Instance instance (int keyframeIdx) {
+            Instance instance = _instances[keyframeIdx];
+            if (instance == null) {
+                List<KeyframeData> keyframes = data.keyframes;
+                tripleplay.flump.Symbol sym = keyframes.get(keyframeIdx).symbol();
+                for (int ii = 0, ll = _instances.length; ii < ll; ++ii) {
+                    if (_instances[ii] != null && keyframes.get(ii).symbol() == sym) {
+                        instance = _instances[ii];
+                        break;
                     }
-                    locX += (nextKf.loc.x()-locX) * interp;
-                    locY += (nextKf.loc.y()-locY) * interp;
-                    scaleX += (nextKf.scale.x()-scaleX) * interp;
-                    scaleY += (nextKf.scale.y()-scaleY) * interp;
-                    skewX += (nextKf.skew.x()-skewX) * interp;
-                    skewY += (nextKf.skew.y()-skewY) * interp;
-                    alpha += (nextKf.alpha-alpha) * interp;
                 }
+                if (instance == null) instance = sym.createInstance();
+                _instances[keyframeIdx] = instance;
             }
+            return instance;
+        }
 
-            float sinX = FloatMath.sin(skewX), cosX = FloatMath.cos(skewX);
-            float sinY = FloatMath.sin(skewY), cosY = FloatMath.cos(skewY);
-
-            // Create a transformation matrix that translates to locX/Y, skews, then scales
-            float m00 = cosY * scaleX;
-            float m01 = sinY * scaleX;
-            float m10 = -sinX * scaleY;
-            float m11 = cosX * scaleY;
-            content.transform().setTransform(m00, m01, m10, m11, locX, locY);
-            content.setOrigin(kf.pivot.x(), kf.pivot.y());
+        /** Applies the layer state computed by {@link #computeFrame} to our content. */
+        public void apply (float[] state, int off, float dt) {
+            boolean visible = state[off+VISIBLE] != 0;
+            content.setVisible(visible);
+            if (!visible) {
+                return; // Don't bother animating invisible layers
+            }
 
-            content.setAlpha(alpha);
+            content.transform().setTransform(state[off+M00], state[off+M01], state[off+M10],
+                                             state[off+M11], state[off+TX], state[off+TY]);
+            content.setOrigin(state[off+ORIGIN_X], state[off+ORIGIN_Y]);
+            content.setAlpha(state[off+ALPHA]);
 
             if (_current != null) {
                 _current.paint(dt);
@@ -301,12 +462,25 @@ public class Movie
         }
 
         protected Instance _current; // The instance currently visible
-        protected Instance[] _instances; // Null if only 0-1 instance on this layer
+        protected Instance[] _instances; // By keyframe, null if only 0-1 instance on this layer
     }
 
+    // the fields of the state of a layer on a frame (see computeFrame); the transform and alpha
+    // are interpolated between baked frames, the origin and flags are not
+    protected static final int M00 = 0, M01 = 1, M10 = 2, M11 = 3, TX = 4, TY = 5;
+    protected static final int ORIGIN_X = 6, ORIGIN_Y = 7, ALPHA = 8, VISIBLE = 9;
+    /** Whether the layer is being tweened toward its next keyframe. */
+    protected static final int LERP = 10;
+    protected static final int FIELDS = 11;
+
     protected Symbol _symbol;
     protected GroupLayer _root = graphics().createGroupLayer();
     protected LayerAnimator[] _animators;
+    /** The rendered frames that we play, and the layer that shows them, if we're cached. */
+    protected FrameCache.Flipbook _flipbook;
+    protected ImageLayer _flipbookLayer;
+    /** The state of the layer being updated, when computing or interpolating it. */
+    protected final float[] _state = new float[FIELDS];
 
     protected float _frame = 0;
     protected float _position = 0;
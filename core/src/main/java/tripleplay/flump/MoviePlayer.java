@@ -53,7 +53,17 @@ public class MoviePlayer
         return _oneshotMovie == null && _loopingMovie != null;
     }
 
-    // TODO(bruno): public boolean setCache (CacheBuilder cache)
+    /**
+     * Plays movies started from now on from their frames as rendered by {@code cache}, rather
+     * than by composing their layers, or composes them again if {@code cache} is null. Cached
+     * movies have no named layers, so this is not for movies that are customized via {@link
+     * #createMovie}.
+     * @return This instance, for chaining.
+     */
+    public MoviePlayer setCache (FrameCache cache) {
+        _cache = cache;
+        return this;
+    }
 
     /**
      * Shows a movie that plays once. When it completes, the last looping movie is returned to. It
@@ -114,6 +124,12 @@ public class MoviePlayer
 
     /** Override this to dress up avatars or any other custom initialization. */
     protected Movie createMovie (String name) {
+        if (_cache != null) {
+            Symbol symbol = _lib.symbols.get(name);
+            if (symbol instanceof Movie.Symbol) {
+                return _cache.flipbook((Movie.Symbol)symbol).createInstance();
+            }
+        }
         return _lib.createMovie(name);
     }
 
@@ -157,6 +173,7 @@ public class MoviePlayer
     }
 
     protected Library _lib;
+    protected FrameCache _cache;
     protected GroupLayer _root;
 
     protected Movie _oneshotMovie;
@@ -0,0 +1,325 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.flump;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import pythagoras.f.IPoint;
+
+import playn.core.Asserts;
+import playn.core.Assets;
+import playn.core.Image;
+import playn.core.util.Callback;
+
+import react.Signal;
+
+/**
+ * A Flump library whose symbols are decoded, and whose atlases are loaded, only as they are
+ * needed. Unlike a {@link Library}, which loads every atlas and decodes every movie before it is
+ * delivered, a streaming library is delivered as soon as its metadata index is loaded. Symbols
+ * are then {@link #request}ed by name: this loads the atlases used by the symbol (and by every
+ * symbol it references), and emits the symbol via {@link #symbolReady} once they are all loaded.
+ *
+ * <p> Each request should be balanced by a {@link #release} once the symbol's instances have been
+ * destroyed. Atlases that are no longer used by any requested symbol remain loaded (and may serve
+ * a later request) until the loaded atlases exceed the budget set via {@link #setAtlasBudget}, at
+ * which point the least recently used of them are evicted. </p>
+ *
+ * <p> Use {@link JsonLoader#streamLibrary} or {@link BinaryFlumpLoader#streamLibrary} to load a
+ * streaming library. </p>
+ */
+public class StreamingLibrary
+{
+    /** The original frame rate of movies in this library. */
+    public final float frameRate;
+
+    /** Emits each requested symbol once it, and every atlas it needs, has been loaded. */
+    public final Signal<Symbol> symbolReady = Signal.create();
+
+    /** Emits any error that occurs while loading an atlas. Symbols that need the atlas are not
+     * made ready; requesting them again will retry the load. */
+    public final Signal<Throwable> atlasFailed = Signal.create();
+
+    /**
+     * Requests the named symbol: starts loading any of the atlases that it needs which are not
+     * already loaded, and emits it via {@link #symbolReady} once they are all loaded (immediately,
+     * if they are already loaded).
+     *
+     * @throws IllegalArgumentException if this library contains no such symbol.
+     */
+    public void request (String name) {
+        List<Atlas> atlases = atlases(name);
+        Integer requests = _requests.get(name);
+        _requests.put(name, (requests == null) ? 1 : requests + 1);
+
+        boolean ready = true;
+        for (Atlas atlas : atlases) {
+            atlas.refs++;
+            if (atlas.image == null) {
+                ready = false;
+                load(atlas);
+            }
+        }
+        if (ready) symbolReady.emit(decode(name));
+        else _pending.add(name);
+    }
+
+    /**
+     * Releases a previous request for the named symbol. Once none of the symbols that use an atlas
+     * are requested, the atlas becomes eligible for eviction.
+     */
+    public void release (String name) {
+        Integer requests = _requests.get(name);
+        Asserts.checkState(requests != null, "Released unrequested symbol", "name", name);
+        if (requests == 1) _requests.remove(name);
+        else _requests.put(name, requests - 1);
+        _pending.remove(name);
+
+        for (Atlas atlas : atlases(name)) {
+            if (--atlas.refs == 0) atlas.lastUsed = ++_useCounter;
+        }
+        evict();
+    }
+
+    /**
+     * Returns whether every atlas needed by the named symbol is loaded, in which case it may be
+     * instantiated. Returns false if this library contains no such symbol.
+     */
+    public boolean isReady (String name) {
+        if (!_source.contains(name)) return false;
+        for (Atlas atlas : atlases(name)) {
+            if (atlas.image == null) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the named symbol, or null if it is not {@link #isReady ready}.
+     */
+    public Symbol symbol (String name) {
+        return isReady(name) ? decode(name) : null;
+    }
+
+    /** Creates an instance of a symbol, or throws if the symbol is missing or not ready. */
+    public Instance createInstance (String symbolName) {
+        Symbol symbol = symbol(symbolName);
+        if (symbol == null) {
+            throw new IllegalArgumentException(
+                "Missing or unready symbol [name=" + symbolName + "]");
+        }
+        return symbol.createInstance();
+    }
+
+    public Movie createMovie (String symbolName) {
+        return (Movie)createInstance(symbolName);
+    }
+
+    public Texture createTexture (String symbolName) {
+        return (Texture)createInstance(symbolName);
+    }
+
+    /**
+     * Sets the number of bytes of atlases that may stay loaded without being used by a requested
+     * symbol. Atlas sizes are estimated at four bytes per pixel. The default is unlimited.
+     */
+    public void setAtlasBudget (int bytes) {
+        _budget = bytes;
+        evict();
+    }
+
+    /** Returns the estimated number of bytes of atlases that are currently loaded. */
+    public int atlasBytes () {
+        return _loadedBytes;
+    }
+
+    /** Returns the number of atlases that are currently loaded. */
+    public int loadedAtlases () {
+        int loaded = 0;
+        for (Atlas atlas : _atlases) {
+            if (atlas.image != null) loaded++;
+        }
+        return loaded;
+    }
+
+    /** Provides the undecoded metadata of the symbols in a library. */
+    protected static abstract class Source
+    {
+        /** Returns whether the library contains a symbol with the specified name. */
+        public abstract boolean contains (String name);
+
+        /** Decodes the named movie, or returns null if it is not a movie. The movie's keyframes
+         * are resolved by the library. */
+        public abstract Movie.Symbol decodeMovie (String name);
+
+        /** Returns the index of the atlas that contains the named texture. */
+        public abstract int textureAtlas (String name);
+
+        /** Decodes the origin of the named texture, and its bounds in its atlas into {@code
+         * rect}. */
+        public abstract IPoint decodeTexture (String name, float[] rect);
+    }
+
+    protected StreamingLibrary (float frameRate, Assets assets, String baseDir,
+                                List<String> atlasFiles, Source source) {
+        this.frameRate = frameRate;
+        _assets = assets;
+        _baseDir = baseDir;
+        _source = source;
+        for (String file : atlasFiles) _atlases.add(new Atlas(file));
+    }
+
+    /** Decodes (once) the named symbol, resolving the symbols referenced by a movie's keyframes.
+     * A texture's region is only set while its atlas is loaded. */
+    protected Symbol decode (String name) {
+        Symbol symbol = _symbols.get(name);
+        if (symbol != null) return symbol;
+
+        if (!_source.contains(name)) {
+            throw new IllegalArgumentException("Missing required symbol [name=" + name + "]");
+        }
+        Movie.Symbol movie = _source.decodeMovie(name);
+        if (movie != null) {
+            _symbols.put(name, movie);
+            List<Atlas> atlases = new ArrayList<Atlas>();
+            for (LayerData layer : movie.layers) {
+                for (KeyframeData kf : layer.keyframes) {
+                    if (kf._symbolName == null) continue;
+                    Symbol ref = decode(kf._symbolName);
+                    if (layer._lastSymbol == null) layer._lastSymbol = ref;
+                    else if (layer._lastSymbol != ref) layer._multipleSymbols = true;
+                    kf._symbol = ref;
+                    for (Atlas atlas : atlases(kf._symbolName)) {
+                        if (!atlases.contains(atlas)) atlases.add(atlas);
+                    }
+                }
+            }
+            _symbolAtlases.put(name, atlases);
+            return movie;
+        }
+
+        float[] rect = new float[4];
+        IPoint origin = _source.decodeTexture(name, rect);
+        Atlas atlas = _atlases.get(_source.textureAtlas(name));
+        Texture.Symbol texture = new Texture.Symbol(name, origin, null);
+        atlas.textures.add(texture);
+        atlas.rects.add(rect);
+        if (atlas.image != null) texture.region = atlas.region(rect);
+        _symbols.put(name, texture);
+        List<Atlas> atlases = new ArrayList<Atlas>();
+        atlases.add(atlas);
+        _symbolAtlases.put(name, atlases);
+        return texture;
+    }
+
+    /** Returns the atlases needed by the named symbol, decoding it if needed. */
+    protected List<Atlas> atlases (String name) {
+        List<Atlas> atlases = _symbolAtlases.get(name);
+        if (atlases == null) {
+            decode(name);
+            atlases = _symbolAtlases.get(name);
+        }
+        return atlases;
+    }
+
+    protected void load (final Atlas atlas) {
+        if (atlas.loading) return;
+        atlas.loading = true;
+        _assets.getImage(_baseDir + "/" + atlas.file).addCallback(new Callback<Image>() {
+            public void onSuccess (Image image) {
+                atlas.loading = false;
+                loaded(atlas, image);
+            }
+            public void onFailure (Throwable cause) {
+                atlas.loading = false;
+                atlasFailed.emit(cause);
+            }
+        });
+    }
+
+    protected void loaded (Atlas atlas, Image image) {
+        atlas.image = image;
+        atlas.bytes = (int)(image.width() * image.height() * 4);
+        _loadedBytes += atlas.bytes;
+        for (int ii = 0, ll = atlas.textures.size(); ii < ll; ii++) {
+            atlas.textures.get(ii).region = atlas.region(atlas.rects.get(ii));
+        }
+        if (atlas.refs == 0) atlas.lastUsed = ++_useCounter;
+
+        // emit the pending symbols that are now ready, then evict what's no longer needed
+        List<String> ready = new ArrayList<String>();
+        for (Iterator<String> iter = _pending.iterator(); iter.hasNext(); ) {
+            String name = iter.next();
+            if (isReady(name)) {
+                iter.remove();
+                ready.add(name);
+            }
+        }
+        for (String name : ready) symbolReady.emit(decode(name));
+        evict();
+    }
+
+    /** Evicts the least recently used unreferenced atlases until we are within budget. */
+    protected void evict () {
+        while (_loadedBytes > _budget) {
+            Atlas lru = null;
+            for (Atlas atlas : _atlases) {
+                if (atlas.image != null && atlas.refs == 0 &&
+                    (lru == null || atlas.lastUsed < lru.lastUsed)) lru = atlas;
+            }
+            if (lru == null) break;
+            lru.image.clearTexture();
+            lru.image = null;
+            for (Texture.Symbol texture : lru.textures) texture.region = null;
+            _loadedBytes -= lru.bytes;
+        }
+    }
+
+    /** Tracks the state of an atlas image. */
+    protected static class Atlas
+    {
+        public final String file;
+        /** The image, while it is loaded. */
+        public Image image;
+        public boolean loading;
+        /** The estimated size of the image, in bytes. */
+        public int bytes;
+        /** The number of outstanding requests for symbols that use this atlas. */
+        public int refs;
+        /** When this atlas was last released (or loaded), for LRU eviction. */
+        public int lastUsed;
+        /** The textures decoded from this atlas, and their bounds in it. */
+        public final List<Texture.Symbol> textures = new ArrayList<Texture.Symbol>();
+        public final List<float[]> rects = new ArrayList<float[]>();
+
+        public Atlas (String file) {
+            this.file = file;
+        }
+
+        public Image.Region region (float[] rect) {
+            return image.subImage(rect[0], rect[1], rect[2], rect[3]);
+        }
+    }
+
+    protected final Assets _assets;
+    protected final String _baseDir;
+    protected final Source _source;
+    protected final List<Atlas> _atlases = new ArrayList<Atlas>();
+
+    /** The symbols that have been decoded, and the atlases they need, by name. */
+    protected final Map<String,Symbol> _symbols = new HashMap<String,Symbol>();
+    protected final Map<String,List<Atlas>> _symbolAtlases = new HashMap<String,List<Atlas>>();
+
+    /** The number of outstanding requests for each requested symbol. */
+    protected final Map<String,Integer> _requests = new HashMap<String,Integer>();
+    /** The requested symbols that are waiting for their atlases to load. */
+    protected final List<String> _pending = new ArrayList<String>();
+
+    protected int _budget = Integer.MAX_VALUE, _loadedBytes, _useCounter;
+}
@@ -26,4 +26,22 @@ public abstract class Effector
      * update.
      */
     public abstract void apply (int index, float[] data, int start, float now, float dt);
+
+    /**
+     * Applies this effector to {@code count} particles in the supplied buffer. {@link
+     * ParticleBuffer} calls this method with batches of live particles, so that each effector is
+     * called once per batch rather than once per particle. The default implementation calls
+     * {@link #apply(int,float[],int,float,float)} for each particle; effectors should override it
+     * with a loop that does the same work inline.
+     *
+     * @param indices the indices of the particles to which to apply this effector. The fields of
+     * the {@code ii}th particle start at {@code indices[ii]*ParticleBuffer.NUM_FIELDS}.
+     * @param count the number of particles in {@code indices}.
+     */
+    public void applyAll (float[] data, int[] indices, int count, float now, float dt) {
+        for (int ii = 0; ii < count; ii++) {
+            int index = indices[ii];
+            apply(index, data, index * ParticleBuffer.NUM_FIELDS, now, dt);
+        }
+    }
 }
@@ -12,9 +12,15 @@ import react.Connection;
 import react.Signal;
 import react.UnitSlot;
 
+import pythagoras.f.FloatMath;
+import pythagoras.f.IRectangle;
+
 import playn.core.Image;
 import playn.core.ImmediateLayer;
+import playn.core.InternalTransform;
+import playn.core.Layer;
 import playn.core.Surface;
+import playn.core.gl.GLContext;
 import static playn.core.PlayN.graphics;
 
 import tripleplay.util.Destroyable;
@@ -25,7 +31,9 @@ import tripleplay.util.Destroyable;
 public class Emitter
     implements Destroyable
 {
-    /** The layer to which this emitter is attached. */
+    /** The layer to which this emitter is attached. The particles of batched emitters are
+     * rendered by {@link Particles#batchLayer}, but this layer still positions the emitter, and
+     * hiding it hides the emitter's particles. */
     public final ImmediateLayer layer;
 
     /** The generator that adds new particles to this emitter. */
@@ -43,20 +51,94 @@ public class Emitter
     /** A signal emitted when this emitter has no live particles and no generator. */
     public final Signal<Emitter> onEmpty = Signal.create();
 
+    /** The distance (in framebuffer pixels) by which particles may extend beyond their positions,
+     * used to determine whether this emitter is in view. If negative (the default), the larger
+     * dimension of the particle image is used. */
+    public float cullMargin = -1;
+
+    /** The step (in milliseconds) in which {@link #prewarm} advances emitters. */
+    public static final float PREWARM_STEP = 100;
+
+    /** The step (in milliseconds) in which {@link #fastForward(float)} advances emitters. */
+    public static final float FAST_FORWARD_STEP = 1000/60f;
+
+    /** The most steps in which an emitter replays the time that it skipped while out of view
+     * (see {@link Particles.LOD#hiddenInterval}). Time is replayed in steps of {@link
+     * #FAST_FORWARD_STEP}, unless that would take more steps than this. */
+    public static final int MAX_CATCH_UP_STEPS = 60;
+
+    /**
+     * Returns whether this emitter was in view as of its last update: its layer is visible and
+     * either its layer or any of its particles lie within the view. See {@link Particles#lod}.
+     * This is always true if the LOD policy does not {@link Particles.LOD#usesDistance use
+     * distance}.
+     */
+    public boolean isInView () {
+        return _distance == 0;
+    }
+
     /**
      * Adds the specified number of particles. One usually does not call this manually, but rather
      * configures {@link #generator} with a generator that adds particles as desired.
      */
     public void addParticles (int count) {
-        if (_buffer.isFull()) return;
-        for (int ii = 0, ll = initters.size(); ii < ll; ii++) initters.get(ii).willInit(count);
-        _buffer.add(count, _parts.now(), initters);
+        if (_spawnScale != 1) {
+            _spawnAccum += count * _spawnScale;
+            count = (int)_spawnAccum;
+            _spawnAccum -= count;
+        }
+        if (count <= 0 || _buffer.isFull()) return;
+        for (int ii = 0, ll = initters.size(); ii < ll; ii++) {
+            initters.get(ii).willInit(this, count);
+        }
+        _buffer.add(count, Float.isNaN(_ffNow) ? _parts.now() : _ffNow, initters);
+    }
+
+    /**
+     * Fast forwards this emitter by {@code millis} in (coarse) steps of {@link #PREWARM_STEP}.
+     * Call this on a newly configured emitter for a steady state effect (smoke, fire, rain) so
+     * that it appears fully formed rather than starting empty.
+     */
+    public void prewarm (float millis) {
+        fastForward(millis, PREWARM_STEP);
+    }
+
+    /**
+     * Fast forwards this emitter by {@code millis} in steps of {@link #FAST_FORWARD_STEP}.
+     */
+    public void fastForward (float millis) {
+        fastForward(millis, FAST_FORWARD_STEP);
+    }
+
+    /**
+     * Advances this emitter by {@code millis} without rendering, running its generator and
+     * effectors in fixed steps of {@code stepMillis} (the last of which may be shorter). Existing
+     * particles are aged by {@code millis}, and new particles are born as if they had been
+     * generated over the {@code millis} preceding the current time. As the steps do not depend on
+     * the frame rate, and no level of detail (see {@link Particles#lod}) is applied, an emitter
+     * whose initializers draw from a {@link tripleplay.util.Randoms} with a known seed always
+     * ends up in the same state, for example when recreating an effect for a replay. If the
+     * emitter runs out of particles and has no generator, {@link #onEmpty} is emitted.
+     */
+    public void fastForward (float millis, float stepMillis) {
+        if (stepMillis <= 0) throw new IllegalArgumentException(
+            "Fast forward step must be positive [step=" + stepMillis + "]");
+        if (millis <= 0) return;
+        float end = _parts.now(), secs = millis/1000;
+        float spawnScale = _spawnScale;
+        _spawnScale = 1;
+        _buffer.age(secs);
+        int steps = (int)Math.ceil(millis / stepMillis);
+        boolean empty = advance(end - secs, end, stepMillis/1000, steps);
+        _spawnScale = spawnScale;
+        if (empty) onEmpty.emit(this);
     }
 
     /**
      * Unregisters this emitter from the particles manager.
      */
     @Override public void destroy () {
+        if (_batched) _parts.removeBatched(this);
         layer.destroy();
         _conn.disconnect();
     }
@@ -68,31 +150,147 @@ public class Emitter
         onEmpty.connect(new UnitSlot() { @Override public void onEmit () { destroy(); }});
     }
 
-    Emitter (Particles parts, final int maxParticles, final Image image) {
+    Emitter (Particles parts, final int maxParticles, final Image image, boolean batched) {
         this.layer = graphics().createImmediateLayer(new ImmediateLayer.Renderer() {
             @Override public void render (Surface surface) {
+                if (_batched || (_parts.lod.cull && !isInView())) return;
                 int tex = image.ensureTexture();
-                _buffer.render(_parts._shader.prepare(tex, maxParticles),
+                _buffer.render(_parts.shader().prepare(tex, maxParticles),
                                image.width(), image.height());
             }
         });
         _parts = parts;
+        _image = image;
         _buffer = new ParticleBuffer(maxParticles);
+        _batched = batched;
     }
 
     void update (float now, float dt) {
-        // TODO: update and cache our layer's local transform?
+        Particles.LOD lod = _parts.lod;
+        _distance = lod.usesDistance() ? updateDistance() : 0;
+        int interval = lod.hiddenInterval;
+        if (_distance > 0 && interval != 1) {
+            _skippedDt += dt;
+            if (interval <= 0 || ++_skipped < interval) return;
+            dt = 0; // it's now included in _skippedDt
+        }
+        _skipped = 0;
+        _spawnScale = lod.spawnScale(this, _distance);
+
+        if (_skippedDt > 0) {
+            // replay the time we skipped in fixed steps, so that particles are born throughout it
+            // and our effectors integrate it as they would have had we not skipped it
+            float total = _skippedDt + dt, step = FAST_FORWARD_STEP/1000;
+            int steps = (int)Math.ceil(total / step);
+            if (steps > MAX_CATCH_UP_STEPS) {
+                steps = MAX_CATCH_UP_STEPS;
+                step = total / steps;
+            }
+            _skippedDt = 0;
+            if (advance(now - total, now, step, steps)) onEmpty.emit(this);
+            return;
+        }
+
         if (generator != null && generator.generate(this, now, dt)) {
             generator = null;
             onExhausted.emit(this);
         }
-        if (_buffer.apply(effectors, now, dt) == 0 && generator == null) {
+        if (_buffer.apply(effectors, now, dt, _parts._runner) == 0 && generator == null) {
             onEmpty.emit(this);
         }
     }
 
+    /**
+     * Runs our generator and effectors from time {@code start} to {@code end} (in seconds) in
+     * {@code steps} steps of {@code step} seconds (the last of which may be shorter). Particles
+     * are born at the end of the step in which they're generated. Stops early if we run out of
+     * particles and have no generator, and returns whether that happened.
+     */
+    protected boolean advance (float start, float end, float step, int steps) {
+        try {
+            for (int ss = 1; ss <= steps; ss++) {
+                float prev = start + (ss-1)*step, now = (ss == steps) ? end : start + ss*step;
+                _ffNow = now;
+                if (generator != null && generator.generate(this, now, now - prev)) {
+                    generator = null;
+                    onExhausted.emit(this);
+                }
+                if (_buffer.apply(effectors, now, now - prev, _parts._runner) == 0 &&
+                    generator == null) return true;
+            }
+            return false;
+        } finally {
+            _ffNow = Float.NaN;
+        }
+    }
+
+    /** Returns whether our layer and all of its parents are visible, and it is attached to the
+     * root layer. */
+    boolean isShowing () {
+        Layer root = graphics().rootLayer(), xlayer = layer;
+        for (; xlayer != null; xlayer = xlayer.parent()) {
+            if (!xlayer.visible()) return false;
+            if (xlayer == root) return true;
+        }
+        return false;
+    }
+
+    /** Updates {@link #_xform} with our layer's world transform (including the root transform,
+     * as particles bypass normal rendering). Returns false if our layer or any of its parents are
+     * hidden, or it is not attached to the root layer. */
+    boolean updateTransform () {
+        Layer root = graphics().rootLayer(), xlayer = layer;
+        boolean visible = true;
+        _xform.setTransform(1, 0, 0, 1, 0, 0);
+        for (; xlayer != null; xlayer = xlayer.parent()) {
+            visible = visible && xlayer.visible();
+            _xform.preConcatenate((InternalTransform)xlayer.transform());
+            if (xlayer == root) break;
+        }
+        _xform.preConcatenate(graphics().ctx().rootTransform());
+        return visible && xlayer != null;
+    }
+
+    /** Updates our layer's world transform, and returns the distance from the view to the nearer
+     * of its origin and our particles, or {@link Float#POSITIVE_INFINITY} if our layer is
+     * hidden. */
+    protected float updateDistance () {
+        if (!updateTransform()) return Float.POSITIVE_INFINITY;
+        GLContext ctx = graphics().ctx();
+        float margin = cullMargin;
+        if (margin < 0) margin = Math.max(_image.width(), _image.height()) * ctx.scale.factor;
+        float minX = _xform.tx(), minY = _xform.ty(), maxX = minX, maxY = minY;
+        if (_buffer.liveCount() > 0) {
+            IRectangle bounds = _buffer.bounds();
+            minX = Math.min(minX, bounds.x());
+            minY = Math.min(minY, bounds.y());
+            maxX = Math.max(maxX, bounds.maxX());
+            maxY = Math.max(maxY, bounds.maxY());
+        }
+        float viewWidth = ctx.scale.scaled(graphics().width());
+        float viewHeight = ctx.scale.scaled(graphics().height());
+        float dx = Math.max(0, Math.max(minX - margin - viewWidth, -(maxX + margin)));
+        float dy = Math.max(0, Math.max(minY - margin - viewHeight, -(maxY + margin)));
+        return (dx == 0 && dy == 0) ? 0 : FloatMath.sqrt(dx*dx + dy*dy);
+    }
+
     protected final Particles _parts;
     protected final ParticleBuffer _buffer;
+    protected final Image _image;
+    protected final boolean _batched;
+
+    /** Our layer's world transform, as of our last update. */
+    protected final InternalTransform _xform = graphics().ctx().createTransform();
+    /** Our distance from the view as of our last update. */
+    protected float _distance;
+    /** The number of updates we've skipped while out of view, and the time they covered. */
+    protected int _skipped;
+    protected float _skippedDt;
+    /** The fraction of requested particles that we add, and the fractional particles owed. */
+    protected float _spawnScale = 1, _spawnAccum;
+    /** The time at which particles are born while we're fast forwarding or catching up, NaN
+     * otherwise. */
+    protected float _ffNow = Float.NaN;
 
     /** Our connection to our {@link Particles} (filled in by same). */
     protected Connection _conn;
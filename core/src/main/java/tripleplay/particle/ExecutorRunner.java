@@ -0,0 +1,97 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.particle;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A {@link ParticleBuffer.Runner} that runs chunks on an {@link Executor}, usually a thread pool
+ * shared by all emitters (see {@link Particles#setRunner}). The calling thread runs the first
+ * chunk itself and then waits for the rest. This class is not available in the HTML5 backend.
+ */
+public class ExecutorRunner implements ParticleBuffer.Runner
+{
+    /**
+     * Creates a runner backed by a pool of daemon threads, which runs up to one chunk per
+     * available processor at once (including the chunk run by the calling thread).
+     */
+    public static ExecutorRunner create () {
+        final int procs = Runtime.getRuntime().availableProcessors();
+        ExecutorService pool = Executors.newFixedThreadPool(
+            Math.max(procs-1, 1), new ThreadFactory() {
+                public Thread newThread (Runnable r) {
+                    Thread thread = new Thread(r, "ParticleRunner");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        return new ExecutorRunner(pool, procs);
+    }
+
+    /**
+     * Creates a runner that runs up to {@code parallelism} chunks at once, all but one of them
+     * on {@code exec}.
+     */
+    public ExecutorRunner (Executor exec, int parallelism) {
+        _exec = exec;
+        _parallelism = parallelism;
+    }
+
+    @Override public int parallelism () {
+        return _parallelism;
+    }
+
+    @Override public void run (Runnable[] chunks, int count) {
+        final CountDownLatch done = new CountDownLatch(count-1);
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        for (int ii = 1; ii < count; ii++) {
+            final Runnable chunk = chunks[ii];
+            Runnable task = new Runnable() { public void run () {
+                try {
+                    chunk.run();
+                } catch (Throwable t) {
+                    error.compareAndSet(null, t);
+                } finally {
+                    done.countDown();
+                }
+            }};
+            try {
+                _exec.execute(task);
+            } catch (RejectedExecutionException ree) {
+                task.run(); // the executor is shut down or saturated, so run the chunk ourselves
+            }
+        }
+        try {
+            chunks[0].run();
+        } catch (Throwable t) {
+            error.compareAndSet(null, t);
+        }
+        // the submitted chunks are still writing to the buffer, so we must wait for them even if
+        // we're interrupted; we restore our interrupt status once they're done
+        boolean interrupted = false;
+        while (true) {
+            try {
+                done.await();
+                break;
+            } catch (InterruptedException ie) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        Throwable t = error.get();
+        if (t instanceof RuntimeException) throw (RuntimeException)t;
+        if (t instanceof Error) throw (Error)t;
+    }
+
+    protected final Executor _exec;
+    protected final int _parallelism;
+}
@@ -17,6 +17,15 @@ public abstract class Initializer
      */
     public void willInit (int count) {} // nada by default
 
+    /**
+     * Called by {@code emitter} just before this initializer is used to initialize one or more of
+     * its particles. Initializers that are shared by many emitters can use this to obtain
+     * emitter-specific state. The default implementation calls {@link #willInit(int)}.
+     */
+    public void willInit (Emitter emitter, int count) {
+        willInit(count);
+    }
+
     /**
      * Applies this initializer to the {@code index}th particle in the supplied buffer. The
      * initializer must use the {@link ParticleBuffer} offsets to write fields into {@code data},
@@ -7,6 +7,9 @@ package tripleplay.particle;
 
 import java.util.List;
 
+import pythagoras.f.IRectangle;
+import pythagoras.f.Rectangle;
+
 import playn.core.Color;
 
 /**
@@ -48,6 +51,21 @@ public class ParticleBuffer
     /** The total number of fields per particle. */
     public static final int NUM_FIELDS = GREEN_BLUE+1;
 
+    /** The minimum number of {@link #alive} words in each chunk of a parallel {@link #apply}. */
+    public static final int MIN_CHUNK_WORDS = 64;
+
+    /**
+     * Runs the chunks into which a large buffer is partitioned when applying effectors, possibly
+     * in parallel. See {@link ExecutorRunner} for an implementation that uses a thread pool.
+     */
+    public interface Runner {
+        /** Returns the number of chunks that this runner can usefully run at once. */
+        int parallelism ();
+
+        /** Runs the first {@code count} of {@code chunks}, returning once all have completed. */
+        void run (Runnable[] chunks, int count);
+    }
+
     /** The particle data. */
     public final float[] data;
 
@@ -96,10 +114,14 @@ public class ParticleBuffer
 
     /** Sets the particle in question to alive or not. */
     public void setAlive (int partidx, boolean isAlive) {
-        if (isAlive) {
-            alive[partidx/32] |= (1 << partidx % 32);
-        } else {
-            alive[partidx/32] &= ~(1 << partidx % 32);
+        int word = partidx/32, mask = 1 << partidx % 32;
+        boolean wasAlive = (alive[word] & mask) != 0;
+        if (isAlive && !wasAlive) {
+            alive[word] |= mask;
+            _live++;
+        } else if (!isAlive && wasAlive) {
+            alive[word] &= ~mask;
+            _live--;
         }
     }
 
@@ -107,18 +129,25 @@ public class ParticleBuffer
         return _live >= _maxParticles;
     }
 
+    /** Returns the number of live particles in this buffer. */
+    public int liveCount () {
+        return _live;
+    }
+
     /** Adds {@code count} particles to this buffer, and initializes them with {@code initters}. */
     public void add (int count, float now, List<? extends Initializer> initters) {
-        if (isFull()) return;
-        // TODO: keep track of a last added position and start from there
-        int pp = 0, ppos = 0, icount = initters.size(), initted = 0;
-        for (int aa = 0; aa < alive.length && initted < count; aa++) {
-            int live = alive[aa], mask = 1;
-            if (live == 0xFFFFFFFF) {
-                pp += 32;
-                ppos += 32*NUM_FIELDS;
-                continue; // all full
-            }
+        count = Math.min(count, _maxParticles - _live);
+        if (count <= 0) return;
+        // we start looking for free slots where the last add left off, and wrap around; particles
+        // tend to die in the order in which they were added, so the slots just past the cursor
+        // are the most likely to be free, and a constant emitter need not skip over all of the
+        // full slots at the start of the buffer every time
+        int icount = initters.size(), words = alive.length, initted = 0;
+        for (int ww = 0, aa = _cursor; ww < words && initted < count; ww++, aa++) {
+            if (aa == words) aa = 0;
+            int live = alive[aa];
+            if (live == 0xFFFFFFFF) continue; // all full
+            int pp = aa*32, ppos = pp*NUM_FIELDS, mask = 1;
             for (int end = Math.min(pp+32, _maxParticles); pp < end && initted < count;
                  pp++, ppos += NUM_FIELDS, mask <<= 1) {
                 if ((live & mask) != 0) continue;
@@ -130,7 +159,9 @@ public class ParticleBuffer
                 initted++;
             }
             alive[aa] = live;
+            _cursor = aa;
         }
+        _live += initted;
     }
 
     /**
@@ -139,50 +170,201 @@ public class ParticleBuffer
      * @return the number of live particles to which the effectors were applied.
      */
     public int apply (List<? extends Effector> effectors, float now, float dt) {
-        int pp = 0, ppos = 0, ecount = effectors.size(), living = 0;
-        for (int aa = 0; aa < alive.length; aa++) {
-            int live = alive[aa], mask = 1, died = 0;
-            for (int end = pp+32; pp < end; pp++, ppos += NUM_FIELDS, mask <<= 1) {
-                // if this particle is not alive, skip it
-                if ((live & mask) == 0) continue;
-
-                // if this particle has died, mark it as such
-                if (now - data[ppos+BIRTH] > data[ppos+LIFESPAN]) {
-                    live &= ~mask;
-                    died++;
-                    continue;
-                }
+        return apply(effectors, now, dt, null);
+    }
 
-                // the particle lives, apply the effectors
-                for (int ee = 0; ee < ecount; ee++) {
-                    effectors.get(ee).apply(pp, data, ppos, now, dt);
-                }
-                living++;
+    /**
+     * Applies the supplied effectors to all (live) particles in this buffer. If {@code runner} is
+     * non-null and this buffer is sufficiently large, the buffer is partitioned into chunks of
+     * whole {@link #alive} words (of at least {@link #MIN_CHUNK_WORDS} words each), which are
+     * applied via {@code runner}, possibly in parallel. In that case, the effectors must be safe
+     * to apply concurrently to distinct particles (the standard effectors are).
+     *
+     * @return the number of live particles to which the effectors were applied.
+     */
+    public int apply (List<? extends Effector> effectors, float now, float dt, Runner runner) {
+        int words = alive.length;
+        int count = (runner == null) ? 1 :
+            Math.max(1, Math.min(runner.parallelism(), words/MIN_CHUNK_WORDS));
+        if (count == 1) chunk(0).init(effectors, now, dt, 0, words).run();
+        else {
+            int per = (words + count - 1) / count;
+            for (int cc = 0, start = 0; cc < count; cc++, start += per) {
+                chunk(cc).init(effectors, now, dt, start, Math.min(start + per, words));
             }
+            runner.run(_chunks, count);
+        }
 
-            // if we killed off any particles, update the liveness array
-            if (died > 0) {
-                alive[aa] = live;
+        int living = 0;
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        for (int cc = 0; cc < count; cc++) {
+            Chunk chunk = _chunks[cc];
+            living += chunk.living;
+            _live -= chunk.died;
+            chunk.effectors = null;
+            if (chunk.living > 0) {
+                minX = Math.min(minX, chunk.minX);
+                minY = Math.min(minY, chunk.minY);
+                maxX = Math.max(maxX, chunk.maxX);
+                maxY = Math.max(maxY, chunk.maxY);
             }
         }
+        if (living == 0) _bounds.setBounds(0, 0, 0, 0);
+        else _bounds.setBounds(minX, minY, maxX - minX, maxY - minY);
         return living;
     }
 
+    /**
+     * Ages all live particles by {@code seconds}, by moving their birth times back that far.
+     */
+    public void age (float seconds) {
+        for (int aa = 0, ppos = BIRTH; aa < alive.length; aa++, ppos += 32*NUM_FIELDS) {
+            int live = alive[aa];
+            for (int pos = ppos; live != 0; live >>>= 1, pos += NUM_FIELDS) {
+                if ((live & 1) != 0) data[pos] -= seconds;
+            }
+        }
+    }
+
+    /**
+     * Returns the bounds of the positions ({@link #TX}, {@link #TY}) of the particles that were
+     * alive as of the last call to {@link #apply}. The bounds are empty if there were none.
+     */
+    public IRectangle bounds () {
+        return _bounds;
+    }
+
     /** Renders the particles to the supplied shader. */
     public void render (ParticleShader shader, float width, float height) {
         float ql = -width/2, qt = -height/2, qr = width/2, qb = height/2;
-        int pp = 0, ppos = 0, rendered = 0;
+        int pp = 0, ppos = 0;
         for (int aa = 0; aa < alive.length; aa++) {
             int live = alive[aa], mask = 1;
+            if (live == 0) {
+                pp += 32;
+                ppos += 32*NUM_FIELDS;
+                continue;
+            }
             for (int end = pp+32; pp < end; pp++, ppos += NUM_FIELDS, mask <<= 1) {
                 if ((live & mask) == 0) continue;
                 shader.core.addQuad(ql, qt, qr, qb, data, ppos);
-                rendered++;
             }
         }
-        _live = rendered;
     }
 
+    /** Applies effectors to the particles in a range of {@link #alive} words. */
+    protected class Chunk implements Runnable {
+        public List<? extends Effector> effectors;
+        public float now, dt;
+        public int fromWord, toWord;
+        public int living, died;
+        public float minX, minY, maxX, maxY;
+
+        public Chunk init (List<? extends Effector> effectors, float now, float dt,
+                           int fromWord, int toWord) {
+            this.effectors = effectors;
+            this.now = now;
+            this.dt = dt;
+            this.fromWord = fromWord;
+            this.toWord = toWord;
+            return this;
+        }
+
+        public void run () {
+            int pp = fromWord*32, ppos = pp*NUM_FIELDS;
+            int[] batch = _batch;
+            int living = 0, died = 0, batched = 0;
+            minX = minY = Float.MAX_VALUE;
+            maxX = maxY = -Float.MAX_VALUE;
+            for (int aa = fromWord; aa < toWord; aa++) {
+                int live = alive[aa], mask = 1, wdied = 0;
+                if (live == 0) { // all dead
+                    pp += 32;
+                    ppos += 32*NUM_FIELDS;
+                    continue;
+                }
+                for (int end = pp+32; pp < end; pp++, ppos += NUM_FIELDS, mask <<= 1) {
+                    // if this particle is not alive, skip it
+                    if ((live & mask) == 0) continue;
+
+                    // if this particle has died, mark it as such
+                    if (now - data[ppos+BIRTH] > data[ppos+LIFESPAN]) {
+                        live &= ~mask;
+                        wdied++;
+                        continue;
+                    }
+
+                    // the particle lives, batch it up for the effectors
+                    batch[batched++] = pp;
+                }
+
+                // if we killed off any particles, update the liveness array
+                if (wdied > 0) {
+                    alive[aa] = live;
+                    died += wdied;
+                }
+
+                // if our batch might not fit another word of particles, apply the effectors
+                if (batched > BATCH_SIZE-32) {
+                    applyBatch(batched);
+                    living += batched;
+                    batched = 0;
+                }
+            }
+            if (batched > 0) {
+                applyBatch(batched);
+                living += batched;
+            }
+            this.living = living;
+            this.died = died;
+        }
+
+        protected void applyBatch (int count) {
+            int[] batch = _batch;
+            for (int ee = 0, ecount = effectors.size(); ee < ecount; ee++) {
+                effectors.get(ee).applyAll(data, batch, count, now, dt);
+            }
+            // note the bounds of the particles' new positions
+            float minX = this.minX, minY = this.minY, maxX = this.maxX, maxY = this.maxY;
+            for (int ii = 0; ii < count; ii++) {
+                int start = batch[ii] * NUM_FIELDS;
+                float x = data[start + TX], y = data[start + TY];
+                if (x < minX) minX = x;
+                if (x > maxX) maxX = x;
+                if (y < minY) minY = y;
+                if (y > maxY) maxY = y;
+            }
+            this.minX = minX;
+            this.minY = minY;
+            this.maxX = maxX;
+            this.maxY = maxY;
+        }
+
+        /** The indices of the live particles to which to apply the effectors. */
+        protected final int[] _batch = new int[BATCH_SIZE];
+    }
+
+    protected Chunk chunk (int index) {
+        if (index >= _chunks.length) {
+            Chunk[] chunks = new Chunk[index+1];
+            System.arraycopy(_chunks, 0, chunks, 0, _chunks.length);
+            _chunks = chunks;
+        }
+        if (_chunks[index] == null) _chunks[index] = new Chunk();
+        return _chunks[index];
+    }
+
+    /** The maximum number of particles passed to {@link Effector#applyAll} at once. */
+    protected static final int BATCH_SIZE = 256;
+
     protected final int _maxParticles;
+    /** The number of live particles. */
     protected int _live;
+    /** The index of the {@link #alive} word at which to start looking for free slots. */
+    protected int _cursor;
+    /** The bounds of the live particles as of the last apply. */
+    protected final Rectangle _bounds = new Rectangle();
+    /** The chunks used to apply effectors, created as needed. */
+    protected Chunk[] _chunks = new Chunk[0];
 }
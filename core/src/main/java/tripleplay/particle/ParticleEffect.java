@@ -0,0 +1,495 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.particle;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import pythagoras.f.FloatMath;
+
+import playn.core.GroupLayer;
+import playn.core.Image;
+import playn.core.Json;
+import static playn.core.PlayN.graphics;
+
+import tripleplay.particle.effect.Alpha;
+import tripleplay.particle.effect.Drag;
+import tripleplay.particle.effect.Fuse;
+import tripleplay.particle.effect.Gravity;
+import tripleplay.particle.effect.Move;
+import tripleplay.util.Interpolator;
+import tripleplay.util.Randoms;
+
+/**
+ * A particle effect defined by data rather than code. An effect is compiled into flat tables of
+ * operations and their parameters. Its initializers are all applied by a single initializer, and
+ * its effectors are created (and fused, see {@link Fuse}) once, and all are shared by every
+ * emitter configured with the effect. Thus configuring an emitter allocates nothing beyond its
+ * generator. Effects are usually obtained from a {@link ParticleEffects} registry.
+ *
+ * <p>The JSON form of an effect looks like:</p>
+ * <pre>{@code
+ * { "name": "fountain", "maxParticles": 5000,
+ *   "generator": { "type": "constant", "rate": 100 },
+ *   "initializers": [
+ *     { "type": "lifespan", "min": 4, "max": 5 },
+ *     { "type": "color", "argb": "FF99CCFF" },
+ *     { "type": "layer" },
+ *     { "type": "velocity", "shape": "square", "minX": -20, "maxX": 20, "minY": -100, "maxY": 0 }
+ *   ],
+ *   "effectors": [
+ *     { "type": "gravity", "accel": 30 },
+ *     { "type": "move" },
+ *     { "type": "alpha", "interp": "easeOut", "start": 1, "end": 0 }
+ *   ]
+ * }
+ * }</pre>
+ *
+ * <p>The generator {@code type} is one of {@code none}, {@code impulse} (with {@code count}) or
+ * {@code constant} (with {@code rate}, in particles per second). The initializers correspond to
+ * those in {@link tripleplay.particle.init}: {@code lifespan} ({@code value}, or {@code min} and
+ * {@code max}), {@code color} ({@code argb}, as a hex string), {@code identity}, {@code
+ * layer} (the emitter's layer), {@code position} ({@code x}, {@code y}, {@code width}, {@code
+ * height}), {@code offset} ({@code noise}), {@code scale} ({@code value}, or {@code min} and {@code
+ * max}), {@code velocity} with {@code shape} {@code constant} ({@code x}, {@code y}), {@code
+ * square} ({@code minX}, {@code maxX}, {@code minY}, {@code maxY}), {@code normal} ({@code xMean},
+ * {@code xDev}, {@code yMean}, {@code yDev}) or {@code circle} ({@code min}, {@code max}), and
+ * {@code increment} ({@code dx}, {@code dy}). The effectors correspond to those in {@link
+ * tripleplay.particle.effect}: {@code move}, {@code gravity} ({@code accel}), {@code drag} ({@code
+ * drag}, or {@code x} and {@code y}) and {@code alpha} ({@code interp}, {@code start}, {@code
+ * end}).</p>
+ */
+public class ParticleEffect
+{
+    /** The name of this effect. */
+    public final String name;
+
+    /** The maximum number of particles alive at once in emitters created for this effect. */
+    public final int maxParticles;
+
+    /**
+     * Compiles the JSON definition of an effect.
+     *
+     * @param rando the source of randomness for all emitters configured with this effect.
+     * @throws IllegalArgumentException if the definition contains an unknown type.
+     */
+    public static ParticleEffect fromJson (Json.Object json, Randoms rando) {
+        Builder b = new Builder();
+        Json.Object gen = json.getObject("generator");
+        String genType = (gen == null) ? "none" : gen.getString("type", "none");
+        if (genType.equals("impulse")) {
+            b.genType = GEN_IMPULSE;
+            b.genParam = gen.getInt("count");
+        } else if (genType.equals("constant")) {
+            b.genType = GEN_CONSTANT;
+            b.genParam = gen.getNumber("rate");
+        } else if (!genType.equals("none")) {
+            throw new IllegalArgumentException("Unknown generator type: " + genType);
+        }
+
+        Json.TypedArray<Json.Object> inits = json.getArray("initializers", Json.Object.class);
+        if (inits != null) for (Json.Object init : inits) {
+            String type = init.getString("type");
+            if (type.equals("lifespan")) {
+                float value = init.getNumber("value");
+                b.init(LIFESPAN, init.getNumber("min", value), init.getNumber("max", value));
+            } else if (type.equals("color")) {
+                String hex = init.getString("argb");
+                if (hex == null) throw new IllegalArgumentException(
+                    "Color initializer is missing argb: " + json.getString("name"));
+                int argb = parseColor(hex);
+                float r = ((argb >> 16) & 0xFF) / 255f, g = ((argb >> 8) & 0xFF) / 255f;
+                float bl = (argb & 0xFF) / 255f, a = ((argb >> 24) & 0xFF) / 255f;
+                b.init(COLOR, playn.core.Color.encode(a, r), playn.core.Color.encode(g, bl));
+            } else if (type.equals("identity")) {
+                b.init(IDENTITY);
+            } else if (type.equals("layer")) {
+                b.init(LAYER);
+            } else if (type.equals("position")) {
+                b.init(POSITION, init.getNumber("x"), init.getNumber("y"),
+                       init.getNumber("width"), init.getNumber("height"));
+            } else if (type.equals("offset")) {
+                b.init(OFFSET, init.getNumber("noise"));
+            } else if (type.equals("scale")) {
+                float value = init.getNumber("value", 1);
+                b.init(SCALE, init.getNumber("min", value), init.getNumber("max", value));
+            } else if (type.equals("velocity")) {
+                String shape = init.getString("shape", "constant");
+                if (shape.equals("constant")) {
+                    b.init(VEL_CONSTANT, init.getNumber("x"), init.getNumber("y"));
+                } else if (shape.equals("square")) {
+                    b.init(VEL_SQUARE, init.getNumber("minX"), init.getNumber("maxX"),
+                           init.getNumber("minY"), init.getNumber("maxY"));
+                } else if (shape.equals("normal")) {
+                    b.init(VEL_NORMAL, init.getNumber("xMean"), init.getNumber("xDev"),
+                           init.getNumber("yMean"), init.getNumber("yDev"));
+                } else if (shape.equals("circle")) {
+                    b.init(VEL_CIRCLE, init.getNumber("min"), init.getNumber("max"));
+                } else throw new IllegalArgumentException("Unknown velocity shape: " + shape);
+            } else if (type.equals("increment")) {
+                b.init(VEL_INCREMENT, init.getNumber("dx"), init.getNumber("dy"));
+            } else throw new IllegalArgumentException("Unknown initializer type: " + type);
+        }
+
+        Json.TypedArray<Json.Object> effs = json.getArray("effectors", Json.Object.class);
+        if (effs != null) for (Json.Object eff : effs) {
+            String type = eff.getString("type");
+            if (type.equals("move")) {
+                b.effect(MOVE);
+            } else if (type.equals("gravity")) {
+                b.effect(GRAVITY, eff.getNumber("accel", Gravity.EARTH_G));
+            } else if (type.equals("drag")) {
+                float drag = eff.getNumber("drag", 1);
+                b.effect(DRAG, eff.getNumber("x", drag), eff.getNumber("y", drag));
+            } else if (type.equals("alpha")) {
+                String interp = eff.getString("interp", "linear");
+                int iidx = indexOf(INTERP_NAMES, interp);
+                if (iidx < 0) throw new IllegalArgumentException("Unknown interpolator: " + interp);
+                b.effect(ALPHA, iidx, eff.getNumber("start", 1), eff.getNumber("end", 0));
+            } else throw new IllegalArgumentException("Unknown effector type: " + type);
+        }
+
+        if (!json.containsKey("maxParticles")) throw new IllegalArgumentException(
+            "Particle effect is missing maxParticles: " + json.getString("name"));
+        return b.build(json.getString("name"), json.getInt("maxParticles"), rando);
+    }
+
+    /**
+     * Reads an effect written by {@link #write}.
+     *
+     * @param rando the source of randomness for all emitters configured with this effect.
+     */
+    public static ParticleEffect read (DataInputStream in, Randoms rando) throws IOException {
+        String name = in.readUTF();
+        int maxParticles = in.readInt();
+        if (maxParticles <= 0) throw new IOException(
+            "Invalid particle effect maxParticles: " + maxParticles);
+        int genType = in.readByte();
+        if (genType < GEN_NONE || genType > GEN_CONSTANT) throw new IOException(
+            "Unknown particle effect generator: " + genType);
+        float genParam = in.readFloat();
+        int[] initOps = readOps(in), effectOps = readOps(in);
+        float[] initParams = readParams(in), effectParams = readParams(in);
+        checkOps(initOps, initParams, INIT_ARITY);
+        checkOps(effectOps, effectParams, EFFECT_ARITY);
+        checkInterps(effectOps, effectParams);
+        return new ParticleEffect(name, maxParticles, genType, genParam,
+                                  initOps, initParams, effectOps, effectParams, rando);
+    }
+
+    /**
+     * Writes this effect in a compact binary form, which is simply its compiled tables.
+     */
+    public void write (DataOutputStream out) throws IOException {
+        out.writeUTF(name);
+        out.writeInt(maxParticles);
+        out.writeByte(_genType);
+        out.writeFloat(_genParam);
+        writeOps(out, _initOps);
+        writeOps(out, _effectOps);
+        writeParams(out, _initParams);
+        writeParams(out, _effectParams);
+    }
+
+    /**
+     * Creates an emitter on the root layer configured with this effect.
+     */
+    public Emitter createEmitter (Particles parts, Image image) {
+        return configure(parts.createEmitter(maxParticles, image));
+    }
+
+    /**
+     * Creates an emitter on {@code onLayer} configured with this effect.
+     */
+    public Emitter createEmitter (Particles parts, Image image, GroupLayer onLayer) {
+        return configure(parts.createEmitter(maxParticles, image, onLayer));
+    }
+
+    /**
+     * Configures {@code emitter} with this effect's generator, initializers and effectors, which
+     * are added to any it already has.
+     */
+    public Emitter configure (Emitter emitter) {
+        switch (_genType) {
+        case GEN_IMPULSE: emitter.generator = _impulse; break;
+        case GEN_CONSTANT: emitter.generator = Generator.constant(_genParam); break;
+        }
+        emitter.initters.add(_kernel);
+        for (int ii = 0, ll = _effectors.size(); ii < ll; ii++) {
+            emitter.effectors.add(_effectors.get(ii));
+        }
+        return emitter;
+    }
+
+    @Override public String toString () {
+        return "ParticleEffect[" + name + ", max=" + maxParticles + ", inits=" + _initOps.length +
+            ", effectors=" + _effectors.size() + "]";
+    }
+
+    protected ParticleEffect (String name, int maxParticles, int genType, float genParam,
+                              int[] initOps, float[] initParams,
+                              int[] effectOps, float[] effectParams, Randoms rando) {
+        this.name = name;
+        this.maxParticles = maxParticles;
+        _genType = genType;
+        _genParam = genParam;
+        _initOps = initOps;
+        _initParams = initParams;
+        _effectOps = effectOps;
+        _effectParams = effectParams;
+        _rando = rando;
+        _impulse = (genType == GEN_IMPULSE) ? Generator.impulse((int)genParam) : null;
+
+        boolean usesLayer = false;
+        for (int op : initOps) usesLayer = usesLayer || (op == LAYER);
+        _usesLayer = usesLayer;
+
+        List<Effector> effectors = new ArrayList<Effector>();
+        for (int ii = 0, pp = 0; ii < effectOps.length; pp += EFFECT_ARITY[effectOps[ii++]]) {
+            switch (effectOps[ii]) {
+            case MOVE:
+                effectors.add(new Move());
+                break;
+            case GRAVITY:
+                effectors.add(new Gravity(effectParams[pp]));
+                break;
+            case DRAG:
+                effectors.add(new Drag(effectParams[pp], effectParams[pp+1]));
+                break;
+            case ALPHA:
+                effectors.add(Alpha.byAge(INTERPS[(int)effectParams[pp]],
+                                          effectParams[pp+1], effectParams[pp+2]));
+                break;
+            }
+        }
+        _effectors = Fuse.effectors(effectors);
+    }
+
+    /** Applies all of an effect's initializers, reading their parameters from its tables. */
+    protected class Kernel extends Initializer {
+        @Override public void willInit (Emitter emitter, int count) {
+            if (_usesLayer) {
+                emitter.updateTransform();
+                emitter._xform.get(_matrix);
+            }
+            _scale = graphics().ctx().scale.factor;
+        }
+
+        @Override public void init (int index, float[] data, int start) {
+            int[] ops = _initOps;
+            float[] ps = _initParams;
+            Randoms rando = _rando;
+            for (int ii = 0, pp = 0, ll = ops.length; ii < ll; pp += INIT_ARITY[ops[ii++]]) {
+                switch (ops[ii]) {
+                case LIFESPAN:
+                    data[start + ParticleBuffer.LIFESPAN] = range(rando, ps[pp], ps[pp+1]);
+                    break;
+                case COLOR:
+                    data[start + ParticleBuffer.ALPHA_RED] = ps[pp];
+                    data[start + ParticleBuffer.GREEN_BLUE] = ps[pp+1];
+                    break;
+                case IDENTITY:
+                    data[start + ParticleBuffer.M00] = 1;
+                    data[start + ParticleBuffer.M01] = 0;
+                    data[start + ParticleBuffer.M10] = 0;
+                    data[start + ParticleBuffer.M11] = 1;
+                    data[start + ParticleBuffer.TX] = 0;
+                    data[start + ParticleBuffer.TY] = 0;
+                    break;
+                case LAYER:
+                    java.lang.System.arraycopy(_matrix, 0, data, start + ParticleBuffer.M00, 6);
+                    break;
+                case POSITION:
+                    data[start + ParticleBuffer.TX] = ps[pp] + rando.getFloat(ps[pp+2]);
+                    data[start + ParticleBuffer.TY] = ps[pp+1] + rando.getFloat(ps[pp+3]);
+                    break;
+                case OFFSET:
+                    data[start + ParticleBuffer.TX] += rando.getInRange(-ps[pp], ps[pp]);
+                    data[start + ParticleBuffer.TY] += rando.getInRange(-ps[pp], ps[pp]);
+                    break;
+                case SCALE:
+                    float scale = range(rando, ps[pp], ps[pp+1]);
+                    data[start + ParticleBuffer.M00] *= scale;
+                    data[start + ParticleBuffer.M01] *= scale;
+                    data[start + ParticleBuffer.M10] *= scale;
+                    data[start + ParticleBuffer.M11] *= scale;
+                    break;
+                case VEL_CONSTANT:
+                    setVelocity(data, start, ps[pp], ps[pp+1]);
+                    break;
+                case VEL_SQUARE:
+                    setVelocity(data, start, rando.getInRange(ps[pp], ps[pp+1]),
+                                rando.getInRange(ps[pp+2], ps[pp+3]));
+                    break;
+                case VEL_NORMAL:
+                    setVelocity(data, start, rando.getNormal(ps[pp], ps[pp+1]),
+                                rando.getNormal(ps[pp+2], ps[pp+3]));
+                    break;
+                case VEL_CIRCLE:
+                    float angle = rando.getFloat(FloatMath.TWO_PI);
+                    float magnitude = ps[pp] + rando.getFloat(ps[pp+1]-ps[pp]);
+                    setVelocity(data, start, FloatMath.sin(angle)*magnitude,
+                                FloatMath.cos(angle)*magnitude);
+                    break;
+                case VEL_INCREMENT:
+                    data[start + ParticleBuffer.VEL_X] += ps[pp] * _scale;
+                    data[start + ParticleBuffer.VEL_Y] += ps[pp+1] * _scale;
+                    break;
+                }
+            }
+        }
+
+        protected void setVelocity (float[] data, int start, float x, float y) {
+            data[start + ParticleBuffer.VEL_X] = x * _scale;
+            data[start + ParticleBuffer.VEL_Y] = y * _scale;
+        }
+
+        protected final float[] _matrix = new float[6];
+        protected float _scale = 1;
+    }
+
+    /** Accumulates the tables of an effect. */
+    protected static class Builder {
+        public int genType = GEN_NONE;
+        public float genParam;
+
+        public void init (int op, float... params) {
+            add(_initOps, _initParams, op, params);
+        }
+
+        public void effect (int op, float... params) {
+            add(_effectOps, _effectParams, op, params);
+        }
+
+        public ParticleEffect build (String name, int maxParticles, Randoms rando) {
+            if (maxParticles <= 0) throw new IllegalArgumentException(
+                "Particle effect maxParticles must be positive: " + maxParticles);
+            return new ParticleEffect(name, maxParticles, genType, genParam,
+                                      toInts(_initOps), toFloats(_initParams),
+                                      toInts(_effectOps), toFloats(_effectParams), rando);
+        }
+
+        protected void add (List<Integer> ops, List<Float> ps, int op, float[] params) {
+            ops.add(op);
+            for (float param : params) ps.add(param);
+        }
+
+        protected final List<Integer> _initOps = new ArrayList<Integer>();
+        protected final List<Integer> _effectOps = new ArrayList<Integer>();
+        protected final List<Float> _initParams = new ArrayList<Float>();
+        protected final List<Float> _effectParams = new ArrayList<Float>();
+    }
+
+    protected static float range (Randoms rando, float min, float max) {
+        return (min == max) ? min : rando.getInRange(min, max);
+    }
+
+    protected static int parseColor (String hex) {
+        if (hex.startsWith("#")) hex = hex.substring(1);
+        else if (hex.startsWith("0x")) hex = hex.substring(2);
+        return (int)Long.parseLong(hex, 16);
+    }
+
+    protected static int indexOf (String[] names, String name) {
+        for (int ii = 0; ii < names.length; ii++) if (names[ii].equals(name)) return ii;
+        return -1;
+    }
+
+    protected static int[] toInts (List<Integer> list) {
+        int[] ints = new int[list.size()];
+        for (int ii = 0; ii < ints.length; ii++) ints[ii] = list.get(ii);
+        return ints;
+    }
+
+    protected static float[] toFloats (List<Float> list) {
+        float[] floats = new float[list.size()];
+        for (int ii = 0; ii < floats.length; ii++) floats[ii] = list.get(ii);
+        return floats;
+    }
+
+    protected static int[] readOps (DataInputStream in) throws IOException {
+        int[] ops = new int[in.readUnsignedShort()];
+        for (int ii = 0; ii < ops.length; ii++) ops[ii] = in.readUnsignedByte();
+        return ops;
+    }
+
+    protected static void writeOps (DataOutputStream out, int[] ops) throws IOException {
+        if (ops.length > 0xFFFF) throw new IOException(
+            "Too many particle effect ops: " + ops.length);
+        out.writeShort(ops.length);
+        for (int op : ops) out.writeByte(op);
+    }
+
+    protected static float[] readParams (DataInputStream in) throws IOException {
+        float[] params = new float[in.readUnsignedShort()];
+        for (int ii = 0; ii < params.length; ii++) params[ii] = in.readFloat();
+        return params;
+    }
+
+    protected static void writeParams (DataOutputStream out, float[] params) throws IOException {
+        if (params.length > 0xFFFF) throw new IOException(
+            "Too many particle effect parameters: " + params.length);
+        out.writeShort(params.length);
+        for (float param : params) out.writeFloat(param);
+    }
+
+    protected static void checkOps (int[] ops, float[] params, int[] arity) throws IOException {
+        int count = 0;
+        for (int op : ops) {
+            if (op >= arity.length) throw new IOException("Unknown particle effect op: " + op);
+            count += arity[op];
+        }
+        if (count != params.length) throw new IOException(
+            "Particle effect has " + params.length + " parameters, expected " + count);
+    }
+
+    /** Checks that the interpolator of each alpha effector is one of {@link #INTERPS}. */
+    protected static void checkInterps (int[] ops, float[] params) throws IOException {
+        int pp = 0;
+        for (int op : ops) {
+            if (op == ALPHA) {
+                float interp = params[pp];
+                if (interp != (int)interp || interp < 0 || interp >= INTERPS.length) {
+                    throw new IOException("Unknown particle effect interpolator: " + interp);
+                }
+            }
+            pp += EFFECT_ARITY[op];
+        }
+    }
+
+    protected final int _genType;
+    protected final float _genParam;
+    protected final int[] _initOps, _effectOps;
+    protected final float[] _initParams, _effectParams;
+    protected final boolean _usesLayer;
+    protected final Randoms _rando;
+    protected final Generator _impulse;
+    protected final List<Effector> _effectors;
+    protected final Kernel _kernel = new Kernel();
+
+    protected static final int GEN_NONE = 0, GEN_IMPULSE = 1, GEN_CONSTANT = 2;
+
+    // initializer ops, and the number of parameters taken by each
+    protected static final int LIFESPAN = 0, COLOR = 1, IDENTITY = 2, LAYER = 3, POSITION = 4;
+    protected static final int OFFSET = 5, SCALE = 6, VEL_CONSTANT = 7, VEL_SQUARE = 8;
+    protected static final int VEL_NORMAL = 9, VEL_CIRCLE = 10, VEL_INCREMENT = 11;
+    protected static final int[] INIT_ARITY = { 2, 2, 0, 0, 4, 1, 2, 2, 4, 4, 2, 2 };
+
+    // effector ops, and the number of parameters taken by each
+    protected static final int MOVE = 0, GRAVITY = 1, DRAG = 2, ALPHA = 3;
+    protected static final int[] EFFECT_ARITY = { 0, 1, 2, 3 };
+
+    protected static final String[] INTERP_NAMES = {
+        "noop", "linear", "easeIn", "easeOut", "easeInOut", "easeInBack", "easeOutBack",
+        "bounceOut", "easeOutElastic" };
+    protected static final Interpolator[] INTERPS = {
+        Interpolator.NOOP, Interpolator.LINEAR, Interpolator.EASE_IN, Interpolator.EASE_OUT,
+        Interpolator.EASE_INOUT, Interpolator.EASE_IN_BACK, Interpolator.EASE_OUT_BACK,
+        Interpolator.BOUNCE_OUT, Interpolator.EASE_OUT_ELASTIC };
+}
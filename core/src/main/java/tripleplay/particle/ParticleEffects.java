@@ -0,0 +1,140 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.particle;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import playn.core.Json;
+import playn.core.util.Callback;
+import static playn.core.PlayN.assets;
+import static playn.core.PlayN.json;
+
+import tripleplay.util.Randoms;
+
+/**
+ * A registry of compiled {@link ParticleEffect}s, keyed by name. Effects are loaded from JSON or
+ * from the compact binary form produced by {@link #toBinary}, and are compiled once, when loaded.
+ *
+ * <p>A JSON file contains either a single effect or an object with an {@code effects} array of
+ * effects. See {@link ParticleEffect} for the format of an effect.</p>
+ */
+public class ParticleEffects
+{
+    /**
+     * Creates a registry whose effects all use {@code rando} as their source of randomness.
+     */
+    public ParticleEffects (Randoms rando) {
+        _rando = rando;
+    }
+
+    /**
+     * Returns the effect with the specified name.
+     * @throws IllegalArgumentException if no such effect has been registered.
+     */
+    public ParticleEffect get (String name) {
+        ParticleEffect effect = _effects.get(name);
+        if (effect == null) throw new IllegalArgumentException("Unknown particle effect: " + name);
+        return effect;
+    }
+
+    /** Returns whether an effect with the specified name has been registered. */
+    public boolean contains (String name) {
+        return _effects.containsKey(name);
+    }
+
+    /** Registers {@code effect}, replacing any existing effect with the same name. */
+    public ParticleEffect register (ParticleEffect effect) {
+        _effects.put(effect.name, effect);
+        return effect;
+    }
+
+    /** Compiles and registers the effects in the supplied JSON, and returns them. */
+    public List<ParticleEffect> parseJson (String text) {
+        Json.Object json = json().parse(text);
+        List<ParticleEffect> effects = new ArrayList<ParticleEffect>();
+        Json.TypedArray<Json.Object> array = json.getArray("effects", Json.Object.class);
+        if (array == null) effects.add(register(ParticleEffect.fromJson(json, _rando)));
+        else for (Json.Object ejson : array) {
+            effects.add(register(ParticleEffect.fromJson(ejson, _rando)));
+        }
+        return effects;
+    }
+
+    /** Registers the effects in the supplied binary data (see {@link #toBinary}), and returns
+     * them. */
+    public List<ParticleEffect> parseBinary (byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        int version = in.readShort();
+        if (version != BINARY_VERSION) throw new IOException(
+            "Unsupported particle effects version: " + version);
+        List<ParticleEffect> effects = new ArrayList<ParticleEffect>();
+        for (int ii = 0, ll = in.readInt(); ii < ll; ii++) {
+            effects.add(register(ParticleEffect.read(in, _rando)));
+        }
+        return effects;
+    }
+
+    /** Encodes all registered effects in a compact binary form, readable by {@link
+     * #parseBinary}. */
+    public byte[] toBinary () {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bout);
+        try {
+            out.writeShort(BINARY_VERSION);
+            out.writeInt(_effects.size());
+            for (ParticleEffect effect : _effects.values()) effect.write(out);
+            out.flush();
+        } catch (IOException ioe) {
+            throw new RuntimeException(ioe); // not possible with a byte array
+        }
+        return bout.toByteArray();
+    }
+
+    /** Loads, compiles and registers the JSON effects at {@code path} via PlayN assets. */
+    public void loadJson (String path, final Callback<List<ParticleEffect>> callback) {
+        assets().getText(path, new Callback.Chain<String>(callback) {
+            public void onSuccess (String text) {
+                List<ParticleEffect> effects;
+                try {
+                    effects = parseJson(text);
+                } catch (Exception err) {
+                    callback.onFailure(err);
+                    return;
+                }
+                callback.onSuccess(effects);
+            }
+        });
+    }
+
+    /** Loads and registers the binary effects at {@code path} via PlayN assets. */
+    public void loadBinary (String path, final Callback<List<ParticleEffect>> callback) {
+        assets().getBytes(path, new Callback.Chain<byte[]>(callback) {
+            public void onSuccess (byte[] data) {
+                List<ParticleEffect> effects;
+                try {
+                    effects = parseBinary(data);
+                } catch (Exception err) {
+                    callback.onFailure(err);
+                    return;
+                }
+                callback.onSuccess(effects);
+            }
+        });
+    }
+
+    protected final Randoms _rando;
+    protected final Map<String,ParticleEffect> _effects = new HashMap<String,ParticleEffect>();
+
+    protected static final int BINARY_VERSION = 1;
+}
@@ -5,11 +5,16 @@
 
 package tripleplay.particle;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import react.Signal;
 import react.Slot;
 
 import playn.core.GroupLayer;
 import playn.core.Image;
+import playn.core.ImmediateLayer;
+import playn.core.Surface;
 import playn.core.util.Clock;
 import static playn.core.PlayN.graphics;
 
@@ -22,6 +27,48 @@ import tripleplay.util.Paintable;
 public class Particles
     implements Paintable
 {
+    /**
+     * Controls how much work is done for emitters that are out of view, or far from it. An emitter
+     * is in view if its layer is visible and either its layer's origin or any of its particles
+     * (expanded by {@link Emitter#cullMargin}) lie within the view. The default policy does no
+     * such work; in particular, emitters only compute their distance from the view (which
+     * requires their layer's world transform) if {@link #usesDistance} returns true.
+     */
+    public static class LOD {
+        /** Whether to skip rendering emitters that are out of view. */
+        public boolean cull;
+
+        /** How often to update emitters that are out of view: every {@code hiddenInterval}
+         * frames, with all of the time elapsed since their last update. One (the default) updates
+         * them every frame. Zero freezes them until they come back into view. Time that an
+         * emitter skips is replayed in fixed steps (see {@link Emitter#MAX_CATCH_UP_STEPS}) when
+         * it is next updated. */
+        public int hiddenInterval = 1;
+
+        /**
+         * Returns the fraction of the particles requested by its generator that {@code emitter}
+         * actually adds, given its {@code distance} (in framebuffer pixels) from the view. The
+         * distance is zero for emitters in view and infinite for emitters whose layer is hidden.
+         * The default returns one.
+         */
+        public float spawnScale (Emitter emitter, float distance) {
+            return 1;
+        }
+
+        /**
+         * Returns whether this policy needs the distance of emitters from the view. If not, the
+         * distance passed to {@link #spawnScale} is always zero. The default returns true if
+         * {@link #cull} is set or {@link #hiddenInterval} is not one; a policy that overrides
+         * {@link #spawnScale} to depend on distance must override this to return true.
+         */
+        public boolean usesDistance () {
+            return cull || hiddenInterval != 1;
+        }
+    }
+
+    /** The level of detail policy applied to all emitters. */
+    public LOD lod = new LOD();
+
     /**
      * Creates an emitter that supports up to {@code maxParticles} particles at any one time. The
      * emitter is added to the root layer.
@@ -39,14 +86,52 @@ public class Particles
      * @param onLayer the layer to which to add the layer which will render the particles.
      */
     public Emitter createEmitter (int maxParticles, Image image, GroupLayer onLayer) {
-        final Emitter emitter = new Emitter(this, maxParticles, image);
-        emitter._conn = _onPaint.connect(new Slot<Now>() { @Override public void onEmit (Now now) {
-            emitter.update(now.time, now.dt);
-        }});
-        onLayer.add(emitter.layer);
+        return addEmitter(new Emitter(this, maxParticles, image, false), onLayer);
+    }
+
+    /**
+     * Creates an emitter, added to the root layer, whose particles are rendered by {@link
+     * #batchLayer}. See {@link #createBatchedEmitter(int,Image,GroupLayer)}.
+     */
+    public Emitter createBatchedEmitter (int maxParticles, Image image) {
+        return createBatchedEmitter(maxParticles, image, graphics().rootLayer());
+    }
+
+    /**
+     * Creates an emitter that supports up to {@code maxParticles} particles at any one time, the
+     * particles of which are rendered by {@link #batchLayer} along with those of all other batched
+     * emitters. Batched emitters which use the same texture are rendered with a single draw call,
+     * rather than one (or more) per emitter, which is much cheaper when there are many emitters.
+     * Note that all batched particles are drawn at the depth of the batch layer, and that batched
+     * emitters with the same texture are drawn together, rather than in order of creation.
+     *
+     * @param image the image to use for each particle.
+     * @param onLayer the layer to which to add the emitter's layer, which positions the emitter
+     * but renders nothing.
+     */
+    public Emitter createBatchedEmitter (int maxParticles, Image image, GroupLayer onLayer) {
+        Emitter emitter = addEmitter(new Emitter(this, maxParticles, image, true), onLayer);
+        batchLayer(); // make sure our batch layer exists
+        _batched.add(emitter);
         return emitter;
     }
 
+    /**
+     * Returns the layer that renders the particles of all batched emitters, creating it if
+     * necessary. It is initially added to the root layer, but may be moved elsewhere.
+     */
+    public ImmediateLayer batchLayer () {
+        if (_batchLayer == null) {
+            _batchLayer = graphics().createImmediateLayer(new ImmediateLayer.Renderer() {
+                @Override public void render (Surface surface) {
+                    renderBatched();
+                }
+            });
+            graphics().rootLayer().add(_batchLayer);
+        }
+        return _batchLayer;
+    }
+
     /**
      * Updates all registered emitters. Call this from {@code Game.paint} or similar.
      *
@@ -56,17 +141,79 @@ public class Particles
         _onPaint.emit(_now.update(clock.dt()));
     }
 
+    /**
+     * Configures the runner via which emitters apply their effectors. If non-null, large emitters
+     * partition their particles into chunks which may be updated in parallel (see {@link
+     * ParticleBuffer#apply}), so the effectors of all
+     * emitters must be safe to apply concurrently to distinct particles. Null (the default)
+     * applies all effectors on the calling thread.
+     */
+    public void setRunner (ParticleBuffer.Runner runner) {
+        _runner = runner;
+    }
+
     /**
      * Clears the resources used by the custom shader that renders particles.
      */
     public void clear () {
-        _shader.clearProgram();
+        if (_shader != null) _shader.clearProgram();
     }
 
     float now () {
         return _now.time;
     }
 
+    protected Emitter addEmitter (final Emitter emitter, GroupLayer onLayer) {
+        emitter._conn = _onPaint.connect(new Slot<Now>() { @Override public void onEmit (Now now) {
+            emitter.update(now.time, now.dt);
+        }});
+        onLayer.add(emitter.layer);
+        return emitter;
+    }
+
+    ParticleShader shader () {
+        if (_shader == null) _shader = new ParticleShader(graphics().ctx());
+        return _shader;
+    }
+
+    void removeBatched (Emitter emitter) {
+        _batched.remove(emitter);
+    }
+
+    protected void renderBatched () {
+        int count = _batched.size();
+        if (_texes.length < count) _texes = new int[count];
+        int[] texes = _texes;
+        boolean usesDistance = lod.usesDistance();
+        for (int ii = 0; ii < count; ii++) {
+            Emitter emitter = _batched.get(ii);
+            // skip emitters whose layer is hidden even if we're not culling, as hiding a batched
+            // emitter's layer would otherwise have no effect
+            boolean skip = emitter._buffer.liveCount() == 0;
+            if (!skip && usesDistance) {
+                float dist = emitter._distance;
+                skip = dist == Float.POSITIVE_INFINITY || (lod.cull && dist > 0);
+            } else if (!skip) skip = !emitter.isShowing();
+            texes[ii] = skip ? 0 : emitter._image.ensureTexture();
+        }
+        // render all emitters with the same texture together, zeroing out their texture as we go
+        for (int ii = 0; ii < count; ii++) {
+            int tex = texes[ii];
+            if (tex == 0) continue;
+            int quads = 0;
+            for (int jj = ii; jj < count; jj++) {
+                if (texes[jj] == tex) quads += _batched.get(jj)._buffer.liveCount();
+            }
+            ParticleShader shader = shader().prepare(tex, Math.min(quads, MAX_BATCH_QUADS));
+            for (int jj = ii; jj < count; jj++) {
+                if (texes[jj] != tex) continue;
+                Emitter emitter = _batched.get(jj);
+                emitter._buffer.render(shader, emitter._image.width(), emitter._image.height());
+                texes[jj] = 0;
+            }
+        }
+    }
+
     protected static class Now {
         public float time;
         public float dt;
@@ -77,7 +224,17 @@ public class Particles
         }
     }
 
+    /** The largest number of quads that can be indexed in one draw call. Larger batches are
+     * automatically flushed in multiple draw calls. */
+    protected static final int MAX_BATCH_QUADS = (1 << 16) / 4;
+
+    protected ImmediateLayer _batchLayer;
+    protected final List<Emitter> _batched = new ArrayList<Emitter>();
+    protected int[] _texes = new int[0];
+
     protected final Now _now = new Now();
+    protected ParticleBuffer.Runner _runner;
     protected final Signal<Now> _onPaint = Signal.create();
-    protected final ParticleShader _shader = new ParticleShader(graphics().ctx());
+    /** Our particle shader, created lazily so that we're on the GL thread when it happens. */
+    protected ParticleShader _shader;
 }
@@ -29,16 +29,37 @@ public class Alpha
      * supplied interpolator. In general you'd use {@code startAlpha} of 1 and {@code endAlpha} of
      * 0, but if you are doing uncommon things, you might use different values.
      */
-    public static Effector byAge (final Interpolator interp,
-                                  final float startAlpha, float endAlpha) {
-        final float rangeAlpha = endAlpha - startAlpha;
-        return new Effector() {
-            @Override public void apply (int index, float[] data, int start, float now, float dt) {
-                float alpha = interp.apply(
-                    startAlpha, rangeAlpha, now - data[start + BIRTH], data[start + LIFESPAN]);
-                float red = Color.decodeLower(data[start + ALPHA_RED]);
-                data[start + ALPHA_RED] = Color.encode(alpha, red);
-            }
-        };
+    public static Effector byAge (Interpolator interp, float startAlpha, float endAlpha) {
+        return new ByAge(interp, startAlpha, endAlpha - startAlpha);
+    }
+
+    /** Updates the particle's alpha based on its age. See {@link #byAge}. */
+    protected static class ByAge extends Effector {
+        public ByAge (Interpolator interp, float startAlpha, float rangeAlpha) {
+            _interp = interp;
+            _startAlpha = startAlpha;
+            _rangeAlpha = rangeAlpha;
+        }
+
+        @Override public void apply (int index, float[] data, int start, float now, float dt) {
+            update(data, start, now);
+        }
+
+        @Override public void applyAll (float[] data, int[] indices, int count,
+                                        float now, float dt) {
+            for (int ii = 0; ii < count; ii++) update(data, indices[ii] * NUM_FIELDS, now);
+        }
+
+        public void update (float[] data, int start, float now) {
+            float alpha = _interp.apply(
+                _startAlpha, _rangeAlpha, now - data[start + BIRTH], data[start + LIFESPAN]);
+            // equivalent to Color.decodeLower, as encoded values are always integral, but integer
+            // remainder is much cheaper than float remainder
+            float red = ((int)data[start + ALPHA_RED] % 256) / 255f;
+            data[start + ALPHA_RED] = Color.encode(alpha, red);
+        }
+
+        protected final Interpolator _interp;
+        protected final float _startAlpha, _rangeAlpha;
     }
 }
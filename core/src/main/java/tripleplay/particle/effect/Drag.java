@@ -38,5 +38,14 @@ public class Drag extends Effector
         data[start + VEL_Y] *= _dragY;
     }
 
+    @Override public void applyAll (float[] data, int[] indices, int count, float now, float dt) {
+        float dragX = _dragX, dragY = _dragY;
+        for (int ii = 0; ii < count; ii++) {
+            int start = indices[ii] * NUM_FIELDS;
+            data[start + VEL_X] *= dragX;
+            data[start + VEL_Y] *= dragY;
+        }
+    }
+
     protected final float _dragX, _dragY;
 }
@@ -0,0 +1,150 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.particle.effect;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import tripleplay.particle.Effector;
+import static tripleplay.particle.ParticleBuffer.*;
+
+/**
+ * Fuses the standard effectors into single effectors which update each particle in one pass over
+ * the particle data. For example:
+ * <pre>{@code
+ * emitter.effectors.addAll(Fuse.effectors(
+ *     new Move(), new Gravity(), new Drag(0.95f), Alpha.byAge(Interpolator.EASE_OUT)));
+ * }</pre>
+ */
+public class Fuse
+{
+    /** See {@link #effectors(List)}. */
+    public static List<Effector> effectors (Effector... effectors) {
+        return effectors(Arrays.asList(effectors));
+    }
+
+    /**
+     * Returns effectors equivalent to {@code effectors}, in which each run of adjacent {@link
+     * Gravity}, {@link Drag} and {@link Move} effectors (in any order) is replaced by a single
+     * effector, along with at most one adjacent {@link Alpha#byAge} effector. Other effectors
+     * (including subclasses of the standard effectors) are retained as is, and runs are not fused
+     * across them.
+     */
+    public static List<Effector> effectors (List<? extends Effector> effectors) {
+        List<Effector> fused = new ArrayList<Effector>();
+        List<Effector> run = new ArrayList<Effector>();
+        Alpha.ByAge alpha = null;
+        for (Effector eff : effectors) {
+            Class<?> clazz = eff.getClass();
+            if (clazz == Move.class || clazz == Gravity.class || clazz == Drag.class) {
+                run.add(eff);
+            } else if (clazz == Alpha.ByAge.class && alpha == null) {
+                alpha = (Alpha.ByAge)eff;
+            } else {
+                flush(fused, run, alpha);
+                alpha = null;
+                if (clazz == Alpha.ByAge.class) alpha = (Alpha.ByAge)eff;
+                else fused.add(eff);
+            }
+        }
+        flush(fused, run, alpha);
+        return fused;
+    }
+
+    /** Applies a run of motion effectors and optionally an alpha effector in a single pass. The
+     * motion effectors are all affine in a particle's velocity, so their combined effect on the
+     * velocity and position is computed once per batch. */
+    protected static class Fused extends Effector {
+        public Fused (List<Effector> run, Alpha.ByAge alpha) {
+            _ops = new int[run.size()];
+            _xs = new float[run.size()];
+            _ys = new float[run.size()];
+            for (int ii = 0; ii < _ops.length; ii++) {
+                Effector eff = run.get(ii);
+                if (eff instanceof Move) _ops[ii] = MOVE;
+                else if (eff instanceof Gravity) {
+                    _ops[ii] = GRAVITY;
+                    _ys[ii] = ((Gravity)eff)._accel;
+                } else {
+                    _ops[ii] = DRAG;
+                    _xs[ii] = ((Drag)eff)._dragX;
+                    _ys[ii] = ((Drag)eff)._dragY;
+                }
+            }
+            _alpha = alpha;
+        }
+
+        @Override public void apply (int index, float[] data, int start, float now, float dt) {
+            // apply the ops to the lone particle in turn, rather than composing them as below
+            for (int ii = 0; ii < _ops.length; ii++) {
+                switch (_ops[ii]) {
+                case MOVE:
+                    data[start + TX] += data[start + VEL_X] * dt;
+                    data[start + TY] += data[start + VEL_Y] * dt;
+                    break;
+                case GRAVITY:
+                    data[start + VEL_Y] += _ys[ii] * dt;
+                    break;
+                case DRAG:
+                    data[start + VEL_X] *= _xs[ii];
+                    data[start + VEL_Y] *= _ys[ii];
+                    break;
+                }
+            }
+            if (_alpha != null) _alpha.update(data, start, now);
+        }
+
+        @Override public void applyAll (float[] data, int[] indices, int count,
+                                        float now, float dt) {
+            // after the ops applied so far, v' = a*v + b and the position has moved by c*v + d
+            float ax = 1, bx = 0, cx = 0, dx = 0, ay = 1, by = 0, cy = 0, dy = 0;
+            for (int ii = 0; ii < _ops.length; ii++) {
+                switch (_ops[ii]) {
+                case MOVE:
+                    cx += ax * dt;
+                    dx += bx * dt;
+                    cy += ay * dt;
+                    dy += by * dt;
+                    break;
+                case GRAVITY:
+                    by += _ys[ii] * dt;
+                    break;
+                case DRAG:
+                    ax *= _xs[ii];
+                    bx *= _xs[ii];
+                    ay *= _ys[ii];
+                    by *= _ys[ii];
+                    break;
+                }
+            }
+
+            Alpha.ByAge alpha = _alpha;
+            for (int ii = 0; ii < count; ii++) {
+                int start = indices[ii] * NUM_FIELDS;
+                float vx = data[start + VEL_X], vy = data[start + VEL_Y];
+                data[start + TX] += cx * vx + dx;
+                data[start + TY] += cy * vy + dy;
+                data[start + VEL_X] = ax * vx + bx;
+                data[start + VEL_Y] = ay * vy + by;
+                if (alpha != null) alpha.update(data, start, now);
+            }
+        }
+
+        protected final int[] _ops;
+        protected final float[] _xs, _ys;
+        protected final Alpha.ByAge _alpha;
+    }
+
+    protected static void flush (List<Effector> fused, List<Effector> run, Alpha.ByAge alpha) {
+        if (run.size() + (alpha == null ? 0 : 1) > 1) fused.add(new Fused(run, alpha));
+        else if (run.size() == 1) fused.add(run.get(0));
+        else if (alpha != null) fused.add(alpha);
+        run.clear();
+    }
+
+    protected static final int MOVE = 0, GRAVITY = 1, DRAG = 2;
+}
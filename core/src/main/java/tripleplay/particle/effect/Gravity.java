@@ -39,5 +39,12 @@ public class Gravity extends Effector
         data[start + ParticleBuffer.VEL_Y] += _accel * dt;
     }
 
+    @Override public void applyAll (float[] data, int[] indices, int count, float now, float dt) {
+        float dv = _accel * dt;
+        for (int ii = 0; ii < count; ii++) {
+            data[indices[ii] * ParticleBuffer.NUM_FIELDS + ParticleBuffer.VEL_Y] += dv;
+        }
+    }
+
     protected final float _accel;
 }
@@ -17,4 +17,12 @@ public class Move extends Effector
         data[start + TX] += data[start + VEL_X] * dt;
         data[start + TY] += data[start + VEL_Y] * dt;
     }
+
+    @Override public void applyAll (float[] data, int[] indices, int count, float now, float dt) {
+        for (int ii = 0; ii < count; ii++) {
+            int start = indices[ii] * NUM_FIELDS;
+            data[start + TX] += data[start + VEL_X] * dt;
+            data[start + TY] += data[start + VEL_Y] * dt;
+        }
+    }
 }
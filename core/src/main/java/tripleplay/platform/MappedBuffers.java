@@ -0,0 +1,45 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.platform;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import playn.core.util.Callback;
+
+/**
+ * Maps assets into memory, for the {@link TPPlatform#getBuffer} of JVM backends. This class is
+ * not available in the HTML5 backend.
+ */
+public class MappedBuffers
+{
+    /**
+     * Maps the resource at {@code url} into memory (read only), rather than copying it onto the
+     * heap, and passes the buffer (or the failure to map it) to {@code callback}. Returns false,
+     * without notifying the callback, if {@code url} is null or is not a plain file (a resource
+     * in a jar, say), in which case the caller should load the asset some other way.
+     */
+    public static boolean map (URL url, Callback<ByteBuffer> callback) {
+        if (url == null || !"file".equals(url.getProtocol())) return false;
+        ByteBuffer buffer;
+        try {
+            RandomAccessFile file = new RandomAccessFile(new File(url.toURI()), "r");
+            try {
+                buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+            } finally {
+                file.close();
+            }
+        } catch (Exception e) {
+            callback.onFailure(e);
+            return true;
+        }
+        callback.onSuccess(buffer);
+        return true;
+    }
+}
@@ -5,7 +5,11 @@
 
 package tripleplay.platform;
 
+import java.nio.ByteBuffer;
+
 import playn.core.Image;
+import playn.core.PlayN;
+import playn.core.util.Callback;
 import react.SignalView;
 import react.UnitSignal;
 import react.Value;
@@ -74,6 +78,19 @@ public abstract class TPPlatform
         return _activity;
     }
 
+    /**
+     * Loads the asset at {@code path} into a byte buffer. By default, this copies the asset's
+     * bytes via PlayN assets. Backends that can memory-map an asset do so instead, which avoids
+     * copying large data files onto the heap.
+     */
+    public void getBuffer (String path, final Callback<ByteBuffer> callback) {
+        PlayN.assets().getBytes(path, new Callback.Chain<byte[]>(callback) {
+            public void onSuccess (byte[] bytes) {
+                callback.onSuccess(ByteBuffer.wrap(bytes));
+            }
+        });
+    }
+
     public ImageOverlay createImageOverlay (Image image) {
         throw new UnsupportedOperationException();
     }
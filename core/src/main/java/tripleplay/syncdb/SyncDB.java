@@ -7,10 +7,12 @@ package tripleplay.syncdb;
 
 import java.util.AbstractMap;
 import java.util.AbstractSet;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -93,7 +95,7 @@ public abstract class SyncDB
                             "curMC", curMC, "syncedMC", syncedMC);
                 // leave it as modified and we'll sync again just in case
             } else if (syncedMC == curMC) {
-                _mods.remove(prop);
+                clearModified(prop);
             }
             // otherwise the curMC is greater than syncedMC, meaning the property was modified
             // while this sync was taking place
@@ -144,7 +146,7 @@ public abstract class SyncDB
                     log.warning("No local property defined", "name", name);
                 } else if (_mods.containsKey(name)) {
                     try {
-                        if (prop.merge(name, value)) _mods.remove(name);
+                        if (prop.merge(name, value)) clearModified(name);
                     } catch (Exception e) {
                         log.warning("Property merge fail", "name", name, "value", value, e);
                     }
@@ -154,7 +156,7 @@ public abstract class SyncDB
                     } catch (Exception e) {
                         log.warning("Property update fail", "name", name, "value", value, e);
                     }
-                    _mods.remove(name); // updating will cause the property to be marked as locally
+                    clearModified(name); // updating will cause the property to be marked as locally
                     // changed, but it's not really locally changed, it's been set
                     // to the latest synced value, so clear the mod flag
                 }
@@ -195,8 +197,7 @@ public abstract class SyncDB
         _platform = platform;
         _storage = platform.storage();
         _version = get(SYNC_VERS_KEY, 0, Codec.INT);
-        // read the current unsynced key set
-        for (String mod : sget(SYNC_MODS_KEY, Codec.STRING)) _mods.put(mod, 1);
+        readMods();
     }
 
     /**
@@ -211,7 +212,7 @@ public abstract class SyncDB
      */
     protected <T> Value<T> value (final String name, final T defval, final Codec<T> codec,
                                   final Resolver<? super T> resolver) {
-        Asserts.checkArgument(!SYNC_KEYS.contains(name), name + " is a reserved name.");
+        Asserts.checkArgument(!isReserved(name), name + " is a reserved name.");
         // create a value that reads/writes directly from/to the persistent store
         final Value<T> value = new Value<T>(null) {
             @Override public T get () {
@@ -254,7 +255,7 @@ public abstract class SyncDB
      * server modifications.
      */
     protected <E> RSet<E> set (final String name, final Codec<E> codec, final SetResolver resolver) {
-        Asserts.checkArgument(!SYNC_KEYS.contains(name), name + " is a reserved name.");
+        Asserts.checkArgument(!isReserved(name), name + " is a reserved name.");
         final RSet<E> rset = new RSet<E>(sget(name, codec)) {
             @Override protected void emitAdd (E elem) {
                 super.emitAdd(elem);
@@ -304,8 +305,9 @@ public abstract class SyncDB
      * @param prefix a string prefix prepended to the keys to create the storage key for each
      * individual map entry. A '.' will be placed in between the prefix and the string value of the
      * map key. For example: a prefix of {@code foo} and a map key of {@code 1} will result in a
-     * storage key of {@code foo.1}. Additionally, the {@code prefix_keys} storage cell will be used
-     * to track the current set of keys in the map.
+     * storage key of {@code foo.1}. Additionally, the {@code prefix_kidx} storage cells will be
+     * used to track the current set of keys in the map (see {@link MapKeyIndex}). The {@code
+     * prefix_keys} cell used by older versions is migrated to these cells when the map is created.
      * @param keyCodec the codec to use when converting a key to/from string.
      * @param valCodec the codec to use when converting a value to/from string for storage.
      * @param resolver the conflict resolution policy to use when conflicting changes have been
@@ -379,20 +381,21 @@ public abstract class SyncDB
                 return DBUtil.mapKey(prefix, key, keyCodec);
             }
 
-            protected final Set<K> _keys = new HashSet<K>(sget(mapKeysKey(prefix), keyCodec)) {
+            protected final MapKeyIndex<K> _index = new MapKeyIndex<K>(prefix, keyCodec);
+            protected final Set<K> _keys = new HashSet<K>(_index.load()) {
                 @Override public boolean add (K elem) {
                     // our super constructor will call add() with keys we loaded and passed to it;
                     // we don't want the addition of those keys to trigger a restore of the keyset
                     if (!_superctordone) return super.add(elem);
                     if (!super.add(elem)) return false;
-                    sset(mapKeysKey(prefix), this, keyCodec);
+                    _index.add(elem);
                     return true;
                 }
                 @Override public boolean remove (Object elem) {
                     if (!super.remove(elem)) return false;
                     @SuppressWarnings("unchecked") K key = (K)elem;
                     removeStorage(key);
-                    sset(mapKeysKey(prefix), this, keyCodec);
+                    _index.remove(key);
                     return true;
                 }
                 @Override public Iterator<K> iterator () {
@@ -403,6 +406,7 @@ public abstract class SyncDB
                         @Override public void remove () {
                             iter.remove();
                             removeStorage(_current);
+                            _index.remove(_current);
                         }
                         protected K _current;
                     };
@@ -442,8 +446,8 @@ public abstract class SyncDB
                 for (K key : map.keySet()) noteModified(DBUtil.mapKey(prefix, key, keyCodec));
             }
         });
-        // register a property for our keys set which is a NOOP, as updates to our values will
-        // automatically keep our keys in sync
+        // register a property for our (legacy) keys set which is a NOOP, as updates to our values
+        // will automatically keep our keys in sync
         _props.put(mapKeysKey(prefix), new Property() {
             public boolean merge (String name, String data) { return true; } // noop
             public void update (String name, String data) {} // noop
@@ -491,11 +495,79 @@ public abstract class SyncDB
     protected void noteModified (String name) {
         Integer omods = _mods.get(name);
         _mods.put(name, (omods == null) ? 1 : omods+1);
-        if (omods == null) queueFlushMods();
+        if (omods == null) {
+            _modsLog.add(MOD_ADDED + name);
+            queueFlushMods();
+        }
+    }
+
+    /** Notes that the named property no longer has unsynced modifications. */
+    protected void clearModified (String name) {
+        if (_mods.remove(name) != null) _modsLog.add(MOD_CLEARED + name);
+    }
+
+    /**
+     * Reads the set of properties with unsynced modifications. The set is stored as a base set in
+     * {@link #SYNC_BASE_KEY}, followed by a journal of the properties added to and removed from
+     * it since, stored in cells named {@link #SYNC_JOURNAL_KEY} followed by a sequence number. The
+     * base cell also records the sequence number of the first journal cell that follows it.
+     */
+    protected void readMods () {
+        String base = _storage.getItem(SYNC_BASE_KEY);
+        List<String> mods;
+        if (base == null) {
+            // older versions stored the base set alone, and started the journal at zero
+            mods = new ArrayList<String>(sget(SYNC_MODS_KEY, Codec.STRING));
+            _journalStart = 0;
+        } else {
+            mods = DBUtil.decodeList(base, Codec.STRING);
+            _journalStart = Codec.INT.decode(mods.remove(0));
+        }
+        for (String mod : mods) _mods.put(mod, 1);
+
+        // remove any cells preceding the journal that an interrupted compaction left behind
+        for (int seq = _journalStart-1; seq >= 0 && _storage.getItem(journalKey(seq)) != null;
+             seq--) removeItem(journalKey(seq));
+
+        _journalNext = _journalStart;
+        for (String entries; (entries = _storage.getItem(journalKey(_journalNext))) != null;
+             _journalNext++) {
+            for (String entry : DBUtil.decodeList(entries, Codec.STRING)) {
+                String name = entry.substring(1);
+                if (entry.charAt(0) == MOD_ADDED) _mods.put(name, 1);
+                else _mods.remove(name);
+                _journalSize++;
+            }
+        }
     }
 
+    /**
+     * Writes the changes to the set of modified properties since the last flush into a new
+     * journal cell, or compacts the journal into a new base set once it holds more entries than
+     * the set (and at least {@link #MIN_COMPACT_JOURNAL}), so that a flush costs time in
+     * proportion to the changes it writes.
+     */
     protected void flushMods () {
-        sset(SYNC_MODS_KEY, _mods.keySet(), Codec.STRING);
+        if (_modsLog.isEmpty()) return;
+        _journalSize += _modsLog.size();
+        if (_journalSize > Math.max(_mods.size(), MIN_COMPACT_JOURNAL)) {
+            // write the new base first, starting the journal after the cells written thus far, so
+            // that those cells are ignored from then on, however many of them we go on to remove
+            int oldStart = _journalStart;
+            _journalStart = _journalNext;
+            List<String> base = new ArrayList<String>();
+            base.add(Codec.INT.encode(_journalStart));
+            base.addAll(_mods.keySet());
+            setItem(SYNC_BASE_KEY, DBUtil.encodeList(base, Codec.STRING));
+            if (oldStart == 0) removeItem(SYNC_MODS_KEY);
+            // remove the old cells oldest first, so that an interrupted removal leaves the cells
+            // just before the journal, which readMods can find
+            for (int seq = oldStart; seq < _journalStart; seq++) removeItem(journalKey(seq));
+            _journalSize = 0;
+        } else {
+            setItem(journalKey(_journalNext++), DBUtil.encodeList(_modsLog, Codec.STRING));
+        }
+        _modsLog.clear();
     }
 
     protected void queueFlushMods () {
@@ -537,7 +609,7 @@ public abstract class SyncDB
             if (sdbidx == -1 || !dbs.contains(key.substring(0, sdbidx))) continue;
             // log.info("Purging property " + key);
             removeItem(key);
-            _mods.remove(key);
+            clearModified(key);
         }
         flushMods();
     }
@@ -549,11 +621,138 @@ public abstract class SyncDB
         void prepareToMeld ();
     }
 
-    /** Returns the key used to store the keys for a map with the specified prefix. */
+    /** Returns whether {@code name} is reserved for our own bookkeeping. */
+    protected static boolean isReserved (String name) {
+        if (SYNC_KEYS.contains(name)) return true;
+        if (!name.startsWith(SYNC_JOURNAL_KEY) || name.length() == SYNC_JOURNAL_KEY.length()) {
+            return false;
+        }
+        for (int ii = SYNC_JOURNAL_KEY.length(), ll = name.length(); ii < ll; ii++) {
+            if (!Character.isDigit(name.charAt(ii))) return false;
+        }
+        return true;
+    }
+
+    /** Returns the key of the journal cell with the specified sequence number. */
+    protected static String journalKey (int seq) {
+        return SYNC_JOURNAL_KEY + seq;
+    }
+
+    /** Returns the key used by older versions to store the keys for a map with the specified
+     * prefix. See {@link MapKeyIndex}. */
     protected static String mapKeysKey (String mapPrefix) {
         return mapPrefix + "_keys";
     }
 
+    /** Returns the key used to store the number of key buckets for a map with the specified
+     * prefix. Bucket {@code n} is stored at this key with {@code n} appended. */
+    protected static String mapIndexKey (String mapPrefix) {
+        return mapPrefix + "_kidx";
+    }
+
+    /**
+     * Stores the keys of a map. Storing them all in one cell would rewrite every key each time a
+     * key is added or removed, so the keys are instead hashed (by their encoded form) into
+     * buckets, each stored in its own cell. The number of buckets is a power of two, which doubles
+     * (rewriting every bucket) when the buckets average more than {@link SyncDB#BUCKET_KEYS}
+     * keys. Thus adding or removing a key rewrites a bounded number of keys, on average.
+     */
+    protected class MapKeyIndex<K> {
+        public MapKeyIndex (String prefix, Codec<K> codec) {
+            _prefix = prefix;
+            _codec = codec;
+        }
+
+        /** Reads the keys from storage. Keys stored by an older version in a single cell are
+         * moved into buckets. */
+        public Set<K> load () {
+            Set<K> keys = new HashSet<K>();
+            int buckets = get(mapIndexKey(_prefix), 0, Codec.INT);
+            if (buckets == 0) {
+                keys.addAll(sget(mapKeysKey(_prefix), _codec));
+                _buckets.add(new HashSet<K>());
+                if (!keys.isEmpty()) {
+                    rehash(keys, bucketsFor(keys.size()));
+                    removeItem(mapKeysKey(_prefix));
+                }
+            } else {
+                // a bucket is only decoded into its own set when it's first changed
+                for (int ii = 0; ii < buckets; ii++) {
+                    DBUtil.decode(_storage.getItem(bucketKey(ii)), _codec, keys);
+                    _buckets.add(null);
+                }
+                _size = keys.size();
+            }
+            return keys;
+        }
+
+        /** Adds a key that is not already in the map. */
+        public void add (K key) {
+            if (++_size > _buckets.size() * BUCKET_KEYS) {
+                Set<K> keys = new HashSet<K>();
+                for (int ii = 0, ll = _buckets.size(); ii < ll; ii++) keys.addAll(bucketSet(ii));
+                keys.add(key);
+                rehash(keys, _buckets.size() * 2);
+            } else {
+                int idx = bucket(key);
+                bucketSet(idx).add(key);
+                write(idx);
+                // the index of an empty map isn't stored until its first key is added
+                if (_size == 1) set(mapIndexKey(_prefix), _buckets.size(), Codec.INT);
+            }
+        }
+
+        /** Removes a key that was in the map. */
+        public void remove (K key) {
+            int idx = bucket(key);
+            if (bucketSet(idx).remove(key)) {
+                _size--;
+                write(idx);
+            }
+        }
+
+        protected void rehash (Set<K> keys, int buckets) {
+            _buckets.clear();
+            for (int ii = 0; ii < buckets; ii++) _buckets.add(new HashSet<K>());
+            for (K key : keys) _buckets.get(bucket(key)).add(key);
+            for (int ii = 0; ii < buckets; ii++) write(ii);
+            set(mapIndexKey(_prefix), buckets, Codec.INT);
+            _size = keys.size();
+        }
+
+        protected void write (int idx) {
+            Set<K> bucket = bucketSet(idx);
+            if (bucket.isEmpty()) removeItem(bucketKey(idx));
+            else sset(bucketKey(idx), bucket, _codec);
+        }
+
+        protected Set<K> bucketSet (int idx) {
+            Set<K> bucket = _buckets.get(idx);
+            if (bucket == null) _buckets.set(idx, bucket = sget(bucketKey(idx), _codec));
+            return bucket;
+        }
+
+        protected int bucket (K key) {
+            return _codec.encode(key).hashCode() & (_buckets.size() - 1);
+        }
+
+        protected int bucketsFor (int size) {
+            int buckets = 1;
+            while (size > buckets * BUCKET_KEYS) buckets *= 2;
+            return buckets;
+        }
+
+        protected String bucketKey (int idx) {
+            return mapIndexKey(_prefix) + idx;
+        }
+
+        protected final String _prefix;
+        protected final Codec<K> _codec;
+        /** The keys in each bucket, or null for buckets that haven't been decoded. */
+        protected final List<Set<K>> _buckets = new ArrayList<Set<K>>();
+        protected int _size;
+    }
+
     /** Used to encapsulate a collection of properties associated with a particular prefix. For
      * example a chess game could create a subdb for each active game using some generated game id
      * as a prefix, and when the game was complete, the entire subdb could be removed.
@@ -619,14 +818,32 @@ public abstract class SyncDB
     protected final Map<String,Property> _props = new HashMap<String,Property>();
     protected final Map<String,SubDB> _subdbs = new HashMap<String,SubDB>();
     protected final Map<String,Integer> _mods = new HashMap<String,Integer>();
+    /** The changes to {@link #_mods} since our last flush, as entries for the journal. */
+    protected final List<String> _modsLog = new ArrayList<String>();
+    /** The sequence numbers of the first cell of the stored mods journal and of the cell that
+     * will follow its last, and the number of entries in its cells. */
+    protected int _journalStart, _journalNext, _journalSize;
     protected int _version;
     protected boolean _flushQueued;
 
+    /** The average number of keys per bucket above which a {@link MapKeyIndex} is rehashed. */
+    protected static final int BUCKET_KEYS = 32;
+
     protected static final String SYNC_VERS_KEY  = "syncv";
     protected static final String SYNC_MODS_KEY  = "syncm";
     protected static final String SYNC_PURGE_KEY = "syncp";
+    protected static final String SYNC_BASE_KEY  = "syncb";
+    protected static final String SYNC_JOURNAL_KEY = "syncj";
     protected static final Set<String> SYNC_KEYS = new HashSet<String>(); static {
         SYNC_KEYS.add(SYNC_VERS_KEY);
         SYNC_KEYS.add(SYNC_MODS_KEY);
+        SYNC_KEYS.add(SYNC_BASE_KEY);
     }
+
+    /** The prefixes of entries in the mods journal. */
+    protected static final char MOD_ADDED = '+', MOD_CLEARED = '-';
+
+    /** The number of entries the mods journal may hold before it is compacted, regardless of the
+     * size of the set of modified properties. */
+    protected static final int MIN_COMPACT_JOURNAL = 256;
 }
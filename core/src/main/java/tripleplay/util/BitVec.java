@@ -22,6 +22,12 @@ public final class BitVec
         _words = new int[words];
     }
 
+    /** Creates a bit vector which contains the same bits as {@code other}. */
+    public BitVec (BitVec other) {
+        _words = new int[other._words.length];
+        java.lang.System.arraycopy(other._words, 0, _words, 0, _words.length);
+    }
+
     /** Returns whether the {@code value}th bit it set. */
     public boolean isSet (int value) {
         int word = value / 32;
@@ -32,7 +38,7 @@ public final class BitVec
     public void set (int value) {
         int word = value / 32;
         if (_words.length <= word) {
-            int[] words = new int[_words.length*2];
+            int[] words = new int[Math.max(_words.length*2, word+1)];
             java.lang.System.arraycopy(_words, 0, words, 0, _words.length);
             _words = words;
         }
@@ -52,5 +58,42 @@ public final class BitVec
         for (int ii = 0; ii < _words.length; ii++) _words[ii] = 0;
     }
 
+    /** Returns whether every bit set in {@code other} is also set in this vector. */
+    public boolean containsAll (BitVec other) {
+        int[] owords = other._words;
+        for (int ii = 0, ll = owords.length; ii < ll; ii++) {
+            int word = (ii < _words.length) ? _words[ii] : 0;
+            if ((word & owords[ii]) != owords[ii]) return false;
+        }
+        return true;
+    }
+
+    /** Returns whether any bit set in {@code other} is also set in this vector. */
+    public boolean intersects (BitVec other) {
+        int[] owords = other._words;
+        for (int ii = 0, ll = Math.min(_words.length, owords.length); ii < ll; ii++) {
+            if ((_words[ii] & owords[ii]) != 0) return true;
+        }
+        return false;
+    }
+
+    @Override public int hashCode () {
+        // trailing zero words must not affect the hash, so that equal vectors hash equally
+        int code = 0;
+        for (int ii = _words.length-1; ii >= 0; ii--) code = code * 31 + _words[ii];
+        return code;
+    }
+
+    @Override public boolean equals (Object other) {
+        if (!(other instanceof BitVec)) return false;
+        int[] owords = ((BitVec)other)._words;
+        for (int ii = 0, ll = Math.max(_words.length, owords.length); ii < ll; ii++) {
+            int word = (ii < _words.length) ? _words[ii] : 0;
+            int oword = (ii < owords.length) ? owords[ii] : 0;
+            if (word != oword) return false;
+        }
+        return true;
+    }
+
     protected int[] _words;
 }
@@ -114,6 +114,77 @@ public abstract class Interpolator
         }
     };
 
+    /** The default number of samples in the tables of tabulated interpolators. */
+    public static final int DEFAULT_SAMPLES = 1024;
+
+    /**
+     * Returns a cubic Bézier interpolator with control points {@code (x1, y1)} and {@code (x2,
+     * y2)}, as with the CSS {@code cubic-bezier} timing function, evaluated via a table of {@link
+     * #DEFAULT_SAMPLES} samples.
+     */
+    public static Interpolator bezier (float x1, float y1, float x2, float y2) {
+        return bezier(x1, y1, x2, y2, DEFAULT_SAMPLES);
+    }
+
+    /**
+     * Returns a cubic Bézier interpolator with control points {@code (x1, y1)} and {@code (x2,
+     * y2)}, as with the CSS {@code cubic-bezier} timing function. The curve is solved for {@code
+     * samples} evenly spaced points in time when this method is called, and evaluated by linear
+     * interpolation between those.
+     *
+     * @throws IllegalArgumentException if {@code x1} or {@code x2} are not in [0, 1] (in which
+     * case the curve would not be a function of time).
+     */
+    public static Interpolator bezier (float x1, float y1, float x2, float y2, int samples) {
+        if (x1 < 0 || x1 > 1 || x2 < 0 || x2 > 1) throw new IllegalArgumentException(
+            "Bezier x coordinates must be in [0, 1] [x1=" + x1 + ", x2=" + x2 + "]");
+        checkSamples(samples);
+        float[] progress = new float[samples];
+        for (int ii = 0; ii < samples; ii++) {
+            double x = ii / (double)(samples-1), s = solveBezier(x1, x2, x);
+            progress[ii] = (float)bezier(y1, y2, s);
+        }
+        return new Tabulated(null, progress);
+    }
+
+    /**
+     * Returns an approximation of this interpolator that is evaluated via a table of {@link
+     * #DEFAULT_SAMPLES} samples. See {@link #tabulate(int)}.
+     */
+    public Interpolator tabulate () {
+        return tabulate(DEFAULT_SAMPLES);
+    }
+
+    /**
+     * Returns an approximation of this interpolator that samples it at {@code samples} evenly
+     * spaced points in time when this method is called, and is evaluated by linear interpolation
+     * between those, avoiding the transcendental functions used by interpolators such as {@link
+     * #EASE_OUT_ELASTIC}. For smooth interpolators, the error shrinks with the square of the
+     * number of samples; with the default number, it is within 0.05% of the range for all of the
+     * standard interpolators. A table lookup costs about as much as a few multiplications and a
+     * division, so this is only worthwhile for interpolators that call {@link Math#pow} or {@link
+     * Math#sin} and the like; the polynomial interpolators are cheaper to evaluate exactly.
+     *
+     * <p>This assumes that this interpolator depends only on the fraction of the elapsed time
+     * ({@code dt/t}), and is a linear combination of {@code start} and {@code range}, as are all
+     * of the standard interpolators. The time is clamped to [0, t], as with {@link
+     * #applyClamp}.</p>
+     */
+    public Interpolator tabulate (int samples) {
+        checkSamples(samples);
+        float[] starts = new float[samples], ranges = new float[samples];
+        boolean affine = true;
+        for (int ii = 0; ii < samples; ii++) {
+            float dt = ii / (float)(samples-1);
+            starts[ii] = apply(1, 0, dt, 1);
+            ranges[ii] = apply(0, 1, dt, 1);
+            affine = affine && starts[ii] == 1;
+        }
+        // the start coefficient is one for all but the oddest of interpolators, in which case we
+        // don't need to tabulate it
+        return new Tabulated(affine ? null : starts, ranges);
+    }
+
     /**
      * Interpolates between two values.
      *
@@ -132,4 +203,83 @@ public abstract class Interpolator
     public float applyClamp (float start, float range, float dt, float t) {
         return apply(start, range, MathUtil.clamp(dt, 0, t), t);
     }
+
+    /** An interpolator that linearly interpolates between precomputed samples. */
+    protected static class Tabulated extends Interpolator {
+        /**
+         * Creates a tabulated interpolator that returns {@code start * starts[f] + range *
+         * ranges[f]}, where {@code f} is the fraction of the elapsed time. If {@code starts} is
+         * null, its samples are all one.
+         */
+        public Tabulated (float[] starts, float[] ranges) {
+            _scale = ranges.length - 1;
+            _starts = (starts == null) ? null : slopes(starts);
+            _ranges = slopes(ranges);
+        }
+
+        @Override public float apply (float start, float range, float dt, float t) {
+            float pos = (dt >= t) ? _scale : (dt <= 0 ? 0 : dt / t * _scale);
+            int idx = (int)pos;
+            float frac = pos - idx;
+            float[] ranges = _ranges, starts = _starts;
+            idx *= 2;
+            float r = ranges[idx] + ranges[idx+1] * frac;
+            if (starts == null) return start + range * r;
+            return start * (starts[idx] + starts[idx+1] * frac) + range * r;
+        }
+
+        /** Interleaves each sample with the slope to the next sample (the last sample is given
+         * a zero slope, so that it can be looked up like the others). */
+        protected static float[] slopes (float[] samples) {
+            float[] slopes = new float[samples.length*2];
+            for (int ii = 0; ii < samples.length; ii++) {
+                slopes[2*ii] = samples[ii];
+                if (ii < samples.length-1) slopes[2*ii+1] = samples[ii+1] - samples[ii];
+            }
+            return slopes;
+        }
+
+        /** The samples, interleaved with their slopes. */
+        protected final float[] _starts, _ranges;
+        protected final int _scale;
+    }
+
+    protected static void checkSamples (int samples) {
+        if (samples < 2) throw new IllegalArgumentException(
+            "Tabulated interpolators require at least two samples [samples=" + samples + "]");
+    }
+
+    /** Returns the value of the cubic Bézier from 0 to 1 with control values {@code c1} and
+     * {@code c2} at {@code s}. */
+    protected static double bezier (double c1, double c2, double s) {
+        double u = 1 - s;
+        return 3 * u * u * s * c1 + 3 * u * s * s * c2 + s * s * s;
+    }
+
+    /** Returns the parameter at which the cubic Bézier with control values {@code x1} and {@code
+     * x2} (which must be in [0, 1]) has the value {@code x}. */
+    protected static double solveBezier (double x1, double x2, double x) {
+        // the curve is monotonic, so bisection always converges; try Newton's method first, as
+        // it converges much faster where the curve isn't flat
+        double s = x;
+        for (int ii = 0; ii < 8; ii++) {
+            double err = bezier(x1, x2, s) - x;
+            if (Math.abs(err) < 1e-9) return s;
+            double u = 1 - s;
+            double slope = 3 * u * u * x1 + 6 * u * s * (x2 - x1) + 3 * s * s * (1 - x2);
+            if (Math.abs(slope) < 1e-6) break;
+            s -= err / slope;
+            if (s < 0 || s > 1) break;
+        }
+        double lo = 0, hi = 1;
+        s = x;
+        for (int ii = 0; ii < 64; ii++) {
+            double err = bezier(x1, x2, s) - x;
+            if (Math.abs(err) < 1e-9) break;
+            if (err > 0) hi = s;
+            else lo = s;
+            s = (lo + hi) / 2;
+        }
+        return s;
+    }
 }
@@ -32,6 +32,17 @@ public class TexturePacker
         void render (Surface surface, IRectangle bounds);
     }
 
+    /** Creates a packer whose atlases are as large as possible. */
+    public TexturePacker () {
+        this(MAX_SIZE);
+    }
+
+    /** Creates a packer whose atlases are {@code atlasSize} pixels square. Smaller atlases waste
+     * less memory when only a few items are packed. */
+    public TexturePacker (int atlasSize) {
+        _atlasSize = Math.min(atlasSize, MAX_SIZE);
+    }
+
     /** Add an image to the packer. */
     public TexturePacker add (String id, Image image) {
         return addItem(new ImageItem(id, image));
@@ -48,6 +59,26 @@ public class TexturePacker
      * @return A map containing the new images, keyed by the id they were added with.
      */
     public Map<String,Image.Region> pack () {
+        final Map<String,Image.Region> packed = new HashMap<String,Image.Region>();
+        for (Atlas atlas : layout()) {
+            Node root = atlas.root;
+            final SurfaceImage atlasImage = graphics().createSurface(root.width, root.height);
+            root.visitItems(new Slot<Node>() { @Override public void onEmit (Node node) {
+                // Draw the item to the atlas
+                node.item.draw(atlasImage.surface(), node.x, node.y);
+
+                // Record its region
+                packed.put(node.item.id, atlasImage.subImage(
+                    node.x, node.y, node.width, node.height));
+            }});
+        }
+        return packed;
+    }
+
+    /**
+     * Places all items into as few atlases as possible, without rendering anything.
+     */
+    protected List<Atlas> layout () {
         List<Item> unpacked = new ArrayList<Item>(_items.values());
         Collections.sort(unpacked, new Comparator<Item>() {
             // TODO(bruno): Experiment with different heuristics. Brute force calculate using
@@ -70,34 +101,22 @@ public class TexturePacker
                 for (Atlas atlas : atlases) {
                     if (atlas.place(item)) {
                         it.remove();
+                        break;
                     }
                 }
             }
         }
 
-        final Map<String,Image.Region> packed = new HashMap<String,Image.Region>();
-        for (Atlas atlas : atlases) {
-            Node root = atlas.root;
-            final SurfaceImage atlasImage = graphics().createSurface(root.width, root.height);
-            root.visitItems(new Slot<Node>() { @Override public void onEmit (Node node) {
-                // Draw the item to the atlas
-                node.item.draw(atlasImage.surface(), node.x, node.y);
-
-                // Record its region
-                packed.put(node.item.id, atlasImage.subImage(
-                    node.x, node.y, node.width, node.height));
-            }});
-        }
-        return packed;
+        return atlases;
     }
 
     protected Atlas createAtlas () {
         // TODO(bruno): Be smarter about sizing
-        return new Atlas(MAX_SIZE, MAX_SIZE);
+        return new Atlas(_atlasSize, _atlasSize);
     }
 
     protected TexturePacker addItem (Item item) {
-        if (item.width()+PADDING > MAX_SIZE || item.height()+PADDING > MAX_SIZE) {
+        if (item.width()+PADDING > _atlasSize || item.height()+PADDING > _atlasSize) {
             throw new RuntimeException("Item is too big to pack [id=" + item.id +
                 ", width=" + item.width() + ", height=" + item.height() + "]");
         }
@@ -226,5 +245,6 @@ public class TexturePacker
     protected static final int PADDING = 1;
     protected static final int MAX_SIZE = 2048;
 
+    protected final int _atlasSize;
     protected Map<String,Item> _items = new HashMap<String,Item>();
 }
@@ -5,9 +5,15 @@
 
 package tripleplay.anim;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import org.junit.*;
 import static org.junit.Assert.*;
 
+import playn.core.util.Clock;
+
 public class AnimatorTest
 {
     @Test public void testAnimDoubleRegisterFreakout () {
@@ -23,4 +29,141 @@ public class AnimatorTest
             fail("Double register failed to freakout");
         } catch (IllegalStateException ise) {} // success
     }
+
+    @Test public void testApplyOrder () {
+        final List<Integer> order = new ArrayList<Integer>();
+        Animator anim = new Animator();
+        int[] durations = { 100, 500, 100, 500, 100, 500 };
+        for (int ii = 0; ii < durations.length; ii++) {
+            final int id = ii;
+            anim.tween(new Animation.Value() {
+                public float initial () { return 0; }
+                public void set (float value) { order.add(id); }
+            }).to(1).in(durations[ii]);
+        }
+        Clock.Source clock = new Clock.Source(0);
+        // the first frame starts the animations, the rest apply them
+        for (int ii = 0; ii < 3; ii++) tick(anim, clock, 50);
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5), order.subList(order.size()-6, order.size()));
+        // once the short tweens complete, the survivors are still applied in start order
+        tick(anim, clock, 100);
+        order.clear();
+        tick(anim, clock, 100);
+        assertEquals(Arrays.asList(1, 3, 5), order);
+    }
+
+    @Test public void testPooled () {
+        Animator anim = new Animator().setPooled(true);
+        Clock.Source clock = new Clock.Source(0);
+        final float[] values = new float[2];
+        Animation.Value v0 = new Animation.Value() {
+            public float initial () { return 0; }
+            public void set (float value) { values[0] = value; }
+        };
+        Animation.Value v1 = new Animation.Value() {
+            public float initial () { return 0; }
+            public void set (float value) { values[1] = value; }
+        };
+
+        // a completed chain is recycled, and its tweens reused
+        Animation.One first = anim.tween(v0).to(1).in(100);
+        Animation.One second = first.then().tween(v0).to(2).in(100);
+        Animation.Handle handle = first.handle();
+        for (int ii = 0; ii < 5; ii++) tick(anim, clock, 60);
+        assertEquals(2, values[0], 0);
+        Animation.One reused = anim.tween(v1).to(5).in(100);
+        assertTrue(reused == first || reused == second);
+
+        // the handle to the completed chain no longer cancels anything
+        handle.cancel();
+        for (int ii = 0; ii < 3; ii++) tick(anim, clock, 60);
+        assertEquals(5, values[1], 0);
+
+        // but a handle to a live chain still does
+        values[1] = 0;
+        Animation.Handle live = anim.tween(v1).to(7).in(1000).handle();
+        tick(anim, clock, 60);
+        tick(anim, clock, 60);
+        live.cancel();
+        float canceled = values[1];
+        tick(anim, clock, 60);
+        assertEquals(canceled, values[1], 0);
+        assertTrue(canceled < 7);
+    }
+
+    @Test public void testSeek () {
+        Animator anim = new Animator();
+        final float[] value = new float[1];
+        final int[] actions = new int[1];
+        Runnable action = new Runnable() { public void run () { actions[0]++; }};
+        anim.tween(valueOf(value, 0)).to(1).in(1000).then().action(action).then().
+            delay(500).then().action(action);
+        anim.addBarrier();
+        anim.action(action);
+
+        // seeking runs many frames, and each action runs once, even if we seek past it twice
+        anim.seek(1200, 16);
+        assertEquals(1, value[0], 0);
+        assertEquals(1, actions[0]);
+        anim.seek(10000, 16);
+        assertEquals(3, actions[0]);
+        assertEquals(10000, anim.time(), 0);
+        try {
+            anim.seek(5000);
+            fail("Seeked backwards");
+        } catch (IllegalArgumentException iae) {} // success
+    }
+
+    @Test public void testTimeScaleAndPause () {
+        Animator anim = new Animator();
+        final float[] values = new float[2];
+        anim.tween(valueOf(values, 0)).to(1000).in(1000);
+        AnimGroup group = new AnimGroup();
+        group.tween(valueOf(values, 1)).to(1000).in(1000);
+        anim.add(group.toAnim());
+        Clock.Source clock = new Clock.Source(0);
+        tick(anim, clock, 0); // starts the animations
+
+        // a half speed animator runs its animations at half speed
+        anim.setTimeScale(0.5f);
+        tick(anim, clock, 200);
+        assertEquals(100, values[0], 1e-3f);
+        assertEquals(100, values[1], 1e-3f);
+
+        // a double speed group runs at double its animator's speed
+        group.setTimeScale(2);
+        tick(anim, clock, 200);
+        assertEquals(200, values[0], 1e-3f);
+        assertEquals(300, values[1], 1e-3f);
+
+        // a paused group freezes while the rest of the animator continues
+        group.pause();
+        tick(anim, clock, 200);
+        assertEquals(300, values[0], 1e-3f);
+        assertEquals(300, values[1], 1e-3f);
+        group.resume();
+
+        // and a paused animator freezes entirely
+        anim.pause();
+        tick(anim, clock, 200);
+        assertEquals(300, values[0], 1e-3f);
+        anim.resume();
+        anim.setTimeScale(1);
+        tick(anim, clock, 100);
+        assertEquals(400, values[0], 1e-3f);
+        assertEquals(500, values[1], 1e-3f);
+    }
+
+    protected Animation.Value valueOf (final float[] values, final int index) {
+        return new Animation.Value() {
+            public float initial () { return values[index]; }
+            public void set (float value) { values[index] = value; }
+        };
+    }
+
+    protected void tick (Animator anim, Clock.Source clock, int millis) {
+        clock.update(millis);
+        clock.paint(0);
+        anim.paint(clock);
+    }
 }
@@ -0,0 +1,93 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.anim;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import playn.core.GroupLayer;
+import playn.core.util.Clock;
+import playn.java.JavaPlatform;
+import static playn.core.PlayN.graphics;
+
+import tripleplay.util.Interpolator;
+
+public class BulkTweenTest
+{
+    static {
+        JavaPlatform.Config config = new JavaPlatform.Config();
+        config.headless = true;
+        JavaPlatform.register(config);
+    }
+
+    public static class Values implements BulkTween.Target {
+        public final float[] values;
+        public Values (int count) { values = new float[count]; }
+        public float get (int id) { return values[id]; }
+        public void set (int id, float value) { values[id] = value; }
+    }
+
+    static final Interpolator[] INTERPS = {
+        Interpolator.LINEAR, Interpolator.EASE_IN, Interpolator.EASE_OUT, Interpolator.EASE_INOUT,
+        Interpolator.EASE_OUT_BACK
+    };
+
+    @Test public void testInterpolation () {
+        BulkTween bulk = new BulkTween();
+        Values values = new Values(INTERPS.length);
+        for (int ii = 0; ii < INTERPS.length; ii++) {
+            values.values[ii] = 10;
+            bulk.tween(values, ii, 30, 1000, INTERPS[ii]);
+        }
+        Clock.Source clock = new Clock.Source(0);
+        tick(bulk, clock, 0); // starts the tweens
+        for (int tt = 1; tt < 10; tt++) {
+            tick(bulk, clock, 100);
+            for (int ii = 0; ii < INTERPS.length; ii++) {
+                assertEquals(INTERPS[ii].apply(10, 20, tt*100, 1000), values.values[ii], 1e-4f);
+            }
+        }
+        assertEquals(INTERPS.length, bulk.size());
+        tick(bulk, clock, 100);
+        for (int ii = 0; ii < INTERPS.length; ii++) assertEquals(30, values.values[ii], 0);
+        assertEquals(0, bulk.size());
+    }
+
+    @Test public void testLayersAndCancel () {
+        BulkTween bulk = new BulkTween();
+        GroupLayer a = graphics().createGroupLayer(), b = graphics().createGroupLayer();
+        bulk.tween(a, BulkTween.X, 0, 100, 1000, Interpolator.LINEAR);
+        bulk.tween(a, BulkTween.ALPHA, 1, 0, 1000, Interpolator.LINEAR);
+        bulk.tween(b, BulkTween.Y, 0, 100, 500, Interpolator.LINEAR);
+        Clock.Source clock = new Clock.Source(0);
+        tick(bulk, clock, 0);
+        tick(bulk, clock, 250);
+        assertEquals(25, a.tx(), 1e-4f);
+        assertEquals(0.75f, a.alpha(), 1e-4f);
+        assertEquals(50, b.ty(), 1e-4f);
+
+        // cancelling a layer's tweens leaves its properties where they are
+        bulk.cancel(a);
+        assertEquals(1, bulk.size());
+        tick(bulk, clock, 250);
+        assertEquals(25, a.tx(), 0);
+        assertEquals(100, b.ty(), 0);
+        assertEquals(0, bulk.size());
+
+        // when two tweens target the same property, the most recently added wins
+        bulk.tween(b, BulkTween.Y, 0, 1000, Interpolator.LINEAR);
+        bulk.tween(b, BulkTween.Y, 200, 1000, Interpolator.LINEAR);
+        tick(bulk, clock, 0);
+        tick(bulk, clock, 500);
+        assertEquals(150, b.ty(), 1e-4f);
+    }
+
+    protected void tick (BulkTween bulk, Clock.Source clock, int millis) {
+        clock.update(millis);
+        clock.paint(0);
+        bulk.paint(clock);
+    }
+}
@@ -0,0 +1,302 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.entity;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import react.Slot;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class WorldTest
+{
+    static class TestWorld extends World {
+        public final Component.XY pos = new Component.XY(this);
+        public final Component.XY vel = new Component.XY(this);
+        public final Component.IScalar frozen = new Component.IScalar(this);
+    }
+
+    static class Tracker extends FilteredSystem {
+        public final List<String> events;
+        public Tracker (World world, int priority, Component[] req, Component[] excl,
+                        List<String> events) {
+            super(world, priority, req, excl);
+            this.events = events;
+        }
+        @Override protected void wasAdded (Entity entity) { events.add(priority + "+" + entity.id); }
+        @Override protected void wasRemoved (Entity entity, int index) {
+            events.add(priority + "-" + entity.id);
+        }
+    }
+
+    @Test public void testFilteredMembership () {
+        TestWorld world = new TestWorld();
+        List<String> events = new ArrayList<String>();
+        Tracker mover = new Tracker(world, 1, new Component[] { world.pos, world.vel },
+                                    new Component[] { world.frozen }, events);
+        Tracker placed = new Tracker(world, 2, new Component[] { world.pos },
+                                     new Component[0], events);
+
+        Entity e = world.create(true).add(world.pos);
+        world.update(0);
+        assertEquals(0, mover._active.size());
+        assertEquals(1, placed._active.size());
+
+        e.add(world.vel);
+        world.update(0);
+        assertEquals(1, mover._active.size());
+
+        e.add(world.frozen);
+        world.update(0);
+        assertEquals(0, mover._active.size());
+        assertEquals(1, placed._active.size());
+
+        e.destroy();
+        world.update(0);
+        assertEquals(0, placed._active.size());
+        // higher priority systems are notified first
+        assertEquals("[2+1, 1+1, 1-1, 2-1]", events.toString());
+    }
+
+    @Test public void testMixedSystems () {
+        final TestWorld world = new TestWorld();
+        final Component vel = world.vel;
+        List<String> events = new ArrayList<String>();
+        new Tracker(world, 0, new Component[] { world.pos }, new Component[0], events);
+        System dynamic = new System(world, 1) {
+            @Override protected boolean isInterested (Entity entity) {
+                return entity.has(vel);
+            }
+        };
+
+        Entity e = world.create(true).add(world.pos, world.vel);
+        world.update(0);
+        assertEquals(1, dynamic._active.size());
+        e.remove(world.vel);
+        world.update(0);
+        assertEquals(0, dynamic._active.size());
+        assertEquals("[0+1]", events.toString());
+
+        // a system registered after the fact sees entities once they next change
+        System late = new Tracker(world, 5, new Component[] { world.pos }, new Component[0], events);
+        world.update(0);
+        assertEquals(0, late._active.size());
+        e.didChange();
+        world.update(0);
+        assertEquals(1, late._active.size());
+        assertEquals("[0+1, 5+1]", events.toString());
+    }
+
+    @Test public void testDenseArrange () {
+        World world = new World();
+        Component.DenseXY pos = new Component.DenseXY(world);
+        Component.DenseFScalar mass = new Component.DenseFScalar(world);
+        System sys = new FilteredSystem(world, 0, new Component[] { pos, mass },
+                                        new Component[0]) {};
+
+        List<Entity> ents = new ArrayList<Entity>();
+        for (int ii = 0; ii < 200; ii++) {
+            Entity e = world.create(true).add(pos);
+            // give only some entities mass, so that the component slots don't line up
+            if (ii % 3 == 0) {
+                e.add(mass);
+                mass.set(e.id, e.id);
+            }
+            pos.set(e.id, e.id, -e.id);
+            ents.add(e);
+        }
+        for (int ii = 0; ii < 200; ii += 7) ents.get(ii).destroy();
+        world.update(0);
+
+        System.Entities active = sys._active;
+        pos.arrange(active);
+        mass.arrange(active);
+        float[] xs = pos.xs(), ys = pos.ys(), ms = mass.values();
+        for (int ii = 0; ii < active.size(); ii++) {
+            int id = active.get(ii);
+            assertEquals(id, pos.entity(ii));
+            assertEquals(id, mass.entity(ii));
+            assertEquals(id, xs[ii], 0);
+            assertEquals(-id, ys[ii], 0);
+            assertEquals(id, ms[ii], 0);
+        }
+        // destroyed entities no longer occupy slots
+        assertEquals(200 - 29, pos.size());
+        assertEquals(-1, pos.slot(ents.get(0).id));
+    }
+
+    static class Stepper extends FilteredSystem {
+        public Stepper (World world, int priority, Component.FScalar from, Component.FScalar to,
+                        List<Integer> order) {
+            super(world, priority, new Component[] { from, to }, new Component[0]);
+            reads(from);
+            writes(to);
+            _from = from;
+            _to = to;
+            _order = order;
+        }
+        @Override protected void update (int delta, Entities entities) {
+            for (int ii = 0, ll = entities.size(); ii < ll; ii++) {
+                int id = entities.get(ii);
+                _to.set(id, _from.get(id) + delta);
+            }
+            _order.add(priority);
+        }
+        protected final Component.FScalar _from, _to;
+        protected final List<Integer> _order;
+    }
+
+    @Test public void testParallelUpdate () {
+        World world = new World();
+        Component.FScalar a = new Component.FScalar(world), b = new Component.FScalar(world);
+        Component.FScalar c = new Component.FScalar(world), d = new Component.FScalar(world);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        // 3 -> 2 form a chain (b is written by 3 and read by 2); 1 is independent of both
+        new Stepper(world, 3, a, b, order);
+        new Stepper(world, 2, b, c, order);
+        new Stepper(world, 1, a, d, order);
+
+        Entity e = world.create(true).add(new Component[] { a, b, c, d });
+        ExecutorService exec = Executors.newFixedThreadPool(4);
+        try {
+            world.setExecutor(exec);
+            for (int ii = 0; ii < 50; ii++) {
+                a.set(e.id, ii);
+                world.update(1);
+                assertEquals(ii+1, b.get(e.id), 0);
+                assertEquals(ii+2, c.get(e.id), 0);
+                assertEquals(ii+1, d.get(e.id), 0);
+                assertTrue(order.indexOf(3) < order.indexOf(2));
+                order.clear();
+            }
+
+            // a rejecting executor runs the systems inline rather than blocking the update
+            exec.shutdown();
+            a.set(e.id, 100);
+            world.update(1);
+            assertEquals(102, c.get(e.id), 0);
+        } finally {
+            exec.shutdown();
+        }
+    }
+
+    @Test public void testCommandBuffer () {
+        final TestWorld world = new TestWorld();
+        final Component pos = world.pos, vel = world.vel, frozen = world.frozen;
+        final List<Entity> created = new ArrayList<Entity>();
+        final int[] changes = new int[1];
+        world.entityChanged.connect(new Slot<Entity>() {
+            public void onEmit (Entity e) { changes[0]++; }
+        });
+        System spawner = new System(world, 0) {
+            @Override protected boolean isInterested (Entity entity) { return false; }
+            @Override protected void update (int delta, Entities entities) {
+                if (created.isEmpty()) {
+                    commands().create(new Component[] { pos }, true, new Slot<Entity>() {
+                        public void onEmit (Entity e) { created.add(e); }
+                    });
+                } else {
+                    Entity e = created.get(0);
+                    commands().add(e, vel);
+                    commands().remove(e, pos);
+                    commands().add(e, frozen);
+                    commands().remove(e, frozen);
+                    commands().add(e, pos);
+                }
+            }
+        };
+
+        world.update(0);
+        assertEquals(1, created.size());
+        Entity e = created.get(0);
+        assertTrue(e.has(pos));
+        assertTrue(spawner.commands().isEmpty());
+
+        world.update(0); // entity is added, modifications are buffered
+        world.update(0); // modifications are processed as a single change
+        assertTrue(e.has(pos));
+        assertTrue(e.has(vel));
+        assertFalse(e.has(frozen));
+        assertEquals(1, changes[0]);
+
+        spawner.setEnabled(false);
+        spawner.commands().add(e, frozen);
+        spawner.commands().destroy(e);
+        world.update(0);
+        assertTrue(e.isDestroyed());
+        assertFalse(e.has(frozen));
+    }
+
+    static class SnapWorld extends World {
+        public final Component.IScalar hp = new Component.IScalar(this);
+        public final Component.XY pos = new Component.XY(this);
+        public final Component.DenseFScalar heat = new Component.DenseFScalar(this);
+        public final Component.Generic<String> name = new Component.Generic<String>(
+            this, new Component.Codec<String>() {
+                public void write (DataOutputStream out, String value) throws IOException {
+                    out.writeUTF(value);
+                }
+                public String read (DataInputStream in) throws IOException {
+                    return in.readUTF();
+                }
+            });
+        public final System named = new FilteredSystem(this, 0, new Component[] { name },
+                                                       new Component[0]) {};
+    }
+
+    @Test public void testSnapshot () throws IOException {
+        SnapWorld world = new SnapWorld();
+        for (int ii = 0; ii < 1000; ii++) {
+            Entity e = world.create(ii % 10 != 0).add(world.hp, world.pos);
+            world.hp.set(e.id, ii);
+            world.pos.set(e.id, ii, -ii);
+            if (ii % 2 == 0) {
+                e.add(world.heat);
+                world.heat.set(e.id, ii/2f);
+            }
+            if (ii % 3 == 0) {
+                e.add(world.name);
+                world.name.set(e.id, "e" + ii);
+            }
+            if (ii % 7 == 0) e.destroy();
+        }
+        world.update(0);
+        world.entity(5).destroy(); // pending removal at snapshot time
+        byte[] snap = world.snapshot();
+
+        SnapWorld restored = new SnapWorld();
+        restored.create(true).add(restored.name); // will be wiped out by the restore
+        restored.restore(snap);
+        restored.update(0);
+        world.update(0);
+
+        assertEquals(world.named._active.size(), restored.named._active.size());
+        for (int id = 1; id <= 1000; id++) {
+            Entity we = world.entity(id), re = restored.entity(id);
+            assertEquals(we.isDestroyed(), re.isDestroyed());
+            if (we.isDestroyed()) continue;
+            assertEquals(we.isEnabled(), re.isEnabled());
+            assertEquals(world.hp.get(id), restored.hp.get(id));
+            assertEquals(world.pos.getX(id), restored.pos.getX(id), 0);
+            assertEquals(world.pos.getY(id), restored.pos.getY(id), 0);
+            assertEquals(we.has(world.heat), re.has(restored.heat));
+            if (we.has(world.heat)) assertEquals(world.heat.get(id), restored.heat.get(id), 0);
+            assertEquals(we.has(world.name), re.has(restored.name));
+            if (we.has(world.name)) assertEquals(world.name.get(id), restored.name.get(id));
+        }
+        // ids are recycled in the same order
+        assertEquals(world.create(true).id, restored.create(true).id);
+        assertEquals(world.create(true).id, restored.create(true).id);
+    }
+}
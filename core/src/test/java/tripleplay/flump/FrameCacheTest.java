@@ -0,0 +1,164 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.flump;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import pythagoras.f.Rectangle;
+
+import playn.core.Image;
+import playn.core.ImageLayer;
+import playn.java.JavaPlatform;
+import static playn.core.PlayN.graphics;
+
+import tripleplay.util.TexturePacker;
+
+public class FrameCacheTest
+{
+    static {
+        JavaPlatform.Config config = new JavaPlatform.Config();
+        config.headless = true;
+        JavaPlatform.register(config);
+    }
+
+    /** A cache that "renders" each frame as a 10x10 region of an atlas of the given size. */
+    static class TestCache extends FrameCache {
+        public int rendered;
+        public TestCache (int budget) { super(budget); }
+        @Override protected Flipbook render (Movie.Symbol symbol) {
+            rendered++;
+            Image atlas = graphics().createImage(16*symbol.frames, 16);
+            Image.Region[] frames = new Image.Region[symbol.frames];
+            float[] offsets = new float[symbol.frames*2];
+            for (int ii = 0; ii < frames.length; ii++) {
+                frames[ii] = atlas.subImage(ii*16, 0, 10, 10);
+                offsets[2*ii] = ii;
+                offsets[2*ii+1] = -ii;
+            }
+            return new Flipbook(symbol, frames, offsets, (int)(atlas.width() * atlas.height() * 4));
+        }
+    }
+
+    @Test public void testBounds () {
+        Movie.Symbol symbol = movie("movie", 4);
+        new Library(30, Arrays.asList(symbol), Arrays.asList(MovieTest.texture("t")));
+        Movie movie = symbol.createInstance();
+        Rectangle bounds = FrameCache.bounds(movie.layer());
+        // the texture is 8x8, scaled by 2 and shifted by its keyframe's pivot of (1, 2)
+        assertEquals(new Rectangle(10-2, 20-4, 16, 16), bounds);
+
+        // invisible layers are ignored
+        movie.layer().get(0).setVisible(false);
+        assertEquals(new Rectangle(), FrameCache.bounds(movie.layer()));
+    }
+
+    @Test public void testPlayback () {
+        Movie.Symbol symbol = movie("movie", 4);
+        new Library(30, Arrays.asList(symbol), Arrays.asList(MovieTest.texture("t")));
+        FrameCache.Flipbook book = new TestCache(Integer.MAX_VALUE).flipbook(symbol);
+        Movie movie = book.createInstance();
+        ImageLayer layer = (ImageLayer)movie.layer().get(0);
+        assertNull(movie.getNamedLayer("layer"));
+        movie.paint(1000/60f); // stay between frames to avoid rounding
+        for (int ii = 0; ii < 8; ii++) {
+            movie.paint(1000/30f);
+            int frame = (ii+1) % 4;
+            assertSame(book.frames[frame], layer.image());
+            assertEquals(frame, layer.tx(), 0);
+            assertEquals(-frame, layer.ty(), 0);
+        }
+    }
+
+    @Test public void testEvict () {
+        List<Movie.Symbol> symbols = Arrays.asList(movie("a", 1), movie("b", 2), movie("c", 1));
+        new Library(30, symbols, Arrays.asList(MovieTest.texture("t")));
+        int small = 16*16*4;
+        TestCache cache = new TestCache(3*small);
+
+        FrameCache.Flipbook a = cache.flipbook(symbols.get(0));
+        cache.flipbook(symbols.get(1));
+        assertEquals(3*small, cache.bytes());
+        assertSame(a, cache.flipbook(symbols.get(0)));
+        assertEquals(2, cache.rendered);
+
+        // b is the least recently used, so it's evicted to make room for c
+        cache.flipbook(symbols.get(2));
+        assertEquals(2, cache.size());
+        assertEquals(2*small, cache.bytes());
+        assertSame(a, cache.flipbook(symbols.get(0)));
+        cache.flipbook(symbols.get(1));
+        assertEquals(4, cache.rendered);
+
+        // the most recently used flipbook is kept, even if it's over budget
+        TestCache tiny = new TestCache(1);
+        tiny.flipbook(symbols.get(0));
+        tiny.flipbook(symbols.get(1));
+        assertEquals(1, tiny.size());
+    }
+
+    @Test public void testRender () {
+        // a movie which nests a movie that moves across its frames
+        Movie.Symbol inner = new Movie.Symbol(30, "inner", Arrays.asList(
+            new LayerData("layer", Arrays.asList(
+                MovieTest.keyframe(0, 8, 0, 0, 1, 0, 1, true, 0, "t"),
+                MovieTest.keyframe(8, 1, 80, 0, 1, 0, 1, false, 0, "t")))));
+        final Movie.Symbol outer = new Movie.Symbol(30, "outer", Arrays.asList(
+            new LayerData("nested", Arrays.asList(
+                MovieTest.keyframe(0, 4, 0, 0, 1, 0, 1, false, 0, "inner")))));
+        new Library(30, Arrays.asList(inner, outer), Arrays.asList(MovieTest.texture("t")));
+
+        // record the poses in which frames are drawn, as drawing needs a GL context
+        final List<Float> positions = new ArrayList<Float>(), nested = new ArrayList<Float>();
+        final List<Image.Region> drawn = new ArrayList<Image.Region>();
+        FrameCache cache = new FrameCache(Integer.MAX_VALUE) {
+            @Override protected Map<String,Image.Region> pack (TexturePacker packer) {
+                Image atlas = graphics().createImage(16*outer.frames, 16);
+                Map<String,Image.Region> packed = new HashMap<String,Image.Region>();
+                for (int ii = 0; ii < outer.frames; ii++) {
+                    packed.put(String.valueOf(ii), atlas.subImage(ii*16, 0, 10, 10));
+                }
+                return packed;
+            }
+            @Override protected void drawFrame (Movie movie, Image.Region region, float x,
+                                                float y) {
+                positions.add(movie.position());
+                nested.add(((Movie)movie.getInstances("nested").get(0)).position());
+                drawn.add(region);
+            }
+        };
+        FrameCache.Flipbook book = cache.flipbook(outer);
+
+        // the frames are drawn in order, posed as they're played: at the middle of each frame,
+        // with the nested movie advanced alongside
+        float frameTime = 1000/30f;
+        Movie played = outer.createInstance();
+        played.paint(frameTime/2);
+        for (int ff = 0; ff < outer.frames; ff++) {
+            if (ff > 0) played.paint(frameTime);
+            assertSame(book.frames[ff], drawn.get(ff));
+            assertEquals(frameTime * (ff + 0.5f), positions.get(ff), 1e-3f);
+            assertEquals(frameTime * (ff + 0.5f), nested.get(ff), 1e-3f);
+            Rectangle bounds = FrameCache.bounds(played.layer());
+            // (the offsets are the bounds rounded down to whole pixels)
+            assertEquals(bounds.x, book.offsets[2*ff], 1);
+            assertEquals(bounds.y, book.offsets[2*ff+1], 1);
+        }
+        // the nested movie's motion shows in the offsets
+        assertTrue(book.offsets[2*(outer.frames-1)] > book.offsets[0]);
+    }
+
+    protected static Movie.Symbol movie (String name, int frames) {
+        return new Movie.Symbol(30, name, Arrays.asList(new LayerData("layer", Arrays.asList(
+            MovieTest.keyframe(0, frames, 10, 20, 2, 0, 1, false, 0, "t")))));
+    }
+}
@@ -0,0 +1,92 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.flump;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import playn.java.JavaPlatform;
+import static playn.core.PlayN.json;
+
+public class LibraryDataTest
+{
+    static {
+        JavaPlatform.Config config = new JavaPlatform.Config();
+        config.headless = true;
+        JavaPlatform.register(config);
+    }
+
+    public static final String LIBRARY = "{" +
+        "\"frameRate\": 30, \"movies\": [" +
+        "  {\"id\": \"walk\", \"layers\": [" +
+        "    {\"name\": \"body\", \"keyframes\": [" +
+        "      {\"duration\": 5, \"ref\": \"body\", \"loc\": [1.5, -2], \"label\": \"start\"}," +
+        "      {\"duration\": 5, \"ref\": \"body\", \"scale\": [2, 2], \"skew\": [0.1, -0.1]," +
+        "       \"pivot\": [4, 8], \"alpha\": 0.5, \"ease\": -1, \"tweened\": false}," +
+        "      {\"duration\": 2, \"visible\": false}]}," +
+        "    {\"name\": \"h\\u00e9ad\", \"keyframes\": [{\"duration\": 12, \"ref\": \"head\"}]}]}," +
+        "  {\"id\": \"idle\", \"layers\": [" +
+        "    {\"name\": \"body\", \"keyframes\": [{\"duration\": 1, \"ref\": \"walk\"}]}]}]," +
+        "\"textureGroups\": [{\"atlases\": [" +
+        "  {\"file\": \"atlas0.png\", \"textures\": [" +
+        "    {\"symbol\": \"body\", \"origin\": [3, 4], \"rect\": [0, 0, 16, 32]}]}," +
+        "  {\"file\": \"atlas1.png\", \"textures\": [" +
+        "    {\"symbol\": \"head\", \"rect\": [16, 0, 8, 8]}]}]}]}";
+
+    @Test public void testRoundTrip () throws IOException {
+        LibraryData lib = new LibraryData(json().parse(LIBRARY));
+        byte[] v1 = writeV1(lib), v2 = writeV2(lib);
+
+        // both formats read back to the same library
+        assertArrayEquals(v1, writeV1(LibraryData.read(ByteBuffer.wrap(v1))));
+        LibraryData read = LibraryData.read(ByteBuffer.wrap(v2));
+        assertArrayEquals(v1, writeV1(read));
+        assertEquals("héad", read.movies.get(0).layers.get(1).name);
+        assertEquals(Arrays.asList("body", "head"),
+                     Arrays.asList(read.atlases.get(0).textures.get(0).symbol,
+                                   read.atlases.get(1).textures.get(0).symbol));
+
+        // including from a direct buffer, read from its current position
+        ByteBuffer direct = ByteBuffer.allocateDirect(v2.length + 3);
+        direct.put(new byte[3]).put(v2).position(3);
+        assertArrayEquals(v1, writeV1(LibraryData.read(direct)));
+        assertEquals(0, direct.remaining());
+    }
+
+    @Test public void testCorrupt () throws IOException {
+        byte[] v2 = writeV2(new LibraryData(json().parse(LIBRARY)));
+        try {
+            LibraryData.read(ByteBuffer.wrap(Arrays.copyOf(v2, v2.length-1)));
+            fail();
+        } catch (IOException e) {} // expected
+
+        v2[7] = 99; // the version
+        try {
+            LibraryData.read(ByteBuffer.wrap(v2));
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("version 99"));
+        }
+    }
+
+    protected static byte[] writeV1 (LibraryData lib) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        lib.write(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
+    protected static byte[] writeV2 (LibraryData lib) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        lib.writeV2(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+}
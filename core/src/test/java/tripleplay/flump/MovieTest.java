@@ -0,0 +1,198 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.flump;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import pythagoras.f.AffineTransform;
+import pythagoras.f.Point;
+
+import playn.core.Layer;
+import playn.java.JavaPlatform;
+import static playn.core.PlayN.graphics;
+
+public class MovieTest
+{
+    static {
+        JavaPlatform.Config config = new JavaPlatform.Config();
+        config.headless = true;
+        JavaPlatform.register(config);
+    }
+
+    @Test public void testBaked () {
+        List<LayerData> layers = Arrays.asList(
+            // a layer which tweens, with easing, between three keyframes
+            new LayerData("tweened", Arrays.asList(
+                keyframe(0, 10, 0, 0, 1, 0, 1, true, 0.5f, "a"),
+                keyframe(10, 10, 50, 20, 2, 0.3f, 0.5f, true, -1, "a"),
+                keyframe(20, 5, 60, 40, 1.5f, 0.2f, 1, false, 0, "a"))),
+            // a layer which switches symbols, and is hidden for some frames
+            new LayerData("switched", Arrays.asList(
+                keyframe(0, 5, 10, 10, 1, 0, 1, true, 0, "a"),
+                keyframe(5, 10, 30, 10, 1, 0, 0.5f, true, 0, "b"),
+                new KeyframeData(15, 5, null, new Point(20, 0), new Point(1, 1), new Point(0, 0),
+                                 new Point(0, 0), false, 1, false, 0, "b"),
+                keyframe(20, 5, 0, 0, 1, 0.1f, 1, true, 0, "a"))),
+            // a layer which is empty for some frames
+            new LayerData("empty", Arrays.asList(
+                keyframe(0, 8, 0, 0, 1, 0, 1, true, 0, "a"),
+                keyframe(8, 8, 0, 0, 1, 0, 1, false, 0, null),
+                keyframe(16, 9, 10, 10, 2, 0, 1, false, 0, "a"))),
+            // a layer which tweens toward a keyframe with a different pivot
+            new LayerData("pivoted", Arrays.asList(
+                keyframe(0, 12, 0, 0, 1, 0, 1, true, 0, "a"),
+                new KeyframeData(12, 13, null, new Point(40, 0), new Point(1, 1), new Point(0, 0),
+                                 new Point(5, 6), true, 1, false, 0, "a"))));
+        Movie.Symbol exact = new Movie.Symbol(30, "exact", layers);
+        Movie.Symbol baked = new Movie.Symbol(30, "baked", layers);
+        baked.bake();
+        Texture.Symbol a = texture("a"), b = texture("b");
+        new Library(30, Arrays.asList(exact, baked), Arrays.asList(a, b));
+
+        Movie emovie = exact.createInstance(), bmovie = baked.createInstance();
+        float[] bakedData = baked.baked();
+        assertEquals(25 * 4 * Movie.FIELDS, bakedData.length);
+        assertNull(exact.baked());
+
+        // step through the movies in fractions of a frame, and check that the baked movie matches
+        // the exact one: exactly on frames, and closely between frames
+        for (int ii = 0; ii < 24*4; ii++) {
+            float dt = 1000/30f/4;
+            emovie.paint(dt);
+            bmovie.paint(dt);
+            boolean onFrame = (ii % 4 == 3);
+            for (String name : new String[] { "tweened", "switched", "empty", "pivoted" }) {
+                Layer el = emovie.getNamedLayer(name), bl = bmovie.getNamedLayer(name);
+                String where = name + "@" + emovie.position();
+                assertEquals(where, el.visible(), bl.visible());
+                if (!el.visible()) continue;
+                float tol = onFrame ? 1e-4f : 0.05f;
+                assertEquals(where, el.alpha(), bl.alpha(), tol);
+                assertEquals(where, el.originX(), bl.originX(), 1e-4f);
+                assertEquals(where, el.originY(), bl.originY(), 1e-4f);
+                AffineTransform et = (AffineTransform)el.transform();
+                AffineTransform bt = (AffineTransform)bl.transform();
+                assertEquals(where, et.m00, bt.m00, tol);
+                assertEquals(where, et.m01, bt.m01, tol);
+                assertEquals(where, et.m10, bt.m10, tol);
+                assertEquals(where, et.m11, bt.m11, tol);
+                assertEquals(where, et.tx, bt.tx, onFrame ? 1e-3f : 1);
+                assertEquals(where, et.ty, bt.ty, onFrame ? 1e-3f : 1);
+            }
+            assertSame(emovie.getInstances("switched").get(0).layer().parent() != null,
+                       bmovie.getInstances("switched").get(0).layer().parent() != null);
+        }
+
+        // the baked data is shared by all instances
+        baked.createInstance();
+        assertSame(bakedData, baked.baked());
+    }
+
+    @Test public void testSharedInstances () {
+        // a layer that switches between two nested movies on every keyframe
+        List<KeyframeData> keyframes = new ArrayList<KeyframeData>();
+        for (int ii = 0; ii < 10; ii++) {
+            keyframes.add(keyframe(ii*2, 2, 0, 0, 1, 0, 1, false, 0, (ii % 2 == 0) ? "a" : "b"));
+        }
+        final List<LayerData> nested = Arrays.asList(
+            new LayerData("texture", Arrays.asList(keyframe(0, 5, 0, 0, 1, 0, 1, false, 0, "t"))));
+        final int[] created = new int[1];
+        Movie.Symbol a = new Movie.Symbol(30, "a", nested) {
+            @Override public Movie createInstance () {
+                created[0]++;
+                return super.createInstance();
+            }
+        };
+        Movie.Symbol b = new Movie.Symbol(30, "b", nested);
+        Movie.Symbol switcher = new Movie.Symbol(
+            30, "switcher", Arrays.asList(new LayerData("switched", keyframes)));
+        new Library(30, Arrays.asList(a, b, switcher), Arrays.asList(texture("t")));
+
+        // nested instances are created on first use
+        Movie movie = switcher.createInstance();
+        assertEquals(1, created[0]);
+        Layer switched = movie.getNamedLayer("switched");
+        Layer first = ((playn.core.GroupLayer)switched).get(0);
+
+        // and are shared by keyframes with the same symbol, restarting when switched back in
+        for (int ii = 0; ii < 17; ii++) movie.paint(1000/30f);
+        movie.paint(1000/60f); // a was switched back in on frame 16
+        assertEquals(1, created[0]);
+        List<Instance> instances = movie.getInstances("switched");
+        assertEquals(2, instances.size());
+        assertSame(first, instances.get(0).layer());
+        assertEquals(1000/30f * 2.5f, ((Movie)instances.get(0)).position(), 0.1f);
+    }
+
+    @Test public void testRecycle () {
+        List<LayerData> layers = Arrays.asList(
+            new LayerData("texture", Arrays.asList(keyframe(0, 5, 0, 0, 1, 0, 1, false, 0, "t"))));
+        Movie.Symbol symbol = new Movie.Symbol(30, "movie", layers);
+        Library lib = new Library(30, Arrays.asList(symbol), Arrays.asList(texture("t")));
+        lib.setMaxPooled(1);
+
+        Movie m1 = lib.createMovie("movie"), m2 = lib.createMovie("movie");
+        graphics().rootLayer().add(m1.layer());
+        m1.layer().setTranslation(10, 10).setAlpha(0.5f);
+        m1.setSpeed(2);
+        m1.paint(50);
+        lib.recycle(m1);
+        assertNull(m1.layer().parent());
+        lib.recycle(m2); // the pool is full, so this is destroyed
+        assertTrue(m2.layer().destroyed());
+
+        Movie m3 = lib.createMovie("movie");
+        assertSame(m1, m3);
+        assertEquals(0, m3.position(), 0);
+        assertEquals(1, m3.speed(), 0);
+        assertEquals(0, m3.layer().tx(), 0);
+        assertEquals(1, m3.layer().alpha(), 0);
+        assertNotSame(m3, lib.createMovie("movie"));
+    }
+
+    @Test public void testRecycleNested () {
+        List<LayerData> leaf = Arrays.asList(
+            new LayerData("texture", Arrays.asList(keyframe(0, 20, 0, 0, 1, 0, 1, false, 0, "t"))));
+        Movie.Symbol a = new Movie.Symbol(30, "a", leaf), b = new Movie.Symbol(30, "b", leaf);
+        // a layer with a single nested movie, and one which switches between two
+        Movie.Symbol outer = new Movie.Symbol(30, "outer", Arrays.asList(
+            new LayerData("single", Arrays.asList(keyframe(0, 10, 0, 0, 1, 0, 1, false, 0, "a"))),
+            new LayerData("switched", Arrays.asList(
+                keyframe(0, 5, 0, 0, 1, 0, 1, false, 0, "a"),
+                keyframe(5, 5, 0, 0, 1, 0, 1, false, 0, "b")))));
+        Library lib = new Library(30, Arrays.asList(a, b, outer), Arrays.asList(texture("t")));
+
+        Movie movie = lib.createMovie("outer");
+        for (int ii = 0; ii < 7; ii++) movie.paint(1000/30f);
+        List<Instance> nested = new ArrayList<Instance>();
+        nested.addAll(movie.getInstances("single"));
+        nested.addAll(movie.getInstances("switched"));
+        for (Instance instance : nested) assertTrue(((Movie)instance).position() > 0);
+
+        // recycling rewinds the nested movies too, including those not currently shown
+        lib.recycle(movie);
+        assertSame(movie, lib.createMovie("outer"));
+        for (Instance instance : nested) assertEquals(0, ((Movie)instance).position(), 0);
+    }
+
+    protected static KeyframeData keyframe (int index, int duration, float x, float y, float scale,
+                                            float skew, float alpha, boolean tweened, float ease,
+                                            String ref) {
+        return new KeyframeData(index, duration, null, new Point(x, y), new Point(scale, scale),
+                                new Point(skew, -skew), new Point(1, 2), true, alpha, tweened,
+                                ease, ref);
+    }
+
+    protected static Texture.Symbol texture (String name) {
+        return new Texture.Symbol(name, new Point(0, 0),
+                                  graphics().createImage(8, 8).subImage(0, 0, 8, 8));
+    }
+}
@@ -0,0 +1,156 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.flump;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import pythagoras.f.IPoint;
+import pythagoras.f.Point;
+
+import playn.java.JavaPlatform;
+import static playn.core.PlayN.graphics;
+
+import react.Slot;
+
+public class StreamingLibraryTest
+{
+    static {
+        JavaPlatform.Config config = new JavaPlatform.Config();
+        config.headless = true;
+        JavaPlatform.register(config);
+    }
+
+    /** A library of three textures, each in its own atlas, and two movies. Atlases are loaded
+     * when the test says so. */
+    static class TestLibrary extends StreamingLibrary {
+        public final List<Atlas> loading = new ArrayList<Atlas>();
+        public final List<String> decoded;
+        public final List<Symbol> ready = new ArrayList<Symbol>();
+
+        public TestLibrary () {
+            this(new ArrayList<String>());
+        }
+
+        protected TestLibrary (List<String> decoded) {
+            super(30, null, "lib", Arrays.asList("atlas0.png", "atlas1.png", "atlas2.png"),
+                  source(decoded));
+            this.decoded = decoded;
+            symbolReady.connect(new Slot<Symbol>() {
+                public void onEmit (Symbol symbol) { ready.add(symbol); }
+            });
+        }
+
+        public void finishLoad (int atlas) {
+            Atlas a = _atlases.get(atlas);
+            assertTrue(loading.remove(a));
+            loaded(a, graphics().createImage(16, 16));
+        }
+
+        @Override protected void load (Atlas atlas) {
+            if (!loading.contains(atlas)) loading.add(atlas);
+        }
+
+        protected static Source source (final List<String> decoded) {
+            return new Source() {
+                public boolean contains (String name) {
+                    return TEXTURES.contains(name) || name.equals("m") || name.equals("n");
+                }
+                public Movie.Symbol decodeMovie (String name) {
+                    if (TEXTURES.contains(name)) return null;
+                    decoded.add(name);
+                    List<KeyframeData> kfs = new ArrayList<KeyframeData>();
+                    for (String ref : name.equals("m") ? new String[] { "a", "b" } :
+                                                         new String[] { "m", "c" }) {
+                        kfs.add(new KeyframeData(kfs.size(), 1, null, new Point(), new Point(1, 1),
+                                                 new Point(), new Point(), true, 1, false, 0, ref));
+                    }
+                    return new Movie.Symbol(30, name, Arrays.asList(new LayerData("layer", kfs)));
+                }
+                public int textureAtlas (String name) {
+                    return TEXTURES.indexOf(name);
+                }
+                public IPoint decodeTexture (String name, float[] rect) {
+                    rect[2] = rect[3] = 8;
+                    return new Point();
+                }
+            };
+        }
+    }
+
+    @Test public void testRequest () {
+        TestLibrary lib = new TestLibrary();
+        assertFalse(lib.isReady("m"));
+        assertFalse(lib.isReady("z"));
+        assertNull(lib.symbol("m"));
+        assertEquals(Arrays.asList("m"), lib.decoded);
+
+        lib.request("m");
+        assertEquals(2, lib.loading.size());
+        lib.finishLoad(0);
+        assertTrue(lib.ready.isEmpty());
+        assertTrue(lib.isReady("a"));
+        lib.finishLoad(1);
+        assertEquals(Arrays.asList(lib.symbol("m")), lib.ready);
+        assertNotNull(lib.createMovie("m"));
+        assertEquals(2, lib.loadedAtlases());
+        assertEquals(2*16*16*4, lib.atlasBytes());
+
+        // requesting a symbol whose atlas is loaded emits it immediately
+        lib.request("a");
+        assertEquals(lib.symbol("a"), lib.ready.get(1));
+
+        // movies are only decoded once
+        lib.request("n");
+        assertEquals(Arrays.asList("m", "n"), lib.decoded);
+        assertEquals(1, lib.loading.size());
+        try {
+            lib.createMovie("n");
+            fail();
+        } catch (IllegalArgumentException e) {} // expected
+        lib.finishLoad(2);
+        assertEquals(lib.symbol("n"), lib.ready.get(2));
+    }
+
+    @Test public void testEvict () {
+        TestLibrary lib = new TestLibrary();
+        lib.request("m");
+        lib.request("c");
+        lib.finishLoad(0);
+        lib.finishLoad(1);
+        lib.finishLoad(2);
+        Texture.Symbol a = (Texture.Symbol)lib.symbol("a");
+        Texture.Symbol b = (Texture.Symbol)lib.symbol("b");
+
+        // atlases are only evicted once they're unused
+        lib.setAtlasBudget(16*16*4);
+        assertEquals(3, lib.loadedAtlases());
+        lib.release("c");
+        assertEquals(2, lib.loadedAtlases());
+        assertFalse(lib.isReady("c"));
+
+        // the least recently released atlas is evicted first
+        lib.setAtlasBudget(2*16*16*4);
+        lib.release("m");
+        assertEquals(2, lib.loadedAtlases());
+        lib.setAtlasBudget(16*16*4);
+        assertNull(a.region);
+        assertNotNull(b.region);
+
+        // requesting a symbol again reloads its atlases, and refreshes its textures
+        lib.request("m");
+        assertEquals(1, lib.loading.size());
+        lib.finishLoad(0);
+        assertNotNull(a.region);
+        assertSame(a, lib.symbol("a"));
+    }
+
+    protected static final List<String> TEXTURES = Arrays.asList("a", "b", "c");
+}
@@ -8,8 +8,13 @@ package tripleplay.particle;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.junit.*;
 import static org.junit.Assert.*;
@@ -55,4 +60,102 @@ public class ParticleBufferTest
         }), 0, 0);
         assertEquals(100, applied[0]);
     }
+
+    @Test
+    public void testReuseSlots () {
+        int maxParts = 100;
+        ParticleBuffer buffer = new ParticleBuffer(maxParts);
+        List<Initializer> initters = Collections.singletonList(new Initializer() {
+            @Override public void init (int index, float[] data, int start) {
+                data[start + ParticleBuffer.LIFESPAN] = 1;
+            }
+        });
+        List<Effector> none = new ArrayList<Effector>();
+
+        // fill the buffer, then additional adds should be ignored
+        buffer.add(60, 0, initters);
+        buffer.add(60, 0.5f, initters);
+        assertTrue(buffer.isFull());
+        assertEquals(maxParts, buffer.liveCount());
+        buffer.add(10, 0.5f, initters);
+        assertEquals(maxParts, buffer.liveCount());
+
+        // expire the first batch and make sure their slots (which precede the cursor) are reused
+        assertEquals(40, buffer.apply(none, 1.25f, 0));
+        assertEquals(40, buffer.liveCount());
+        buffer.add(50, 1.25f, initters);
+        assertEquals(maxParts-10, buffer.liveCount());
+        assertEquals(maxParts-10, buffer.apply(none, 1.25f, 0));
+        int alive = 0;
+        for (int ii = 0; ii < maxParts; ii++) {
+            if ((buffer.alive[ii/32] & (1 << ii % 32)) != 0) alive++;
+        }
+        assertEquals(maxParts-10, alive);
+
+        // explicitly killing particles should free their slots
+        buffer.setAlive(0, false);
+        buffer.setAlive(0, false);
+        assertEquals(maxParts-11, buffer.liveCount());
+    }
+
+    @Test
+    public void testParallelApply () {
+        int maxParts = 32*ParticleBuffer.MIN_CHUNK_WORDS*4;
+        ParticleBuffer serial = new ParticleBuffer(maxParts);
+        ParticleBuffer parallel = new ParticleBuffer(maxParts);
+        for (ParticleBuffer buffer : new ParticleBuffer[] { serial, parallel }) {
+            final Random rando = new Random(42);
+            buffer.add(maxParts, 0, Collections.singletonList(new Initializer() {
+                @Override public void init (int index, float[] data, int start) {
+                    data[start + ParticleBuffer.LIFESPAN] = rando.nextFloat();
+                    data[start + ParticleBuffer.VEL_X] = index;
+                }
+            }));
+        }
+        List<Effector> effectors = Collections.<Effector>singletonList(new Effector() {
+            @Override public void apply (int index, float[] data, int start, float now, float dt) {
+                data[start + ParticleBuffer.TX] += data[start + ParticleBuffer.VEL_X] * dt;
+            }
+        });
+
+        ExecutorService exec = Executors.newFixedThreadPool(3);
+        try {
+            ParticleBuffer.Runner runner = new ExecutorRunner(exec, 4);
+            for (float now = 0.2f; now < 0.5f; now += 0.2f) {
+                checkApply(serial, parallel, effectors, now, runner);
+            }
+        } finally {
+            exec.shutdown();
+        }
+
+        // an executor that rejects some chunks (this one accepts every other) leaves them to be
+        // run by the calling thread, and all of the particles are still updated
+        final ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            ParticleBuffer.Runner runner = new ExecutorRunner(new Executor() {
+                public void execute (Runnable task) {
+                    if (++_submitted % 2 == 0) throw new RejectedExecutionException();
+                    pool.execute(task);
+                }
+                protected int _submitted;
+            }, 4);
+            checkApply(serial, parallel, effectors, 0.6f, runner);
+        } finally {
+            pool.shutdown();
+        }
+
+        // as does an executor that's been shut down
+        checkApply(serial, parallel, effectors, 0.8f, new ExecutorRunner(exec, 4));
+    }
+
+    protected void checkApply (ParticleBuffer serial, ParticleBuffer parallel,
+                               List<Effector> effectors, float now, ParticleBuffer.Runner runner) {
+        int living = serial.apply(effectors, now, 1);
+        assertEquals(living, parallel.apply(effectors, now, 1, runner));
+        assertEquals(serial.liveCount(), parallel.liveCount());
+        assertEquals(living, parallel.liveCount());
+        assertArrayEquals(serial.alive, parallel.alive);
+        assertArrayEquals(serial.data, parallel.data, 0);
+        assertTrue(living > 0);
+    }
 }
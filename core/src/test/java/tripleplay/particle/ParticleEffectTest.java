@@ -0,0 +1,159 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.particle;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import playn.core.CanvasImage;
+import playn.java.JavaPlatform;
+import static playn.core.PlayN.graphics;
+
+import tripleplay.util.Randoms;
+
+public class ParticleEffectTest
+{
+    static {
+        JavaPlatform.Config config = new JavaPlatform.Config();
+        config.headless = true;
+        JavaPlatform.register(config);
+    }
+
+    static final String JSON = "{ \"effects\": [" +
+        "{ \"name\": \"fountain\", \"maxParticles\": 100," +
+        "  \"generator\": { \"type\": \"constant\", \"rate\": 10 }," +
+        "  \"initializers\": [" +
+        "    { \"type\": \"lifespan\", \"min\": 4, \"max\": 5 }," +
+        "    { \"type\": \"color\", \"argb\": \"FF99CCFF\" }," +
+        "    { \"type\": \"layer\" }," +
+        "    { \"type\": \"velocity\", \"shape\": \"square\"," +
+        "      \"minX\": -20, \"maxX\": 20, \"minY\": -100, \"maxY\": 0 } ]," +
+        "  \"effectors\": [" +
+        "    { \"type\": \"gravity\", \"accel\": 30 }, { \"type\": \"move\" }," +
+        "    { \"type\": \"alpha\", \"interp\": \"easeOut\" } ] }," +
+        "{ \"name\": \"burst\", \"maxParticles\": 50," +
+        "  \"generator\": { \"type\": \"impulse\", \"count\": 50 }," +
+        "  \"initializers\": [ { \"type\": \"lifespan\", \"value\": 1 }, { \"type\": \"identity\" }," +
+        "    { \"type\": \"velocity\", \"shape\": \"circle\", \"min\": 5, \"max\": 10 } ]," +
+        "  \"effectors\": [ { \"type\": \"move\" }, { \"type\": \"drag\", \"drag\": 0.9 } ] } ] }";
+
+    @Test public void testCompile () throws Exception {
+        ParticleEffects effects = new ParticleEffects(Randoms.with(new Random(42)));
+        List<ParticleEffect> loaded = effects.parseJson(JSON);
+        assertEquals(2, loaded.size());
+        ParticleEffect fountain = effects.get("fountain");
+        assertEquals(100, fountain.maxParticles);
+        // the three effectors are fused into one
+        assertEquals(1, fountain._effectors.size());
+
+        // the binary form round trips the compiled tables
+        ParticleEffects read = new ParticleEffects(Randoms.with(new Random(42)));
+        read.parseBinary(effects.toBinary());
+        for (ParticleEffect effect : loaded) {
+            ParticleEffect reffect = read.get(effect.name);
+            assertEquals(effect.maxParticles, reffect.maxParticles);
+            assertEquals(effect._genType, reffect._genType);
+            assertEquals(effect._genParam, reffect._genParam, 0);
+            assertArrayEquals(effect._initOps, reffect._initOps);
+            assertArrayEquals(effect._initParams, reffect._initParams, 0);
+            assertArrayEquals(effect._effectOps, reffect._effectOps);
+            assertArrayEquals(effect._effectParams, reffect._effectParams, 0);
+        }
+    }
+
+    @Test public void testConfigure () {
+        ParticleEffects effects = new ParticleEffects(Randoms.with(new Random(42)));
+        effects.parseJson(JSON);
+        Particles parts = new Particles();
+        CanvasImage image = graphics().createImage(4, 4);
+        ParticleEffect fountain = effects.get("fountain");
+        Emitter e1 = fountain.createEmitter(parts, image), e2 = fountain.createEmitter(parts, image);
+        // the initializer and effectors are shared, but not the (stateful) generator
+        assertSame(e1.initters.get(0), e2.initters.get(0));
+        assertSame(e1.effectors.get(0), e2.effectors.get(0));
+        assertNotSame(e1.generator, e2.generator);
+
+        e1.layer.setTranslation(10, 20);
+        e1.addParticles(10);
+        ParticleBuffer buf = e1._buffer;
+        for (int pp = 0; pp < 10; pp++) {
+            int start = pp * ParticleBuffer.NUM_FIELDS;
+            float life = buf.data[start + ParticleBuffer.LIFESPAN];
+            assertTrue(life >= 4 && life <= 5);
+            assertEquals(playn.core.Color.encode(1, 0x99/255f),
+                         buf.data[start + ParticleBuffer.ALPHA_RED], 0);
+            assertEquals(10, buf.data[start + ParticleBuffer.TX], 0);
+            assertEquals(20, buf.data[start + ParticleBuffer.TY], 0);
+            float vx = buf.data[start + ParticleBuffer.VEL_X];
+            assertTrue(vx >= -20 && vx <= 20);
+        }
+    }
+
+    @Test public void testManyOps () throws Exception {
+        // more ops than fit in a byte round trip intact
+        StringBuilder buf = new StringBuilder("{ \"name\": \"many\", \"maxParticles\": 10," +
+                                              "  \"effectors\": [ { \"type\": \"move\" }");
+        for (int ii = 0; ii < 299; ii++) buf.append(", { \"type\": \"gravity\" }");
+        buf.append("] }");
+        ParticleEffects effects = new ParticleEffects(Randoms.with(new Random(42)));
+        effects.parseJson(buf.toString());
+        ParticleEffects read = new ParticleEffects(Randoms.with(new Random(42)));
+        read.parseBinary(effects.toBinary());
+        assertEquals(300, read.get("many")._effectOps.length);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testMissingMaxParticles () {
+        new ParticleEffects(Randoms.with(new Random())).parseJson("{ \"name\": \"bad\" }");
+    }
+
+    @Test public void testCorruptGenerator () throws Exception {
+        ParticleEffects effects = new ParticleEffects(Randoms.with(new Random(42)));
+        effects.parseJson("{ \"name\": \"x\", \"maxParticles\": 10 }");
+        byte[] data = effects.toBinary();
+        // the generator type follows the version, count, name and maxParticles
+        data[2 + 4 + 3 + 4] = 99;
+        try {
+            new ParticleEffects(Randoms.with(new Random(42))).parseBinary(data);
+            fail("Corrupt generator type was accepted");
+        } catch (IOException ioe) {
+            assertTrue(ioe.getMessage().contains("generator"));
+        }
+    }
+
+    @Test public void testCorruptInterpolator () throws Exception {
+        ParticleEffects effects = new ParticleEffects(Randoms.with(new Random(42)));
+        effects.parseJson("{ \"name\": \"x\", \"maxParticles\": 10," +
+                          "  \"effectors\": [ { \"type\": \"alpha\" } ] }");
+        byte[] data = effects.toBinary();
+        // the alpha effector's parameters (interpolator, start, end) end the data
+        ByteBuffer.wrap(data).putFloat(data.length - 12, 99);
+        try {
+            new ParticleEffects(Randoms.with(new Random(42))).parseBinary(data);
+            fail("Corrupt interpolator was accepted");
+        } catch (IOException ioe) {
+            assertTrue(ioe.getMessage().contains("interpolator"));
+        }
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testMissingColor () {
+        new ParticleEffects(Randoms.with(new Random())).parseJson(
+            "{ \"name\": \"bad\", \"maxParticles\": 10," +
+            "  \"initializers\": [ { \"type\": \"color\" } ] }");
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testUnknownType () {
+        new ParticleEffects(Randoms.with(new Random())).parseJson(
+            "{ \"name\": \"bad\", \"maxParticles\": 1, \"initializers\": [{ \"type\": \"bogus\" }] }");
+    }
+}
@@ -0,0 +1,155 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.particle;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import react.UnitSlot;
+
+import playn.core.CanvasImage;
+import playn.core.util.Clock;
+import playn.java.JavaPlatform;
+import static playn.core.PlayN.graphics;
+
+import tripleplay.particle.init.Lifespan;
+import tripleplay.particle.init.Transform;
+import tripleplay.particle.init.Velocity;
+import tripleplay.util.Randoms;
+
+public class ParticlesTest
+{
+    static {
+        JavaPlatform.Config config = new JavaPlatform.Config();
+        config.headless = true;
+        JavaPlatform.register(config);
+    }
+
+    @Test public void testHiddenEmitters () {
+        Particles parts = new Particles();
+        parts.lod.hiddenInterval = 0;
+        CanvasImage image = graphics().createImage(4, 4);
+        Emitter emitter = parts.createEmitter(100, image);
+        emitter.generator = Generator.constant(10);
+        emitter.initters.add(Lifespan.constant(100));
+        emitter.initters.add(Transform.layer(emitter.layer));
+
+        // an emitter in view is updated every frame
+        Clock.Source clock = new Clock.Source(0);
+        tick(parts, clock, 10, 100);
+        assertTrue(emitter.isInView());
+        assertEquals(10, emitter._buffer.liveCount());
+
+        // once it (and its particles) are moved out of view, it is frozen
+        emitter.layer.setTranslation(-10000, 0);
+        for (int ii = 0; ii < emitter._buffer.data.length; ii += ParticleBuffer.NUM_FIELDS) {
+            emitter._buffer.data[ii + ParticleBuffer.TX] -= 10000;
+        }
+        tick(parts, clock, 1, 100); // our bounds are only updated by an update
+        int live = emitter._buffer.liveCount();
+        tick(parts, clock, 10, 100);
+        assertFalse(emitter.isInView());
+        assertEquals(live, emitter._buffer.liveCount());
+
+        // once it's back in view, it catches up on the time it missed, in steps, so the particles
+        // it missed are born throughout that time rather than all at once
+        float frozeAt = parts.now();
+        emitter.layer.setTranslation(0, 0);
+        tick(parts, clock, 1, 100);
+        assertTrue(emitter.isInView());
+        assertEquals(live + 11, emitter._buffer.liveCount(), 1);
+        Set<Float> births = new HashSet<Float>();
+        for (int ii = 0; ii < emitter._buffer.data.length; ii += ParticleBuffer.NUM_FIELDS) {
+            float birth = emitter._buffer.data[ii + ParticleBuffer.BIRTH];
+            if (birth > frozeAt - 1) births.add(birth);
+        }
+        assertTrue(births.size() > 5);
+
+        // a spawn scale reduces the particles generated
+        parts.lod = new Particles.LOD() {
+            @Override public float spawnScale (Emitter emitter, float distance) {
+                return 0.5f;
+            }
+        };
+        live = emitter._buffer.liveCount();
+        tick(parts, clock, 20, 100);
+        assertEquals(live + 10, emitter._buffer.liveCount());
+    }
+
+    @Test public void testPrewarm () {
+        Particles parts = new Particles();
+        Clock.Source clock = new Clock.Source(0);
+        tick(parts, clock, 10, 100);
+
+        // a prewarmed emitter starts out in its steady state
+        Emitter e1 = createSmoke(parts, 42);
+        e1.prewarm(5000);
+        assertEquals(100, e1._buffer.liveCount());
+        // the oldest particle was born (nearly) five seconds ago, and has moved accordingly
+        float oldest = parts.now();
+        for (int ii = 0; ii < 100; ii++) {
+            oldest = Math.min(oldest, e1._buffer.data[ii*ParticleBuffer.NUM_FIELDS]);
+        }
+        assertEquals(parts.now() - 5, oldest, 0.1f);
+
+        // an emitter configured identically ends up in the same state
+        Emitter e2 = createSmoke(parts, 42);
+        e2.prewarm(5000);
+        assertTrue(Arrays.equals(e1._buffer.data, e2._buffer.data));
+
+        // fast forwarding ages existing particles, and then replaces them
+        int youngest = 0;
+        for (int ii = 0; ii < 100; ii++) {
+            if (e1._buffer.data[ii*ParticleBuffer.NUM_FIELDS] >
+                e1._buffer.data[youngest*ParticleBuffer.NUM_FIELDS]) youngest = ii;
+        }
+        float born = e1._buffer.data[youngest*ParticleBuffer.NUM_FIELDS];
+        e1.fastForward(1000);
+        assertTrue(e1._buffer.isAlive(youngest));
+        assertEquals(born - 1, e1._buffer.data[youngest*ParticleBuffer.NUM_FIELDS], 1e-4f);
+        e1.fastForward(5000);
+        assertEquals(100, e1._buffer.liveCount());
+        for (int ii = 0; ii < 100; ii++) {
+            assertTrue(e1._buffer.data[ii*ParticleBuffer.NUM_FIELDS] >= parts.now() - 5 - 1e-4f);
+        }
+    }
+
+    @Test public void testFastForwardEmpty () {
+        Particles parts = new Particles();
+        Emitter emitter = createSmoke(parts, 42);
+        emitter.generator = Generator.impulse(10);
+        final int[] empties = new int[1];
+        emitter.onEmpty.connect(new UnitSlot() { public void onEmit () { empties[0]++; }});
+        // the impulse is exhausted on the first step, and its particles die within five seconds
+        emitter.fastForward(6000, 100);
+        assertEquals(0, emitter._buffer.liveCount());
+        assertEquals(1, empties[0]);
+    }
+
+    protected Emitter createSmoke (Particles parts, long seed) {
+        Randoms rando = Randoms.with(new Random(seed));
+        Emitter emitter = parts.createEmitter(100, graphics().createImage(4, 4));
+        emitter.generator = Generator.constant(20);
+        emitter.initters.add(Lifespan.constant(5));
+        emitter.initters.add(Transform.layer(emitter.layer));
+        emitter.initters.add(Velocity.randomNormal(rando, 0, 10));
+        emitter.effectors.add(new tripleplay.particle.effect.Move());
+        return emitter;
+    }
+
+    protected void tick (Particles parts, Clock.Source clock, int frames, int millis) {
+        for (int ii = 0; ii < frames; ii++) {
+            clock.update(millis);
+            clock.paint(1);
+            parts.paint(clock);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.particle.effect;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import playn.java.JavaPlatform;
+
+import tripleplay.particle.Effector;
+import tripleplay.particle.Initializer;
+import tripleplay.particle.ParticleBuffer;
+import tripleplay.util.Interpolator;
+
+public class FuseTest
+{
+    static {
+        JavaPlatform.Config config = new JavaPlatform.Config();
+        config.headless = true;
+        JavaPlatform.register(config);
+    }
+
+    @Test public void testFuseRuns () {
+        Effector custom = new Move() {}; // a subclass is not fused
+        List<Effector> fused = Fuse.effectors(
+            new Move(), new Gravity(), Alpha.byAge(Interpolator.LINEAR), custom, new Drag(0.5f));
+        assertEquals(3, fused.size());
+        assertTrue(fused.get(0) instanceof Fuse.Fused);
+        assertSame(custom, fused.get(1));
+        assertTrue(fused.get(2) instanceof Drag);
+    }
+
+    @Test public void testFusedMatches () {
+        checkFused(new Move(), new Gravity(), new Drag(0.9f), Alpha.byAge(Interpolator.EASE_OUT));
+        checkFused(new Gravity(), new Drag(0.8f, 0.7f), new Move(), new Gravity(-3), new Move());
+        checkFused(Alpha.byAge(Interpolator.LINEAR), new Drag(0.5f));
+    }
+
+    protected void checkFused (Effector... effectors) {
+        List<Effector> plain = Arrays.asList(effectors), fused = Fuse.effectors(plain);
+        assertEquals(1, fused.size());
+        // also check the fused effector's per-particle path, which the default applyAll uses
+        final Effector fusedEff = fused.get(0);
+        List<Effector> single = Collections.<Effector>singletonList(new Effector() {
+            @Override public void apply (int index, float[] data, int start, float now, float dt) {
+                fusedEff.apply(index, data, start, now, dt);
+            }
+        });
+        ParticleBuffer pbuf = create(), fbuf = create(), sbuf = create();
+        for (int ii = 0; ii < 10; ii++) {
+            float now = ii/60f;
+            int living = pbuf.apply(plain, now, 1/60f);
+            assertEquals(living, fbuf.apply(fused, now, 1/60f));
+            assertEquals(living, sbuf.apply(single, now, 1/60f));
+            for (int ff = 0; ff < pbuf.data.length; ff++) {
+                float expect = pbuf.data[ff];
+                assertEquals(expect, fbuf.data[ff], 1e-4f + Math.abs(expect) * 1e-5f);
+                assertEquals(expect, sbuf.data[ff], 1e-4f + Math.abs(expect) * 1e-5f);
+            }
+        }
+    }
+
+    protected ParticleBuffer create () {
+        final Random rando = new Random(42);
+        ParticleBuffer buffer = new ParticleBuffer(1000);
+        buffer.add(1000, 0, Collections.singletonList(new Initializer() {
+            @Override public void init (int index, float[] data, int start) {
+                data[start + ParticleBuffer.LIFESPAN] = rando.nextFloat();
+                data[start + ParticleBuffer.VEL_X] = rando.nextFloat() * 100 - 50;
+                data[start + ParticleBuffer.VEL_Y] = rando.nextFloat() * 100 - 50;
+                data[start + ParticleBuffer.TX] = rando.nextFloat() * 500;
+                data[start + ParticleBuffer.TY] = rando.nextFloat() * 500;
+                data[start + ParticleBuffer.ALPHA_RED] = playn.core.Color.encode(1, 1);
+            }
+        }));
+        return buffer;
+    }
+}
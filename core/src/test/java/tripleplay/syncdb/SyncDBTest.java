@@ -241,6 +241,108 @@ public class SyncDBTest
         assertEquals(0, two.getMods().size());
     }
 
+    @Test public void testLargeMap () {
+        Protocol.Session session = testSession();
+        TestDB one = new TestDB(), two = new TestDB();
+
+        // add enough keys that the key index is rehashed a few times
+        for (int ii = 0; ii < 1000; ii++) one.maxMap.put("key" + ii, ii);
+        for (int ii = 0; ii < 1000; ii += 3) one.maxMap.remove("key" + ii);
+        assertEquals(666, one.maxMap.size());
+        session.sync(one);
+        session.sync(two);
+        one.assertEquals(two);
+
+        // make sure we reread our keys from storage properly
+        one.assertEquals(one.clone());
+        assertEquals(666, one.clone().maxMap.size());
+    }
+
+    @Test public void testMapKeysMigration () {
+        Platform platform = testPlatform();
+        // store a map's keys as older versions did
+        platform.storage().setItem("maxMap_keys", "one\ttwo\tthree");
+        platform.storage().setItem("maxMap~one", Codec.INT.encode(1));
+        platform.storage().setItem("maxMap~two", Codec.INT.encode(2));
+        platform.storage().setItem("maxMap~three", Codec.INT.encode(3));
+
+        TestDB db = new TestDB(platform);
+        assertEquals(ImmutableMap.of("one", 1, "two", 2, "three", 3), db.maxMap);
+        assertNull(platform.storage().getItem("maxMap_keys"));
+
+        db.maxMap.remove("two");
+        db.maxMap.put("four", 4);
+        assertEquals(ImmutableMap.of("one", 1, "three", 3, "four", 4), db.clone().maxMap);
+    }
+
+    @Test public void testModsJournal () {
+        Protocol.Session session = testSession();
+        TestDB one = new TestDB();
+        session.sync(one);
+
+        // make enough modifications, and syncs of some of them, that the journal is compacted
+        for (int ii = 0; ii < 1000; ii++) {
+            one.maxMap.put("key" + ii, ii);
+            if (ii % 2 == 0) one.maxInt.update(ii);
+            if (ii % 100 == 99) {
+                Map<String,Integer> mods = new HashMap<String,Integer>();
+                for (int jj = ii-99; jj <= ii; jj += 4) mods.put("maxMap~key" + jj, 1);
+                one.noteSync(one.version(), mods);
+            }
+        }
+        assertEquals(751, one.getMods().size());
+        assertTrue(one._journalSize <= Math.max(751, SyncDB.MIN_COMPACT_JOURNAL));
+        assertEquals(one.getMods().keySet(), one.clone().getMods().keySet());
+
+        // make sure the reread mods still sync
+        TestDB reread = one.clone(), two = new TestDB();
+        session.sync(reread);
+        session.sync(two);
+        assertEquals(0, reread.getMods().size());
+        assertEquals(0, reread.clone().getMods().size());
+        assertEquals(750, two.maxMap.size());
+        assertEquals(998, two.maxInt.get().intValue());
+    }
+
+    @Test public void testModsJournalCompaction () {
+        Platform platform = testPlatform();
+        TestDB db = new TestDB(platform);
+        // modify and sync properties until the journal is compacted
+        for (int ii = 0; ii < 2*SyncDB.MIN_COMPACT_JOURNAL; ii++) {
+            db.maxMap.put("key" + ii, ii);
+            if (ii % 2 == 0) db.noteSync(db.version(), ImmutableMap.of("maxMap~key" + ii, 1));
+        }
+        int start = db._journalStart;
+        assertTrue(start > 0);
+        assertNull(platform.storage().getItem(SyncDB.journalKey(0)));
+
+        // new cells follow on from the journal's start, rather than overwriting the old cells
+        db.maxInt.update(1);
+        assertNotNull(platform.storage().getItem(SyncDB.journalKey(db._journalNext-1)));
+        assertTrue(db._journalNext > start);
+
+        // a cell that an interrupted compaction failed to remove is ignored, and removed
+        platform.storage().setItem(SyncDB.journalKey(start-1), "-maxMap~key1");
+        TestDB reread = db.clone();
+        assertEquals(db.getMods().keySet(), reread.getMods().keySet());
+        assertTrue(reread.getMods().containsKey("maxMap~key1"));
+        assertNull(platform.storage().getItem(SyncDB.journalKey(start-1)));
+    }
+
+    @Test public void testReservedNames () {
+        try {
+            new TestDB() {
+                public final Value<Integer> journal = value(
+                    "syncj12", 0, Codec.INT, Resolver.INTMAX);
+            };
+            fail("Journal cell names should be reserved");
+        } catch (IllegalArgumentException e) {} // expected
+        new TestDB() {
+            public final Value<Integer> notJournal = value(
+                "syncjx", 0, Codec.INT, Resolver.INTMAX);
+        };
+    }
+
     protected void makeTestChanges2 (TestDB db) {
         db.trueBool.update(false);
         db.maxInt.update(60);
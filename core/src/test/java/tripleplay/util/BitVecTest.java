@@ -18,4 +18,32 @@ public class BitVecTest
         for (int ii = 0; ii < 10000; ii++) vec.clear(ii);
         for (int ii = 0; ii < 10000; ii++) assertFalse(vec.isSet(ii));
     }
+
+    @Test public void testSparseSet () {
+        BitVec vec = new BitVec(1);
+        vec.set(1000);
+        assertTrue(vec.isSet(1000));
+        assertFalse(vec.isSet(999));
+    }
+
+    @Test public void testMaskOps () {
+        BitVec a = new BitVec(1), b = new BitVec(8);
+        a.set(3); a.set(40);
+        b.set(3);
+        assertTrue(a.containsAll(b));
+        assertFalse(b.containsAll(a));
+        assertTrue(a.intersects(b));
+        b.clear(3);
+        assertFalse(a.intersects(b));
+        assertTrue(a.containsAll(b));
+
+        BitVec c = new BitVec(a);
+        assertEquals(a, c);
+        assertEquals(a.hashCode(), c.hashCode());
+        b.set(3); b.set(40);
+        assertEquals(a, b); // differing capacities
+        assertEquals(a.hashCode(), b.hashCode());
+        c.set(41);
+        assertFalse(a.equals(c));
+    }
 }
@@ -0,0 +1,68 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.util;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class InterpolatorTest
+{
+    static final Interpolator[] INTERPS = {
+        Interpolator.LINEAR, Interpolator.EASE_IN, Interpolator.EASE_OUT, Interpolator.EASE_INOUT,
+        Interpolator.EASE_IN_BACK, Interpolator.EASE_OUT_BACK, Interpolator.BOUNCE_OUT,
+        Interpolator.EASE_OUT_ELASTIC
+    };
+
+    @Test public void testTabulatedError () {
+        // the error is within 0.05% of the range (and start) with the default samples
+        for (Interpolator interp : INTERPS) {
+            assertTrue(interp + "", maxError(interp, interp.tabulate()) < 5e-4f);
+        }
+        // and shrinks with the square of the number of samples for smooth interpolators
+        for (int ii = 0; ii < 6; ii++) {
+            assertTrue(maxError(INTERPS[ii], INTERPS[ii].tabulate(256)) < 1e-4f);
+            assertTrue(maxError(INTERPS[ii], INTERPS[ii].tabulate(4096)) < 1e-6f);
+        }
+    }
+
+    @Test public void testTabulatedEnds () {
+        for (Interpolator interp : INTERPS) {
+            Interpolator tab = interp.tabulate(16);
+            assertEquals(interp.apply(3, 7, 0, 500), tab.apply(3, 7, 0, 500), 1e-5f);
+            assertEquals(interp.apply(3, 7, 500, 500), tab.apply(3, 7, 500, 500), 1e-5f);
+            // times outside the interpolation are clamped
+            assertEquals(tab.apply(3, 7, 500, 500), tab.apply(3, 7, 600, 500), 0);
+            assertEquals(tab.apply(3, 7, 0, 500), tab.apply(3, 7, -100, 500), 0);
+        }
+    }
+
+    @Test public void testBezier () {
+        // a Bezier with its control points on the diagonal is linear
+        assertTrue(maxError(Interpolator.LINEAR, Interpolator.bezier(0.3f, 0.3f, 0.7f, 0.7f)) <
+                   1e-5f);
+        // the CSS "ease" curve, compared with a much finer table
+        Interpolator ease = Interpolator.bezier(0.25f, 0.1f, 0.25f, 1);
+        Interpolator fine = Interpolator.bezier(0.25f, 0.1f, 0.25f, 1, 100000);
+        assertTrue(maxError(fine, ease) < 1e-5f);
+        assertEquals(0.4085f, ease.apply(0, 1, 250, 1000), 1e-4f);
+        assertEquals(0.8024f, ease.apply(0, 1, 500, 1000), 1e-4f);
+        assertEquals(15, ease.apply(5, 10, 1000, 1000), 0);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testBadBezier () {
+        Interpolator.bezier(0.5f, 0, 1.5f, 1);
+    }
+
+    protected static float maxError (Interpolator exact, Interpolator approx) {
+        float max = 0;
+        for (int ii = 0; ii <= 10000; ii++) {
+            max = Math.max(max, Math.abs(exact.apply(1, 2, ii, 10000) -
+                                         approx.apply(1, 2, ii, 10000)));
+        }
+        return max / 2;
+    }
+}
@@ -12,6 +12,8 @@ import java.awt.EventQueue;
 import java.awt.Image;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.net.URL;
+import java.nio.ByteBuffer;
 import java.util.Set;
 
 import javax.swing.JFrame;
@@ -20,6 +22,7 @@ import org.lwjgl.opengl.Display;
 
 import playn.core.Asserts;
 import playn.core.PlayN;
+import playn.core.util.Callback;
 import playn.java.JavaImage;
 import playn.java.JavaPlatform;
 import pythagoras.f.Point;
@@ -140,6 +143,13 @@ public class JavaTPPlatform extends TPPlatform
         return new JavaImageOverlay(image);
     }
 
+    @Override public void getBuffer (String path, Callback<ByteBuffer> callback) {
+        // map the asset if it's a plain file, rather than copying it onto the heap
+        URL url = getClass().getClassLoader().getResource(
+            _platform.assets().getPathPrefix() + path);
+        if (!MappedBuffers.map(url, callback)) super.getBuffer(path, callback);
+    }
+
     @Override public void clearFocus () {
         EventQueue.invokeLater(new Runnable() {
             @Override public void run () {
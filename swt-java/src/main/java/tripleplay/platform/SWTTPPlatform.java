@@ -5,6 +5,8 @@
 
 package tripleplay.platform;
 
+import java.net.URL;
+import java.nio.ByteBuffer;
 import java.util.Set;
 
 import org.eclipse.swt.SWT;
@@ -16,6 +18,7 @@ import org.eclipse.swt.widgets.Event;
 import org.eclipse.swt.widgets.Listener;
 
 import playn.core.PlayN;
+import playn.core.util.Callback;
 import playn.java.JavaPlatform;
 import playn.java.SWTPlatform;
 import pythagoras.f.Point;
@@ -101,6 +104,13 @@ public class SWTTPPlatform extends TPPlatform
         return previous;
     }
 
+    @Override public void getBuffer (String path, Callback<ByteBuffer> callback) {
+        // map the asset if it's a plain file, rather than copying it onto the heap
+        URL url = getClass().getClassLoader().getResource(
+            _platform.assets().getPathPrefix() + path);
+        if (!MappedBuffers.map(url, callback)) super.getBuffer(path, callback);
+    }
+
     @Override public void clearFocus () {
         _platform.graphics().canvas().setFocus();
     }
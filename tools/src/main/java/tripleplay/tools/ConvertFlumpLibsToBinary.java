@@ -5,8 +5,11 @@
 
 package tripleplay.tools;
 
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -25,43 +28,102 @@ import tripleplay.flump.LibraryData;
 public class ConvertFlumpLibsToBinary
 {
     /**
-     * Converts the Json flump libraries from the sourceDir into a binary version in the outputDir.
+     * Converts the Json flump libraries from the sourceDir into a binary version in the outputDir,
+     * in the latest binary format.
      */
     public static void convert (String sourceDir, String outputDir)
         throws IOException
+    {
+        convert(sourceDir, outputDir, LibraryData.VERSION, false);
+    }
+
+    /**
+     * Converts the Json flump libraries from the sourceDir into a binary version in the outputDir.
+     * @param version the binary format version to write, 1 or 2.
+     * @param onlyChanged if true, libraries whose binary version is newer than their Json version,
+     * and in the requested format version, are skipped.
+     * @return the number of libraries that were converted.
+     */
+    public static int convert (String sourceDir, String outputDir, int version,
+                               boolean onlyChanged)
+        throws IOException
     {
         List<File> jsonFiles = getJsonFiles(new File(sourceDir, "/assets/flump"));
 
+        int converted = 0;
         for (File jsonFile : jsonFiles) {
+            File binFile = new File(jsonFile.getAbsolutePath().replace(sourceDir, outputDir).
+                replace(".json", ".bin"));
+            if (onlyChanged && binFile.lastModified() > jsonFile.lastModified() &&
+                binaryVersion(binFile) == version) continue;
+
             String jsonTxt = new Scanner(jsonFile).useDelimiter("\\Z").next();
             Json.Object json = new JsonImpl().parse(jsonTxt);
 
             LibraryData lib = new LibraryData(json);
 
-            File binFile = new File(jsonFile.getAbsolutePath().replace(sourceDir, outputDir).
-                replace(".json", ".bin"));
-
             // Ensure all our parent directories are there.
             binFile.getParentFile().mkdirs();
 
-            DataOutputStream ostream = new DataOutputStream(new FileOutputStream(binFile));
+            DataOutputStream ostream = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(binFile)));
             try {
-                lib.write(ostream);
+                if (version == 1) lib.write(ostream);
+                else lib.writeV2(ostream);
             } finally {
                 ostream.close();
             }
+            converted++;
         }
+        return converted;
     }
 
+    /**
+     * Converts one or more pairs of directories. In batch mode, only libraries that have changed
+     * since they were last converted, or were last converted to another format version, are
+     * converted.
+     */
     public static void main (String[] args)
         throws IOException
     {
-        if (args.length < 2) {
+        int version = LibraryData.VERSION;
+        boolean batch = false;
+        List<String> dirs = new ArrayList<String>();
+        for (String arg : args) {
+            if (arg.equals("-v1")) version = 1;
+            else if (arg.equals("-batch")) batch = true;
+            else dirs.add(arg);
+        }
+        if (dirs.isEmpty() || dirs.size() % 2 != 0) {
             throw new IllegalArgumentException(
-                "Usage: java ConvertFlumpLibsToBinary <source dir> <output dir>");
+                "Usage: java ConvertFlumpLibsToBinary [-v1] [-batch] <source dir> <output dir> " +
+                "[<source dir> <output dir> ...]");
         }
 
-        convert(args[0], args[1]);
+        for (int ii = 0; ii < dirs.size(); ii += 2) {
+            int converted = convert(dirs.get(ii), dirs.get(ii+1), version, batch);
+            if (batch) {
+                System.out.println("Converted " + converted + " libraries in " + dirs.get(ii));
+            }
+        }
+    }
+
+    /**
+     * Returns the format version of an existing binary library, from its header, or 0 if it can't
+     * be read. Version 1 libraries have no header.
+     */
+    protected static int binaryVersion (File binFile)
+    {
+        try {
+            DataInputStream istream = new DataInputStream(new FileInputStream(binFile));
+            try {
+                return (istream.readInt() == LibraryData.MAGIC) ? istream.readInt() : 1;
+            } finally {
+                istream.close();
+            }
+        } catch (IOException e) {
+            return 0;
+        }
     }
 
     protected static List<File> getJsonFiles (File root)